@@ -0,0 +1,56 @@
+package com.santander.efx;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.service.PriceCache;
+
+/**
+ * The application on an embedded Redis of its own, for benchmarks that go
+ * through Redis, with or without its web server. Ingestion is synchronous so
+ * each invocation measures a whole write.
+ */
+public final class BenchmarkApplication {
+
+	public static final int REDIS_PORT = 6371;
+
+	private BenchmarkApplication() {
+	}
+
+	public static ConfigurableApplicationContext start() {
+		return start(WebApplicationType.NONE);
+	}
+
+	/**
+	 * Starts the application, serving HTTP on {@code local.server.port} when
+	 * {@code web} is {@link WebApplicationType#SERVLET}.
+	 */
+	public static ConfigurableApplicationContext start(WebApplicationType web, String... properties) {
+
+		String[] args = new String[properties.length + 6];
+		args[0] = "--spring.redis.port=" + REDIS_PORT;
+		args[1] = "--efx.ingestion.lanes=0";
+		args[2] = "--server.port=0";
+		args[3] = "--spring.main.banner-mode=off";
+		args[4] = "--logging.level.root=WARN";
+		args[5] = "--efx.journal.dir=";
+		for (int i = 0; i < properties.length; i++) {
+			args[i + 6] = "--" + properties[i];
+		}
+		return new SpringApplicationBuilder(Application.class, RedisTestConfiguration.class).web(web).run(args);
+	}
+
+	public static void reset(ConfigurableApplicationContext context) {
+
+		context.getBean(StringRedisTemplate.class).execute((RedisCallback<Void>) connection -> {
+			connection.flushDb();
+			return null;
+		});
+		context.getBean(PriceCache.class).clear();
+	}
+
+}
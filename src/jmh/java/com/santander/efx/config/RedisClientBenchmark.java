@@ -0,0 +1,87 @@
+package com.santander.efx.config;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.santander.efx.BenchmarkApplication;
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceRepository;
+
+/**
+ * Throughput of the repository on an embedded Redis under each client
+ * setting: one shared connection or a pool, and each pipeline flush policy.
+ * Blocking reads run on {@value #THREADS} threads; batched writes upsert
+ * {@value #BATCH} prices per pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisClientBenchmark {
+
+	private static final int THREADS = 4;
+	private static final int BATCH = 100;
+
+	@Param({ "false", "true" })
+	private boolean pooled;
+
+	@Param({ "each-command", "on-close", "16" })
+	private String pipelineFlush;
+
+	private ConfigurableApplicationContext context;
+	private PriceRepository priceRepository;
+	private List<Price> batch;
+
+	@Setup
+	public void setUp() {
+
+		context = BenchmarkApplication.start(WebApplicationType.NONE, "efx.redis.pool.enabled=" + pooled,
+				"efx.redis.pool.max-active=" + THREADS, "efx.redis.pipeline-flush=" + pipelineFlush);
+		priceRepository = context.getBean(PriceRepository.class);
+
+		batch = new ArrayList<>(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			batch.add(new Price("CCY" + i + "/USD", i, new BigDecimal("1.1000"), new BigDecimal("1.2000"), new Date()));
+		}
+		priceRepository.saveAll(batch);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkApplication.reset(context);
+		context.close();
+	}
+
+	@Benchmark
+	@Threads(THREADS)
+	public Price findById() {
+		return priceRepository.findById("CCY7/USD").orElse(null);
+	}
+
+	@Benchmark
+	public List<Price> upsertBatch() {
+		return priceRepository.upsertAllIfNewer(batch);
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.santander.efx.consumer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.santander.efx.BenchmarkApplication;
+
+/**
+ * Wall time of one backfill of a generated file of {@code lines} feed
+ * lines over {@value #INSTRUMENTS} instruments, against an embedded Redis.
+ * Divide the line count by the score for lines/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PriceBackfillBenchmark {
+
+	private static final int INSTRUMENTS = 1_000;
+
+	@Param({ "1000000", "10000000" })
+	private int lines;
+
+	private ConfigurableApplicationContext context;
+	private PriceBackfill backfill;
+	private File file;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		context = BenchmarkApplication.start();
+		backfill = context.getBean(PriceBackfill.class);
+
+		file = File.createTempFile("backfill", ".csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+			for (int i = 0; i < lines; i++) {
+				int millis = i / 10;
+				writer.write(String.format("%d, CCY%d/USD, 1.%04d,1.%04d,01-06-2020 %02d:%02d:%02d:%03d%n", i,
+						i % INSTRUMENTS, i % 10_000, (i + 7) % 10_000, millis / 3_600_000 % 24, millis / 60_000 % 60,
+						millis / 1_000 % 60, millis % 1_000));
+			}
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		BenchmarkApplication.reset(context);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public PriceBackfill.Report load() throws IOException {
+		return backfill.load(file.toPath());
+	}
+
+}
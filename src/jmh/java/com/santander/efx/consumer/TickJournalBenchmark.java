@@ -0,0 +1,61 @@
+package com.santander.efx.consumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appends one feed line to the tick journal, segment rolls included, in a
+ * temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickJournalBenchmark {
+
+	private static final String LINE = "106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001";
+
+	private File directory;
+	private TickJournal journal;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("tick-journal").toFile();
+		journal = new TickJournal(directory.getPath(), 64 << 20, 2, false);
+		journal.open();
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		journal.close();
+		File[] segments = directory.listFiles();
+		if (segments != null) {
+			for (File segment : segments) {
+				segment.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Benchmark
+	public void append() {
+		journal.append(LINE);
+	}
+
+}
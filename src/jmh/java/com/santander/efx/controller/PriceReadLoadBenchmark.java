@@ -0,0 +1,133 @@
+package com.santander.efx.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.santander.efx.BenchmarkApplication;
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceRepository;
+
+/**
+ * Load test of {@code GET /price} over HTTP, in both {@code efx.read.mode}s,
+ * against the number of concurrent clients. Tomcat is capped at
+ * {@value #SERVER_THREADS} threads so the blocking mode runs out of them
+ * first. Each invocation sends one request per client and waits for all of
+ * them; the {@code requests} counter reports requests per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PriceReadLoadBenchmark {
+
+	private static final int SERVER_THREADS = 8;
+	private static final int INSTRUMENTS = 100;
+
+	@Param({ "blocking", "async" })
+	private String mode;
+
+	@Param({ "8", "64", "256" })
+	private int clients;
+
+	private ConfigurableApplicationContext context;
+	private ExecutorService clientThreads;
+	private URL url;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		context = BenchmarkApplication.start(WebApplicationType.SERVLET, "efx.read.mode=" + mode,
+				"server.tomcat.max-threads=" + SERVER_THREADS, "server.tomcat.accept-count=" + 1024,
+				"server.tomcat.max-connections=" + 1024);
+		url = new URL("http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+				+ context.getEnvironment().getProperty("server.servlet.context-path", "") + "/price");
+
+		List<Price> prices = new ArrayList<>(INSTRUMENTS);
+		for (int i = 0; i < INSTRUMENTS; i++) {
+			prices.add(new Price("CCY" + i + "/USD", i, new BigDecimal("1.1000"), new BigDecimal("1.2000"), new Date()));
+		}
+		context.getBean(PriceRepository.class).saveAll(prices);
+		clientThreads = Executors.newFixedThreadPool(clients);
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		clientThreads.shutdownNow();
+		clientThreads.awaitTermination(10, TimeUnit.SECONDS);
+		BenchmarkApplication.reset(context);
+		context.close();
+	}
+
+	@Benchmark
+	public void getAllPrices(Requests requests) throws Exception {
+
+		List<Future<Integer>> responses = new ArrayList<>(clients);
+		for (int i = 0; i < clients; i++) {
+			responses.add(clientThreads.submit(this::get));
+		}
+		for (Future<Integer> response : responses) {
+			if (response.get() == 200) {
+				requests.requests++;
+			} else {
+				requests.errors++;
+			}
+		}
+	}
+
+	private int get() throws IOException {
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try (InputStream body = connection.getInputStream()) {
+			byte[] buffer = new byte[8192];
+			while (body.read(buffer) >= 0) {
+				// drain, so the connection is kept alive
+			}
+			return connection.getResponseCode();
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Requests {
+
+		public long requests;
+		public long errors;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			requests = 0;
+			errors = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.santander.efx.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * JSON rendering of one price, as {@code GET /price/{instrument}} writes it,
+ * and of a 100 instrument book, as {@code GET /price} does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceJsonBenchmark {
+
+	private ObjectWriter writer;
+	private Price price;
+	private List<Price> book;
+
+	@Setup
+	public void setUp() {
+
+		writer = new ObjectMapper().writer();
+		price = new Price("EUR/USD", 106, new BigDecimal("1.0710"), new BigDecimal("1.3695"), new Date());
+		book = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			book.add(new Price("CCY" + i + "/USD", i, new BigDecimal("1.0710"), new BigDecimal("1.3695"), new Date()));
+		}
+	}
+
+	@Benchmark
+	public byte[] price() throws JsonProcessingException {
+		return writer.writeValueAsBytes(price);
+	}
+
+	@Benchmark
+	public byte[] book() throws JsonProcessingException {
+		return writer.writeValueAsBytes(book);
+	}
+
+}
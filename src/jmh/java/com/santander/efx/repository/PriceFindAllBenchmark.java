@@ -0,0 +1,108 @@
+package com.santander.efx.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.santander.efx.BenchmarkApplication;
+import com.santander.efx.model.Price;
+
+/**
+ * Latency of reading the whole book against the number of instruments, on
+ * an embedded Redis: {@link PriceRepository#findAll()} (one pipelined
+ * {@code SORT ... GET} per index bucket), {@code SMEMBERS} of the buckets
+ * then {@code MGET}, and {@code SMEMBERS} then one {@code GET} per
+ * instrument as the former repository did.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceFindAllBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	private int instruments;
+
+	private ConfigurableApplicationContext context;
+	private PriceRepository priceRepository;
+	private RedisTemplate<String, Price> priceRedisTemplate;
+	private StringRedisTemplate stringRedisTemplate;
+	private Set<String> indexKeys;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+
+		context = BenchmarkApplication.start();
+		priceRepository = context.getBean(PriceRepository.class);
+		priceRedisTemplate = context.getBean("priceRedisTemplate", RedisTemplate.class);
+		stringRedisTemplate = context.getBean(StringRedisTemplate.class);
+
+		List<Price> prices = new ArrayList<>(instruments);
+		indexKeys = new LinkedHashSet<>();
+		for (int i = 0; i < instruments; i++) {
+			prices.add(new Price("CCY" + i + "/USD", i, new BigDecimal("1.1000"), new BigDecimal("1.2000"), new Date()));
+			indexKeys.add(PriceRepository.indexKey("CCY" + i + "/USD"));
+		}
+		priceRepository.saveAll(prices);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkApplication.reset(context);
+		context.close();
+	}
+
+	@Benchmark
+	public List<Price> sortGet() {
+		return priceRepository.findAll();
+	}
+
+	@Benchmark
+	public List<Price> membersThenMget() {
+		return priceRedisTemplate.opsForValue().multiGet(keys());
+	}
+
+	@Benchmark
+	public List<Price> membersThenGetEach() {
+
+		List<Price> prices = new ArrayList<>(instruments);
+		for (String key : keys()) {
+			prices.add(priceRedisTemplate.opsForValue().get(key));
+		}
+		return prices;
+	}
+
+	private List<String> keys() {
+
+		List<String> keys = new ArrayList<>(instruments);
+		for (String indexKey : indexKeys) {
+			stringRedisTemplate.opsForSet().members(indexKey)
+					.forEach(instrumentName -> keys.add(PriceRepository.key(instrumentName)));
+		}
+		return keys;
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.santander.efx.repository;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.santander.efx.model.Price;
+
+/**
+ * Encodes and decodes one price in the {@link PriceSerializer} layout and in
+ * the former {@code @RedisHash} layout, as the field map Spring Data wrote
+ * with {@code HMSET}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceSerializerBenchmark {
+
+	private final PriceSerializer serializer = new PriceSerializer();
+
+	private Price price;
+	private byte[] binary;
+	private Map<Object, Object> hash;
+
+	@Setup
+	public void setUp() {
+
+		price = new Price("EUR/USD", 106, new BigDecimal("1.1000"), new BigDecimal("1.2000"), new Date());
+		binary = serializer.serialize(price);
+		hash = encodeHash();
+	}
+
+	@Benchmark
+	public byte[] encodeBinary() {
+		return serializer.serialize(price);
+	}
+
+	@Benchmark
+	public Price decodeBinary() {
+		return serializer.deserialize(binary);
+	}
+
+	@Benchmark
+	public Map<Object, Object> encodeHash() {
+
+		Map<Object, Object> fields = new HashMap<>();
+		fields.put("_class", Price.class.getName());
+		fields.put("instrumentName", price.getInstrumentName());
+		fields.put("externalId", String.valueOf(price.getExternalId()));
+		fields.put("bid", String.valueOf(price.getScaledBid()));
+		fields.put("ask", String.valueOf(price.getScaledAsk()));
+		fields.put("date", String.valueOf(price.getTimestamp()));
+		return fields;
+	}
+
+	@Benchmark
+	public Price decodeHash() {
+		return LegacyPriceMigration.read(hash);
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.santander.efx.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.santander.efx.BenchmarkApplication;
+import com.santander.efx.model.Price;
+
+/**
+ * End-to-end throughput and latency distribution of the ingestion and read
+ * paths against an embedded Redis, writing straight through or behind. Feed
+ * lines are generated for each iteration with dates later than the last
+ * iteration's over {@value #INSTRUMENTS} instruments, so every write is
+ * accepted until an iteration runs through all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceServiceBenchmark {
+
+	private static final int INSTRUMENTS = 100;
+	private static final int LINES = 1 << 20;
+
+	@Param({ "immediate", "behind" })
+	private String writeMode;
+
+	private ConfigurableApplicationContext context;
+	private PriceService priceService;
+	private final String[] lines = new String[LINES];
+	private int iteration;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		context = BenchmarkApplication.start(WebApplicationType.NONE, "efx.write.mode=" + writeMode);
+		priceService = context.getBean(PriceService.class);
+	}
+
+	@Setup(Level.Iteration)
+	public void reset() {
+
+		BenchmarkApplication.reset(context);
+		int offset = iteration++ * LINES;
+		for (int i = 0; i < LINES; i++) {
+			int millis = offset + i;
+			lines[i] = String.format("%d, CCY%d/USD, 1.1000,1.2000,01-06-2020 %02d:%02d:%02d:%03d", i, i % INSTRUMENTS,
+					millis / 3_600_000, millis / 60_000 % 60, millis / 1_000 % 60, millis % 1_000);
+		}
+		next = 0;
+		for (int i = 0; i < INSTRUMENTS; i++) {
+			priceService.saveCsvPrice(lines[next++]);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public void saveCsvPrice() {
+		priceService.saveCsvPrice(lines[next++ & LINES - 1]);
+	}
+
+	@Benchmark
+	public void saveStaleCsvPrice() {
+		priceService.saveCsvPrice(lines[0]);
+	}
+
+	@Benchmark
+	public Price getCachedPrice() {
+		return priceService.getPriceByInstrumentName("CCY7/USD");
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.santander.efx.service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.santander.efx.model.Price;
+
+/**
+ * Pricing a tick through a table of 1000 instrument rules, with and without
+ * quoting it to a tier.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingTableBenchmark {
+
+	private static final int INSTRUMENTS = 1000;
+
+	private PricingTable table;
+	private Price[] prices;
+	private int tier;
+	private int next;
+
+	@Setup
+	public void setUp() {
+
+		Map<String, String> rules = new LinkedHashMap<>();
+		prices = new Price[INSTRUMENTS];
+		for (int i = 0; i < INSTRUMENTS; i++) {
+			rules.put("CCY" + i + "/USD", "0.0001" + i % 10 + ":0.0002");
+			prices[i] = new Price();
+			prices[i].setInstrumentName("CCY" + i + "/USD");
+			prices[i].setBid(new BigDecimal("1.1000"));
+			prices[i].setAsk(new BigDecimal("1.2000"));
+		}
+		rules.put("*@gold", "-0.00005");
+		table = PricingTable.compile(new BigDecimal("0.1"), rules);
+		tier = table.tier("gold");
+	}
+
+	@Benchmark
+	public Price adjust() {
+		Price price = prices[next++ % INSTRUMENTS];
+		price.setScaledBid(11_000L);
+		return table.adjust(price);
+	}
+
+	@Benchmark
+	public Price skew() {
+		return table.skew(prices[next++ % INSTRUMENTS], tier);
+	}
+
+}
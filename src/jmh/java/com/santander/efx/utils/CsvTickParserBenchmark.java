@@ -0,0 +1,71 @@
+package com.santander.efx.utils;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.exception.RejectReason;
+import com.santander.efx.exception.ServiceException;
+import com.santander.efx.model.PriceTick;
+
+/**
+ * Parses one feed line into a reused {@link PriceTick}, from a
+ * {@code String} and from raw bytes through {@link AsciiSequence}, and
+ * rejects a line that only fails on its last character.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvTickParserBenchmark {
+
+	private static final String LINE = "106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001";
+	private static final String BAD_LINE = "106, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:0x1";
+
+	private final CsvTickParser parser = new CsvTickParser();
+	private final PriceTick tick = new PriceTick();
+	private final AsciiSequence bytes = new AsciiSequence();
+	private final byte[] rawLine = LINE.getBytes(US_ASCII);
+
+	@Setup
+	public void setUp() {
+		ReflectionTestUtils.setField(parser, "dateUtils", new DateUtils());
+		ReflectionTestUtils.setField(parser, "instrumentRegistry",
+				new InstrumentRegistry(new String[] { "EUR/USD" }, 16, true));
+	}
+
+	@Benchmark
+	public PriceTick parseString() {
+		return parser.parse(LINE, tick);
+	}
+
+	@Benchmark
+	public PriceTick parseBytes() {
+		return parser.parse(bytes.wrap(rawLine, 0, rawLine.length), tick);
+	}
+
+	@Benchmark
+	public RejectReason rejectString() {
+		try {
+			parser.parse(BAD_LINE, tick);
+			return null;
+		} catch (ServiceException e) {
+			return e.getReason();
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.santander.efx.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Feed date parsing: the cached-midnight fast path, a day change on every
+ * call, and the {@code SimpleDateFormat} it replaced as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilsBenchmark {
+
+	private static final String[] DAYS = { "01-06-2020 12:01:01:001", "02-06-2020 12:01:01:001" };
+
+	private final DateUtils dateUtils = new DateUtils();
+	private SimpleDateFormat simpleDateFormat;
+	private int day;
+
+	@Setup
+	public void setUp() {
+		simpleDateFormat = new SimpleDateFormat(DateUtils.DATE_FORMAT);
+		simpleDateFormat.setTimeZone(TimeZone.getTimeZone(DateUtils.TIME_ZONE));
+	}
+
+	@Benchmark
+	public long sameDay() {
+		return dateUtils.parseEpochMillis(DAYS[0], 0, DAYS[0].length());
+	}
+
+	@Benchmark
+	public long dayChange() {
+		String date = DAYS[day ^= 1];
+		return dateUtils.parseEpochMillis(date, 0, date.length());
+	}
+
+	@Benchmark
+	public Date simpleDateFormat() throws ParseException {
+		return simpleDateFormat.parse(DAYS[0]);
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.santander.efx.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Spread math on fixed-point mantissas against the {@code BigDecimal}
+ * arithmetic it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedPointBenchmark {
+
+	private static final BigDecimal BID_FACTOR = new BigDecimal("0.9");
+
+	private final long scaledBid = 11_000L;
+	private final long bidMultiplier = FixedPoint.multiplier(BID_FACTOR);
+	private final BigDecimal bid = new BigDecimal("1.1000");
+
+	@Benchmark
+	public long fixedPoint() {
+		return FixedPoint.multiply(scaledBid, bidMultiplier);
+	}
+
+	@Benchmark
+	public BigDecimal bigDecimal() {
+		return bid.multiply(BID_FACTOR).setScale(FixedPoint.SCALE, RoundingMode.HALF_DOWN);
+	}
+
+}
@@ -1,27 +1,190 @@
 package com.santander.efx.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration.LettuceClientConfigurationBuilder;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection.PipeliningFlushPolicy;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceSerializer;
+import com.santander.efx.service.PriceCache;
+import com.santander.efx.service.PriceSubscriptions;
 
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+
+/**
+ * Redis client layer, tuned from {@code efx.redis.*}:
+ * <ul>
+ * <li>{@code io-threads} and {@code computation-threads}: Lettuce's netty
+ * I/O and event threads, one per core when 0</li>
+ * <li>{@code timeout-ms} and {@code connect-timeout-ms}: command and
+ * connect timeouts</li>
+ * <li>{@code pool.enabled}: blocking calls borrow a dedicated connection
+ * from a pool of {@code pool.max-active} instead of sharing one; reactive
+ * reads keep the shared connection</li>
+ * <li>{@code pipeline-flush}: when pipelined batches reach the socket,
+ * {@code each-command}, {@code on-close} (one write per batch) or a number
+ * of commands</li>
+ * <li>{@code replicas} and {@code read-from}: {@code host:port} replicas of
+ * {@code spring.redis.host} and a Lettuce {@link ReadFrom} such as
+ * {@code replicaPreferred}, used by the GET endpoints' reads that are
+ * not kept; writes, scripts, notifications, cache fills and the reads that
+ * follow a notification stay on the primary</li>
+ * <li>{@code shards}: {@code host:port} Redis servers the price book is
+ * {@link RedisShards sharded} over along with {@code spring.redis.host};
+ * they get no replicas</li>
+ * <li>{@code listener-threads} and {@code listener-queue}: the pool that
+ * runs pub/sub listeners, shared by every shard's listener container, and
+ * how many messages may wait for it before the subscriber thread runs
+ * listeners itself</li>
+ * <li>{@code cluster.nodes} and {@code cluster.max-redirects}: {@code
+ * host:port} seed nodes of a Redis Cluster to connect to instead of
+ * {@code spring.redis.host}, and how many {@code MOVED} or {@code ASK}
+ * redirections a command may follow. Lettuce routes each command to the
+ * master owning its slot and refreshes the slot map when redirected, so
+ * the cluster is one {@link RedisShards shard} to the application;
+ * {@code replicas} and {@code shards} do not apply</li>
+ * </ul>
+ */
 @Configuration
-@EnableRedisRepositories
 public class RedisConfiguration {
 
+	public static final String PRICE_UPDATES_CHANNEL = "price-updates";
+
 	private int redisPort;
 	private String redisHost;
-	
+
+	@Value("${efx.redis.io-threads:0}")
+	private int ioThreads;
+
+	@Value("${efx.redis.computation-threads:0}")
+	private int computationThreads;
+
+	@Value("${efx.redis.timeout-ms:60000}")
+	private long timeout;
+
+	@Value("${efx.redis.connect-timeout-ms:10000}")
+	private long connectTimeout;
+
+	@Value("${efx.redis.pool.enabled:false}")
+	private boolean pooled;
+
+	@Value("${efx.redis.pool.max-active:8}")
+	private int poolMaxActive;
+
+	@Value("${efx.redis.pool.min-idle:0}")
+	private int poolMinIdle;
+
+	@Value("${efx.redis.pool.max-wait-ms:-1}")
+	private long poolMaxWait;
+
+	@Value("${efx.redis.pipeline-flush:each-command}")
+	private String pipelineFlush;
+
+	@Value("${efx.redis.replicas:}")
+	private String[] replicas;
+
+	@Value("${efx.redis.read-from:replicaPreferred}")
+	private String readFrom;
+
+	@Value("${efx.redis.shards:}")
+	private String[] shards;
+
+	@Value("${efx.redis.listener-threads:2}")
+	private int listenerThreads;
+
+	@Value("${efx.redis.listener-queue:10000}")
+	private int listenerQueue;
+
+	@Value("${efx.redis.cluster.nodes:}")
+	private String[] clusterNodes;
+
+	@Value("${efx.redis.cluster.max-redirects:5}")
+	private int clusterMaxRedirects;
+
+	private ThreadPoolTaskExecutor listenerExecutor;
+
 	public RedisConfiguration(@Value("${spring.redis.port}") int redisPort, @Value("${spring.redis.host}") String redisHost) {
 		this.redisPort = redisPort;
 		this.redisHost = redisHost;
 	}
 
+	@Bean(destroyMethod = "shutdown")
+	public ClientResources lettuceClientResources() {
+
+		DefaultClientResources.Builder builder = DefaultClientResources.builder();
+		if (ioThreads > 0) {
+			builder.ioThreadPoolSize(ioThreads);
+		}
+		if (computationThreads > 0) {
+			builder.computationThreadPoolSize(computationThreads);
+		}
+		return builder.build();
+	}
+
+	@Bean
+	@Primary
+	public LettuceConnectionFactory redisConnectionFactory(ClientResources lettuceClientResources) {
+		if (isCluster()) {
+			return tuned(new LettuceConnectionFactory(clusterConfiguration(),
+					clientConfiguration(lettuceClientResources, null)));
+		}
+		return tuned(new LettuceConnectionFactory(new RedisStandaloneConfiguration(this.redisHost, this.redisPort),
+				clientConfiguration(lettuceClientResources, null)));
+	}
+
+	/**
+	 * Connections for reads routed to {@code efx.redis.replicas}, when any
+	 * and not in cluster mode.
+	 */
 	@Bean
-	public LettuceConnectionFactory redisConnectionFactory() {
-		return new LettuceConnectionFactory(this.redisHost, this.redisPort);
+	@ConditionalOnExpression("!'${efx.redis.replicas:}'.trim().isEmpty() && '${efx.redis.cluster.nodes:}'.trim().isEmpty()")
+	public LettuceConnectionFactory redisReplicaConnectionFactory(ClientResources lettuceClientResources) {
+
+		RedisStaticMasterReplicaConfiguration configuration = new RedisStaticMasterReplicaConfiguration(this.redisHost,
+				this.redisPort);
+		for (String replica : replicas) {
+			RedisNode node = node(replica, "efx.redis.replicas");
+			configuration.node(node.getHost(), node.getPort());
+		}
+		return tuned(new LettuceConnectionFactory(configuration,
+				clientConfiguration(lettuceClientResources, ReadFrom.valueOf(readFrom))));
 	}
 
 	@Bean
@@ -30,4 +193,244 @@ public class RedisConfiguration {
 		template.setConnectionFactory(connectionFactory);
 		return template;
 	}
-}
\ No newline at end of file
+
+	@Bean
+	public PriceSerializer priceSerializer() {
+		return new PriceSerializer();
+	}
+
+	@Bean
+	public RedisTemplate<String, Price> priceRedisTemplate(LettuceConnectionFactory connectionFactory,
+			PriceSerializer priceSerializer) {
+		return priceTemplate(connectionFactory, priceSerializer);
+	}
+
+	@Bean
+	public ReactiveRedisTemplate<String, Price> reactivePriceRedisTemplate(LettuceConnectionFactory connectionFactory,
+			PriceSerializer priceSerializer) {
+		return reactivePriceTemplate(connectionFactory, priceSerializer);
+	}
+
+	/**
+	 * {@link #priceRedisTemplate} for reads that may go to a replica.
+	 */
+	@Bean
+	public RedisTemplate<String, Price> priceReadRedisTemplate(LettuceConnectionFactory connectionFactory,
+			@Qualifier("redisReplicaConnectionFactory") Optional<LettuceConnectionFactory> replicaConnectionFactory,
+			PriceSerializer priceSerializer) {
+		return priceTemplate(replicaConnectionFactory.orElse(connectionFactory), priceSerializer);
+	}
+
+	/**
+	 * {@link #reactivePriceRedisTemplate} for reads that may go to a replica.
+	 */
+	@Bean
+	public ReactiveRedisTemplate<String, Price> reactivePriceReadRedisTemplate(
+			LettuceConnectionFactory connectionFactory,
+			@Qualifier("redisReplicaConnectionFactory") Optional<LettuceConnectionFactory> replicaConnectionFactory,
+			PriceSerializer priceSerializer) {
+		return reactivePriceTemplate(replicaConnectionFactory.orElse(connectionFactory), priceSerializer);
+	}
+
+	/**
+	 * Shard 0 through the templates above, then a connection and templates
+	 * of its own for each of {@code efx.redis.shards}; a cluster is a single
+	 * shard.
+	 */
+	@Bean
+	public RedisShards redisShards(ClientResources lettuceClientResources, PriceSerializer priceSerializer,
+			RedisTemplate<String, Price> priceRedisTemplate, RedisTemplate<String, Price> priceReadRedisTemplate,
+			ReactiveRedisTemplate<String, Price> reactivePriceRedisTemplate,
+			ReactiveRedisTemplate<String, Price> reactivePriceReadRedisTemplate) {
+
+		List<RedisTemplate<String, Price>> templates = new ArrayList<>();
+		List<RedisTemplate<String, Price>> readTemplates = new ArrayList<>();
+		List<ReactiveRedisTemplate<String, Price>> reactiveTemplates = new ArrayList<>();
+		List<ReactiveRedisTemplate<String, Price>> reactiveReadTemplates = new ArrayList<>();
+		List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+		templates.add(priceRedisTemplate);
+		readTemplates.add(priceReadRedisTemplate);
+		reactiveTemplates.add(reactivePriceRedisTemplate);
+		reactiveReadTemplates.add(reactivePriceReadRedisTemplate);
+
+		for (String shard : shards) {
+			if (shard.trim().isEmpty()) {
+				continue;
+			}
+			if (isCluster()) {
+				throw new IllegalArgumentException("efx.redis.shards does not apply to a cluster, list its nodes in "
+						+ "efx.redis.cluster.nodes only");
+			}
+			RedisNode node = node(shard, "efx.redis.shards");
+			LettuceConnectionFactory connectionFactory = tuned(new LettuceConnectionFactory(
+					new RedisStandaloneConfiguration(node.getHost(), node.getPort()),
+					clientConfiguration(lettuceClientResources, null)));
+			connectionFactory.afterPropertiesSet();
+			connectionFactories.add(connectionFactory);
+
+			RedisTemplate<String, Price> template = priceTemplate(connectionFactory, priceSerializer);
+			template.afterPropertiesSet();
+			ReactiveRedisTemplate<String, Price> reactiveTemplate = reactivePriceTemplate(connectionFactory,
+					priceSerializer);
+			templates.add(template);
+			readTemplates.add(template);
+			reactiveTemplates.add(reactiveTemplate);
+			reactiveReadTemplates.add(reactiveTemplate);
+
+		}
+		return new RedisShards(Collections.unmodifiableList(templates), Collections.unmodifiableList(readTemplates),
+				Collections.unmodifiableList(reactiveTemplates), Collections.unmodifiableList(reactiveReadTemplates),
+				connectionFactories);
+	}
+
+	@Bean
+	public RedisScript<Long> priceUpsertScript() {
+		return RedisScript.of(new ClassPathResource("scripts/price-upsert.lua"), Long.class);
+	}
+
+	@Bean
+	@SuppressWarnings("rawtypes")
+	public RedisScript<List> priceBookScript() {
+		return RedisScript.of(new ClassPathResource("scripts/price-book.lua"), List.class);
+	}
+
+	/**
+	 * Updates listener of shard 0; the other shards, which announce the
+	 * prices they store themselves, get listeners of their own.
+	 */
+	@Bean
+	public RedisMessageListenerContainer redisMessageListenerContainer(LettuceConnectionFactory connectionFactory,
+			RedisShards redisShards, PriceCache priceCache, PriceSubscriptions priceSubscriptions) {
+		listenerExecutor = new ThreadPoolTaskExecutor();
+		listenerExecutor.setThreadNamePrefix("redis-listener-");
+		listenerExecutor.setCorePoolSize(listenerThreads);
+		listenerExecutor.setMaxPoolSize(listenerThreads);
+		listenerExecutor.setQueueCapacity(listenerQueue);
+		listenerExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		listenerExecutor.initialize();
+
+		RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+		container.setConnectionFactory(connectionFactory);
+		container.setTaskExecutor(listenerExecutor);
+		container.addMessageListener(priceCache, new ChannelTopic(PRICE_UPDATES_CHANNEL));
+		container.addMessageListener(priceSubscriptions, new ChannelTopic(PRICE_UPDATES_CHANNEL));
+		redisShards.listen(listenerExecutor, new ChannelTopic(PRICE_UPDATES_CHANNEL), priceCache, priceSubscriptions);
+		return container;
+	}
+
+	@PreDestroy
+	public void shutdownListenerExecutor() {
+		if (listenerExecutor != null) {
+			listenerExecutor.shutdown();
+		}
+	}
+
+	private static RedisTemplate<String, Price> priceTemplate(LettuceConnectionFactory connectionFactory,
+			PriceSerializer priceSerializer) {
+		RedisTemplate<String, Price> template = new RedisTemplate<>();
+		template.setConnectionFactory(connectionFactory);
+		template.setKeySerializer(StringRedisSerializer.UTF_8);
+		template.setValueSerializer(priceSerializer);
+		return template;
+	}
+
+	private static ReactiveRedisTemplate<String, Price> reactivePriceTemplate(
+			LettuceConnectionFactory connectionFactory, PriceSerializer priceSerializer) {
+		return new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext
+				.<String, Price>newSerializationContext(StringRedisSerializer.UTF_8).value(priceSerializer).build());
+	}
+
+	private LettuceConnectionFactory tuned(LettuceConnectionFactory factory) {
+		factory.setShareNativeConnection(!pooled);
+		factory.setPipeliningFlushPolicy(pipeliningFlushPolicy(pipelineFlush));
+		return factory;
+	}
+
+	private boolean isCluster() {
+
+		if (clusterNodes != null) {
+			for (String clusterNode : clusterNodes) {
+				if (!clusterNode.trim().isEmpty()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private RedisClusterConfiguration clusterConfiguration() {
+
+		RedisClusterConfiguration configuration = new RedisClusterConfiguration();
+		for (String clusterNode : clusterNodes) {
+			if (!clusterNode.trim().isEmpty()) {
+				configuration.addClusterNode(node(clusterNode, "efx.redis.cluster.nodes"));
+			}
+		}
+		configuration.setMaxRedirects(clusterMaxRedirects);
+		return configuration;
+	}
+
+	private LettuceClientConfiguration clientConfiguration(ClientResources clientResources, ReadFrom readFrom) {
+
+		LettuceClientConfigurationBuilder builder = pooled
+				? LettucePoolingClientConfiguration.builder().poolConfig(poolConfig())
+				: LettuceClientConfiguration.builder();
+		SocketOptions socketOptions = SocketOptions.builder().connectTimeout(Duration.ofMillis(connectTimeout)).build();
+		builder.clientResources(clientResources)
+				.commandTimeout(Duration.ofMillis(timeout))
+				.clientOptions(isCluster()
+						? ClusterClientOptions.builder()
+								.socketOptions(socketOptions)
+								.topologyRefreshOptions(ClusterTopologyRefreshOptions.builder()
+										.enableAllAdaptiveRefreshTriggers()
+										.build())
+								.build()
+						: ClientOptions.builder().socketOptions(socketOptions).build());
+		if (readFrom != null) {
+			builder.readFrom(readFrom);
+		}
+		return builder.build();
+	}
+
+	private GenericObjectPoolConfig<?> poolConfig() {
+
+		GenericObjectPoolConfig<?> config = new GenericObjectPoolConfig<>();
+		config.setMaxTotal(poolMaxActive);
+		config.setMaxIdle(poolMaxActive);
+		config.setMinIdle(poolMinIdle);
+		config.setMaxWaitMillis(poolMaxWait);
+		return config;
+	}
+
+	private static RedisNode node(String address, String property) {
+
+		int separator = address.lastIndexOf(':');
+		if (separator < 0) {
+			throw new IllegalArgumentException(property + " must be host:port, not " + address);
+		}
+		return new RedisNode(address.substring(0, separator).trim(),
+				Integer.parseInt(address.substring(separator + 1).trim()));
+	}
+
+	/**
+	 * Reads {@code each-command}, {@code on-close} or a number of commands
+	 * to buffer between flushes.
+	 */
+	static PipeliningFlushPolicy pipeliningFlushPolicy(String value) {
+
+		switch (value.trim()) {
+		case "each-command":
+			return PipeliningFlushPolicy.flushEachCommand();
+		case "on-close":
+			return PipeliningFlushPolicy.flushOnClose();
+		default:
+			try {
+				return PipeliningFlushPolicy.buffered(Integer.parseInt(value.trim()));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+						"efx.redis.pipeline-flush must be each-command, on-close or a positive number, not " + value);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.santander.efx.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.utils.HashSlots;
+
+/**
+ * The Redis servers the price book is sharded over, each owning an equal,
+ * contiguous range of the {@link HashSlots#SLOTS} hash slots, in order,
+ * the way a cluster splits them. Shard 0 is {@code spring.redis.host} and
+ * reads through its replicas, if any; {@code efx.redis.shards} lists the
+ * others. With none listed there is one shard and nothing changes, as in
+ * cluster mode, where the client routes commands to the cluster's masters.
+ * <p>
+ * Each shard has its own write and read templates, and is {@link
+ * #listen(Topic, MessageListener...) listened} to on its own, since a price
+ * is announced by the shard that stored it.
+ */
+public class RedisShards implements DisposableBean {
+
+	private final List<RedisTemplate<String, Price>> templates;
+	private final List<RedisTemplate<String, Price>> readTemplates;
+	private final List<ReactiveRedisTemplate<String, Price>> reactiveTemplates;
+	private final List<ReactiveRedisTemplate<String, Price>> reactiveReadTemplates;
+	private final List<LettuceConnectionFactory> ownedConnectionFactories;
+	private final List<RedisMessageListenerContainer> ownedListenerContainers = new ArrayList<>();
+
+	RedisShards(List<RedisTemplate<String, Price>> templates, List<RedisTemplate<String, Price>> readTemplates,
+			List<ReactiveRedisTemplate<String, Price>> reactiveTemplates,
+			List<ReactiveRedisTemplate<String, Price>> reactiveReadTemplates,
+			List<LettuceConnectionFactory> ownedConnectionFactories) {
+		this.templates = templates;
+		this.readTemplates = readTemplates;
+		this.reactiveTemplates = reactiveTemplates;
+		this.reactiveReadTemplates = reactiveReadTemplates;
+		this.ownedConnectionFactories = ownedConnectionFactories;
+	}
+
+	public int size() {
+		return templates.size();
+	}
+
+	/**
+	 * The shard owning a hash slot.
+	 */
+	public int shardOf(int slot) {
+		return (int) ((long) slot * templates.size() / HashSlots.SLOTS);
+	}
+
+	/**
+	 * The shard owning a key's hash slot.
+	 */
+	public int shardOf(byte[] key) {
+		return templates.size() == 1 ? 0 : shardOf(HashSlots.slot(key));
+	}
+
+	public RedisTemplate<String, Price> template(int shard) {
+		return templates.get(shard);
+	}
+
+	public RedisTemplate<String, Price> readTemplate(int shard) {
+		return readTemplates.get(shard);
+	}
+
+	public ReactiveRedisTemplate<String, Price> reactiveTemplate(int shard) {
+		return reactiveTemplates.get(shard);
+	}
+
+	public ReactiveRedisTemplate<String, Price> reactiveReadTemplate(int shard) {
+		return reactiveReadTemplates.get(shard);
+	}
+
+	/**
+	 * Subscribes listeners to a topic on every shard but shard 0, which is
+	 * left to the application's listener container, running them on
+	 * {@code taskExecutor}.
+	 */
+	public synchronized void listen(Executor taskExecutor, Topic topic, MessageListener... listeners) {
+
+		for (LettuceConnectionFactory connectionFactory : ownedConnectionFactories) {
+			RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+			container.setConnectionFactory(connectionFactory);
+			container.setTaskExecutor(taskExecutor);
+			for (MessageListener listener : listeners) {
+				container.addMessageListener(listener, topic);
+			}
+			container.afterPropertiesSet();
+			container.start();
+			ownedListenerContainers.add(container);
+		}
+	}
+
+	@Override
+	public synchronized void destroy() throws Exception {
+
+		for (RedisMessageListenerContainer container : ownedListenerContainers) {
+			container.destroy();
+		}
+		for (LettuceConnectionFactory connectionFactory : ownedConnectionFactories) {
+			connectionFactory.destroy();
+		}
+	}
+
+}
@@ -0,0 +1,419 @@
+package com.santander.efx.consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.service.PriceWriteBehind;
+import com.santander.efx.utils.ConsistentHashRing;
+import com.santander.efx.utils.InstrumentRegistry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Partitioned ingestion, on with {@code efx.ingestion.mode=partitioned}:
+ * the nodes sharing a Redis share the feed by instrument, each ingesting
+ * only the instruments it owns, so ingestion grows with the number of nodes
+ * and no two nodes write the same instrument.
+ * <p>
+ * Nodes register under {@code efx.ingestion.node-id} (the process name when
+ * blank) in the {@value #NODES_KEY} sorted set, scored by the epoch millis
+ * of their last heartbeat. Every {@code efx.ingestion.heartbeat-ms} a node
+ * refreshes its score, drops nodes silent for longer than
+ * {@code efx.ingestion.node-timeout-ms} and reads the members back;
+ * instruments belong to members through a {@link ConsistentHashRing} of
+ * {@code efx.ingestion.virtual-nodes} points per node, so a node joining or
+ * leaving moves only its share of them. Nodes announce joining and leaving
+ * on the {@value #NODES_CHANNEL} channel, so the others rebalance at once
+ * rather than on their next heartbeat. Clocks of the nodes must agree to
+ * well within the timeout.
+ * <p>
+ * Ticks of instruments owned elsewhere are, by {@code efx.ingestion.unowned}:
+ * <ul>
+ * <li>{@code forward}: published to the owner's
+ * {@code ingestion-inbox:<node id>} channel, one message per owner, for a
+ * feed spread over the nodes. Ticks nobody is listening for yet are
+ * ingested here.</li>
+ * <li>{@code drop}: discarded, for a feed every node receives in full.</li>
+ * </ul>
+ * While membership changes, two nodes can briefly both take an instrument;
+ * upserts are newer-wins, so that costs a stale write at worst. On
+ * rebalancing, the write-behind book is flushed, so prices of instruments
+ * handed over reach Redis before their new owner writes.
+ * <p>
+ * Owners are looked up by {@link InstrumentRegistry} id and remembered per
+ * ring, so routing a tick of a known instrument hashes nothing.
+ */
+@Component
+public class IngestionPartitions implements MessageListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IngestionPartitions.class);
+
+	public static final String NODES_KEY = "ingestion-nodes";
+	public static final String NODES_CHANNEL = "ingestion-nodes";
+
+	private static final String INBOX_PREFIX = "ingestion-inbox:";
+
+	@Autowired
+	private StringRedisTemplate stringRedisTemplate;
+
+	@Autowired
+	private RedisMessageListenerContainer redisMessageListenerContainer;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	@Autowired
+	private PriceWriteBehind priceWriteBehind;
+
+	private final boolean enabled;
+	private final String nodeId;
+	private final boolean forwarding;
+	private final long heartbeatNanos;
+	private final long nodeTimeout;
+	private final int virtualNodes;
+	private final LongAdder owned = new LongAdder();
+	private final LongAdder forwarded = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder rebalances = new LongAdder();
+
+	private volatile Partition partition;
+	private volatile Consumer<List<String>> receiver;
+	private Thread heartbeat;
+	private volatile boolean running;
+
+	public IngestionPartitions(MeterRegistry registry,
+			@Value("#{'${efx.ingestion.mode:shared}' == 'partitioned'}") boolean enabled,
+			@Value("${efx.ingestion.node-id:}") String nodeId,
+			@Value("${efx.ingestion.unowned:forward}") String unowned,
+			@Value("${efx.ingestion.heartbeat-ms:1000}") long heartbeat,
+			@Value("${efx.ingestion.node-timeout-ms:5000}") long nodeTimeout,
+			@Value("${efx.ingestion.virtual-nodes:128}") int virtualNodes) {
+
+		if (!"forward".equals(unowned) && !"drop".equals(unowned)) {
+			throw new IllegalArgumentException("efx.ingestion.unowned must be forward or drop, not " + unowned);
+		}
+		if (nodeTimeout <= heartbeat) {
+			throw new IllegalArgumentException("efx.ingestion.node-timeout-ms must exceed efx.ingestion.heartbeat-ms");
+		}
+		this.enabled = enabled;
+		this.nodeId = nodeId.trim().isEmpty() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId.trim();
+		this.forwarding = "forward".equals(unowned);
+		this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, heartbeat));
+		this.nodeTimeout = nodeTimeout;
+		this.virtualNodes = virtualNodes;
+		if (enabled) {
+			FunctionCounter.builder("efx.ingestion.ticks", owned, LongAdder::sum).tag("result", "owned")
+					.register(registry);
+			FunctionCounter.builder("efx.ingestion.ticks", forwarded, LongAdder::sum).tag("result", "forwarded")
+					.register(registry);
+			FunctionCounter.builder("efx.ingestion.ticks", dropped, LongAdder::sum).tag("result", "dropped")
+					.register(registry);
+			FunctionCounter.builder("efx.ingestion.rebalances", rebalances, LongAdder::sum).register(registry);
+			Gauge.builder("efx.ingestion.nodes", this, partitions -> partitions.nodes().size()).register(registry);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Starts owning every instrument, until the first heartbeat finds the
+	 * other nodes, and listens for membership changes and forwarded ticks.
+	 */
+	@PostConstruct
+	public void start() {
+
+		if (!enabled) {
+			return;
+		}
+		partition = new Partition(new ConsistentHashRing(Collections.singleton(nodeId), virtualNodes),
+				instrumentRegistry.capacity());
+		redisMessageListenerContainer.addMessageListener(this,
+				Arrays.asList(new ChannelTopic(NODES_CHANNEL), new ChannelTopic(INBOX_PREFIX + nodeId)));
+		running = true;
+		heartbeat = new Thread(this::run, "ingestion-heartbeat");
+		heartbeat.setDaemon(true);
+		heartbeat.start();
+	}
+
+	/**
+	 * Where forwarded ticks go, already journaled by the node that received
+	 * them.
+	 */
+	public void receive(Consumer<List<String>> receiver) {
+		this.receiver = receiver;
+	}
+
+	/**
+	 * The ticks of a message this node is to ingest, those it owns; the
+	 * others are forwarded or dropped. Lines without an instrument are kept,
+	 * to be rejected here.
+	 */
+	public List<String> claim(List<String> csvPrices) {
+
+		Partition current = partition;
+		List<String> claimed = new ArrayList<>(csvPrices.size());
+		Map<String, List<String>> unowned = null;
+		for (String csvPrice : csvPrices) {
+			String owner = owner(current, csvPrice);
+			if (owner == null || owner.equals(nodeId)) {
+				claimed.add(csvPrice);
+			} else {
+				if (unowned == null) {
+					unowned = new LinkedHashMap<>();
+				}
+				unowned.computeIfAbsent(owner, node -> new ArrayList<>()).add(csvPrice);
+			}
+		}
+		if (unowned != null) {
+			unowned.forEach((owner, csvLines) -> {
+				if (!handOver(owner, csvLines)) {
+					claimed.addAll(csvLines);
+				}
+			});
+		}
+		owned.add(claimed.size());
+		return claimed;
+	}
+
+	/**
+	 * The node owning an instrument, as far as this node knows.
+	 */
+	public String ownerOf(String instrumentName) {
+		return partition.ring.owner(instrumentName);
+	}
+
+	/**
+	 * The live nodes, sorted, as of the last heartbeat.
+	 */
+	public List<String> nodes() {
+		Partition current = partition;
+		return current != null ? current.ring.nodes() : Collections.emptyList();
+	}
+
+	public long getOwned() {
+		return owned.sum();
+	}
+
+	public long getForwarded() {
+		return forwarded.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+
+		String body = new String(message.getBody(), UTF_8);
+		if (NODES_CHANNEL.equals(new String(message.getChannel(), UTF_8))) {
+			if (!body.equals(nodeId)) {
+				LockSupport.unpark(heartbeat);
+			}
+			return;
+		}
+
+		List<String> csvPrices = Arrays.asList(body.split("\n"));
+		owned.add(csvPrices.size());
+		Consumer<List<String>> current = receiver;
+		try {
+			if (current != null) {
+				current.accept(csvPrices);
+			}
+		} catch (RuntimeException e) {
+			LOGGER.warn("Forwarded ticks not ingested: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Leaves the ring and tells the other nodes to take over.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+
+		if (!enabled) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(heartbeat);
+		heartbeat.join();
+		try {
+			stringRedisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+			stringRedisTemplate.convertAndSend(NODES_CHANNEL, nodeId);
+		} catch (DataAccessException e) {
+			LOGGER.warn("Node {} left without telling, the others find out in {} ms: {}", nodeId, nodeTimeout,
+					e.getMessage());
+		}
+	}
+
+	private void run() {
+
+		boolean announced = false;
+		while (running) {
+			try {
+				heartbeat();
+				if (!announced) {
+					stringRedisTemplate.convertAndSend(NODES_CHANNEL, nodeId);
+					announced = true;
+				}
+			} catch (DataAccessException e) {
+				LOGGER.warn("Heartbeat of node {} failed, keeping {} nodes: {}", nodeId, nodes().size(),
+						e.getMessage());
+			}
+			LockSupport.parkNanos(this, heartbeatNanos);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void heartbeat() {
+
+		long now = System.currentTimeMillis();
+		List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			StringRedisConnection commands = (StringRedisConnection) connection;
+			commands.zAdd(NODES_KEY, now, nodeId);
+			commands.zRemRangeByScore(NODES_KEY, Double.NEGATIVE_INFINITY, now - nodeTimeout);
+			commands.zRange(NODES_KEY, 0, -1);
+			return null;
+		});
+		Set<String> members = new TreeSet<>((Set<String>) results.get(2));
+		members.add(nodeId);
+		rebalance(members);
+	}
+
+	private void rebalance(Set<String> members) {
+
+		Partition previous = partition;
+		if (previous.ring.nodes().equals(new ArrayList<>(members))) {
+			return;
+		}
+		ConsistentHashRing ring = new ConsistentHashRing(members, virtualNodes);
+		int size = instrumentRegistry.size();
+		int moved = 0;
+		int kept = 0;
+		for (int id = 0; id < size; id++) {
+			String name = instrumentRegistry.name(id);
+			String owner = ring.owner(name);
+			if (!owner.equals(previous.ring.owner(name))) {
+				moved++;
+			}
+			if (owner.equals(nodeId)) {
+				kept++;
+			}
+		}
+		partition = new Partition(ring, instrumentRegistry.capacity());
+		rebalances.increment();
+		if (priceWriteBehind.isEnabled()) {
+			priceWriteBehind.flush();
+		}
+		LOGGER.info("Ingestion nodes {}: {} owns {} of {} known instruments, {} moved", members, nodeId, kept, size,
+				moved);
+	}
+
+	private boolean handOver(String owner, List<String> csvPrices) {
+
+		if (!forwarding) {
+			dropped.add(csvPrices.size());
+			return true;
+		}
+		try {
+			String payload = String.join("\n", csvPrices);
+			Long receivers = stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+					((StringRedisConnection) connection).publish(INBOX_PREFIX + owner, payload));
+			if (receivers != null && receivers > 0) {
+				forwarded.add(csvPrices.size());
+				return true;
+			}
+		} catch (DataAccessException e) {
+			LOGGER.warn("Ticks for node {} ingested here, forwarding failed: {}", owner, e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * The owner of the instrument in the second field of a CSV tick, or
+	 * {@code null} without one.
+	 */
+	private String owner(Partition current, String csvPrice) {
+
+		int start = csvPrice.indexOf(',') + 1;
+		int end = start > 0 ? csvPrice.indexOf(',', start) : -1;
+		if (end < 0) {
+			return null;
+		}
+		while (start < end && csvPrice.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && csvPrice.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start == end) {
+			return null;
+		}
+
+		int id = instrumentRegistry.id(csvPrice, start, end);
+		if (id == InstrumentRegistry.UNKNOWN) {
+			return current.ring.owner(csvPrice, start, end);
+		}
+		String owner = current.owners[id];
+		if (owner == null) {
+			owner = current.ring.owner(instrumentRegistry.name(id));
+			current.owners[id] = owner;
+		}
+		return owner;
+	}
+
+	/**
+	 * A ring and the owners looked up in it so far, by instrument id. Racing
+	 * lookups store the same owner, so the array needs no locking.
+	 */
+	private static final class Partition {
+
+		private final ConsistentHashRing ring;
+		private final String[] owners;
+
+		private Partition(ConsistentHashRing ring, int instruments) {
+			this.ring = ring;
+			this.owners = new String[instruments];
+		}
+
+	}
+
+}
@@ -0,0 +1,363 @@
+package com.santander.efx.consumer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.exception.ServiceException;
+import com.santander.efx.model.Price;
+import com.santander.efx.model.PriceTick;
+import com.santander.efx.service.PriceService;
+import com.santander.efx.utils.AsciiSequence;
+import com.santander.efx.utils.CsvTickParser;
+
+/**
+ * Loads CSV price files, one feed line per line, into the book. Files are
+ * memory-mapped in chunks of up to {@code efx.backfill.chunk-size} bytes,
+ * split on line boundaries, and parsed on {@code efx.backfill.threads}
+ * threads (one per core when 0) straight from the mapped bytes. Each chunk
+ * keeps only the newest tick per instrument, chunks are then merged the same
+ * way, and the survivors get the spread and are upserted in pipelined
+ * batches through {@link PriceService#savePrices(java.util.Collection)}, so
+ * the write load follows the number of instruments rather than lines.
+ * Ticks as new as one already kept lose, as they do live.
+ * <p>
+ * Lines that do not parse are counted and skipped. Progress is logged every
+ * {@code efx.backfill.progress-interval-ms}. One backfill runs at a time.
+ */
+@Component
+public class PriceBackfill {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PriceBackfill.class);
+
+	private static final int WRITE_BATCH = 512;
+	private static final int PROGRESS_LINES = 1 << 16;
+	private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+	@Autowired
+	private CsvTickParser csvTickParser;
+
+	@Autowired
+	private PriceService priceService;
+
+	private final int threads;
+	private final long chunkSize;
+	private final long progressInterval;
+	private final AtomicBoolean running = new AtomicBoolean();
+	private final AtomicLong linesRead = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private volatile long bytesTotal;
+
+	public PriceBackfill(@Value("${efx.backfill.threads:0}") int threads,
+			@Value("${efx.backfill.chunk-size:67108864}") long chunkSize,
+			@Value("${efx.backfill.progress-interval-ms:5000}") long progressInterval) {
+
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.chunkSize = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * Loads a CSV file, or every regular file of a directory.
+	 */
+	public Report load(Path path) throws IOException {
+
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException("A backfill is already running");
+		}
+		try {
+			List<Path> files;
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> children = Files.list(path)) {
+					files = children.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+				}
+			} else {
+				files = Collections.singletonList(path);
+			}
+			return load(files);
+		} finally {
+			running.set(false);
+		}
+	}
+
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	public long getLinesRead() {
+		return linesRead.get();
+	}
+
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public long getBytesTotal() {
+		return bytesTotal;
+	}
+
+	private Report load(List<Path> files) throws IOException {
+
+		long start = System.nanoTime();
+		List<Chunk> chunks = new ArrayList<>();
+		long total = 0;
+		for (Path file : files) {
+			total += split(file, chunks);
+		}
+		linesRead.set(0);
+		bytesRead.set(0);
+		bytesTotal = total;
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("price-backfill-");
+		threadFactory.setDaemon(true);
+		ExecutorService workers = Executors.newFixedThreadPool(threads, threadFactory);
+		Map<String, PriceTick> newest = new HashMap<>();
+		long rejected = 0;
+		try {
+			List<Future<Partial>> partials = new ArrayList<>(chunks.size());
+			chunks.forEach(chunk -> partials.add(workers.submit(() -> parse(chunk))));
+			for (Future<Partial> future : partials) {
+				Partial partial = await(future, start);
+				rejected += partial.rejected;
+				partial.newest.forEach((instrumentName, tick) -> newest.merge(instrumentName, tick,
+						(current, candidate) -> candidate.getTimestamp() > current.getTimestamp() ? candidate : current));
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+
+		List<Price> batch = new ArrayList<>(WRITE_BATCH);
+		for (PriceTick tick : newest.values()) {
+			batch.add(priceService.adjustedPrice(tick));
+			if (batch.size() == WRITE_BATCH) {
+				priceService.savePrices(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			priceService.savePrices(batch);
+		}
+
+		Report report = new Report(files.size(), linesRead.get(), rejected, newest.size(), total,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		LOGGER.info("Backfilled {}", report);
+		return report;
+	}
+
+	/**
+	 * Cuts a file into chunks of about {@link #chunkSize} bytes, at least one
+	 * per thread, each ending after a line feed or at the end of the file.
+	 */
+	private long split(Path file, List<Chunk> chunks) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long target = Math.max(1, Math.min(chunkSize, (size + threads - 1) / threads));
+			long start = 0;
+			while (start < size) {
+				long end = nextLine(channel, Math.min(size, start + target));
+				chunks.add(new Chunk(file, start, end - start));
+				start = end;
+			}
+			return size;
+		}
+	}
+
+	private static long nextLine(FileChannel channel, long position) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long size = channel.size();
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private Partial parse(Chunk chunk) throws IOException {
+
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.length);
+		}
+
+		Partial partial = new Partial();
+		AsciiSequence line = new AsciiSequence();
+		PriceTick tick = new PriceTick();
+		int limit = buffer.capacity();
+		int lineStart = 0;
+		int lines = 0;
+		int reported = 0;
+		for (int i = 0; i <= limit; i++) {
+			if (i < limit && buffer.get(i) != '\n') {
+				continue;
+			}
+			int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+			if (lineEnd > lineStart) {
+				lines++;
+				try {
+					csvTickParser.parse(line.wrap(buffer, lineStart, lineEnd - lineStart), tick);
+					PriceTick current = partial.newest.get(tick.getInstrumentName());
+					if (current == null) {
+						partial.newest.put(tick.getInstrumentName(), tick);
+						tick = new PriceTick();
+					} else if (tick.getTimestamp() > current.getTimestamp()) {
+						partial.newest.put(tick.getInstrumentName(), tick);
+						tick = current;
+					}
+				} catch (ServiceException e) {
+					partial.rejected++;
+				}
+				if (lines == PROGRESS_LINES) {
+					linesRead.addAndGet(lines);
+					bytesRead.addAndGet(i - reported);
+					lines = 0;
+					reported = i;
+				}
+			}
+			lineStart = i + 1;
+		}
+		linesRead.addAndGet(lines);
+		bytesRead.addAndGet(limit - reported);
+		return partial;
+	}
+
+	private Partial await(Future<Partial> future, long start) throws IOException {
+
+		while (true) {
+			try {
+				return future.get(progressInterval, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				LOGGER.info("Backfilling: {} lines, {}/{} MB, {} lines/s", linesRead.get(), bytesRead.get() >> 20,
+						bytesTotal >> 20, linesRead.get() * 1000 / elapsed);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Backfill interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				if (e.getCause() instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				}
+				throw new IllegalStateException("Backfill failed", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * What a backfill loaded and how fast.
+	 */
+	public static final class Report {
+
+		private final int files;
+		private final long lines;
+		private final long rejected;
+		private final int instruments;
+		private final long bytes;
+		private final long millis;
+
+		private Report(int files, long lines, long rejected, int instruments, long bytes, long millis) {
+			this.files = files;
+			this.lines = lines;
+			this.rejected = rejected;
+			this.instruments = instruments;
+			this.bytes = bytes;
+			this.millis = millis;
+		}
+
+		public int getFiles() {
+			return files;
+		}
+
+		public long getLines() {
+			return lines;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * Instruments written, one newest price each.
+		 */
+		public int getInstruments() {
+			return instruments;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public long getLinesPerSecond() {
+			return lines * 1000 / Math.max(1, millis);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s lines (%s rejected) of %s files, %s instruments, in %s ms, %s lines/s", lines,
+					rejected, files, instruments, millis, getLinesPerSecond());
+		}
+
+	}
+
+	private static final class Chunk {
+
+		private final Path file;
+		private final long start;
+		private final long length;
+
+		private Chunk(Path file, long start, long length) {
+			this.file = file;
+			this.start = start;
+			this.length = length;
+		}
+
+	}
+
+	private static final class Partial {
+
+		private final Map<String, PriceTick> newest = new HashMap<>();
+		private long rejected;
+
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.santander.efx.consumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.service.PriceMetrics;
+import com.santander.efx.service.PriceService;
+import com.santander.efx.utils.InstrumentRegistry;
+
+/**
+ * Hands adjusted prices to {@code efx.ingestion.lanes} single-writer lanes,
+ * chosen by {@link InstrumentRegistry} id, so every instrument is always
+ * written by the same thread and consecutive ids spread evenly. Lanes keep
+ * their per-instrument state in arrays indexed by id. A lane holds at most
+ * one pending price per instrument, the newest, and writes whatever is
+ * pending in one pipelined batch, so the write load follows the number of
+ * active instruments rather than the tick rate. Prices older than the last
+ * one a lane wrote for the instrument are dropped before reaching Redis. A
+ * batch that fails is put back as pending, unless newer prices arrived
+ * meanwhile, and retried after a pause; only a lane being stopped drops
+ * it. With no lanes, prices are saved on the caller's thread.
+ */
+@Component
+public class PriceIngestionLanes {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PriceIngestionLanes.class);
+
+	private static final int MAX_BATCH = 512;
+	private static final long RETRY_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	@Autowired
+	private PriceService priceService;
+
+	@Autowired
+	private PriceMetrics priceMetrics;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	private final Lane[] lanes;
+
+	public PriceIngestionLanes(@Value("${efx.ingestion.lanes:0}") int laneCount) {
+		this.lanes = new Lane[laneCount];
+	}
+
+	public boolean isEnabled() {
+		return lanes.length > 0;
+	}
+
+	public void submit(Price adjustedPrice) {
+
+		int id = adjustedPrice.getInstrumentId();
+		if (id == InstrumentRegistry.UNKNOWN) {
+			id = instrumentRegistry.resolve(adjustedPrice.getInstrumentName());
+		}
+		lanes[id % lanes.length].offer(id, adjustedPrice);
+	}
+
+	@PostConstruct
+	public void start() {
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = new Lane(i, instrumentRegistry.capacity());
+			lanes[i].thread.start();
+		}
+	}
+
+	/**
+	 * Stops the lanes once everything pending has been written.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+
+		for (Lane lane : lanes) {
+			lane.running = false;
+			LockSupport.unpark(lane.thread);
+		}
+		for (Lane lane : lanes) {
+			lane.thread.join();
+		}
+	}
+
+	private final class Lane implements Runnable {
+
+		private final AtomicReferenceArray<Price> pending;
+		private final Queue<Integer> ready = new ConcurrentLinkedQueue<>();
+		private final long[] written;
+		private final Thread thread;
+		private volatile boolean running = true;
+		private volatile boolean parked;
+
+		private Lane(int index, int instruments) {
+			this.pending = new AtomicReferenceArray<>(instruments);
+			this.written = new long[instruments];
+			Arrays.fill(written, Long.MIN_VALUE);
+			this.thread = new Thread(this, "price-ingestion-" + index);
+			this.thread.setDaemon(true);
+		}
+
+		private void offer(int id, Price price) {
+
+			Price current;
+			do {
+				current = pending.get(id);
+				if (current != null && price.getTimestamp() <= current.getTimestamp()) {
+					break;
+				}
+			} while (!pending.compareAndSet(id, current, price));
+			if (current == null) {
+				ready.add(id);
+			} else {
+				priceMetrics.conflated();
+			}
+			if (parked) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		/**
+		 * Puts a price that failed to be written back as pending, unless a
+		 * newer one is pending already.
+		 */
+		private void retry(int id, Price price) {
+
+			Price current;
+			do {
+				current = pending.get(id);
+				if (current != null && price.getTimestamp() <= current.getTimestamp()) {
+					return;
+				}
+			} while (!pending.compareAndSet(id, current, price));
+			if (current == null) {
+				ready.add(id);
+			}
+		}
+
+		@Override
+		public void run() {
+
+			List<Price> batch = new ArrayList<>(MAX_BATCH);
+			int[] batchIds = new int[MAX_BATCH];
+			long[] previouslyWritten = new long[MAX_BATCH];
+			while (running || !ready.isEmpty()) {
+				Integer id;
+				while (batch.size() < MAX_BATCH && (id = ready.poll()) != null) {
+					Price price = pending.getAndSet(id, null);
+					if (price != null && written[id] < price.getTimestamp()) {
+						batchIds[batch.size()] = id;
+						previouslyWritten[batch.size()] = written[id];
+						written[id] = price.getTimestamp();
+						batch.add(price);
+					} else if (price != null) {
+						priceMetrics.stale(1);
+					}
+				}
+
+				if (batch.isEmpty()) {
+					parked = true;
+					if (running && ready.isEmpty()) {
+						LockSupport.park(this);
+					}
+					parked = false;
+					continue;
+				}
+
+				try {
+					priceService.savePrices(batch);
+				} catch (RuntimeException e) {
+					for (int i = 0; i < batch.size(); i++) {
+						written[batchIds[i]] = previouslyWritten[i];
+					}
+					if (running) {
+						LOGGER.warn("Retrying {} prices on {}: {}", batch.size(), thread.getName(), e.getMessage());
+						for (int i = 0; i < batch.size(); i++) {
+							retry(batchIds[i], batch.get(i));
+						}
+						LockSupport.parkNanos(this, RETRY_PAUSE_NANOS);
+					} else {
+						LOGGER.error("Dropped {} prices on {}: {}", batch.size(), thread.getName(), e.getMessage());
+					}
+				}
+				batch.clear();
+			}
+		}
+
+	}
+
+}
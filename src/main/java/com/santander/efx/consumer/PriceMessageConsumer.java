@@ -1,5 +1,8 @@
 package com.santander.efx.consumer;
 
+import java.util.List;
+
 public interface PriceMessageConsumer {
 	void onMessage(String message);
+	void onMessages(List<String> messages);
 }
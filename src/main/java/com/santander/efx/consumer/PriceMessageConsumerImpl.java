@@ -1,8 +1,16 @@
 package com.santander.efx.consumer;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.santander.efx.model.Price;
 import com.santander.efx.service.PriceService;
 
 @Component
@@ -10,10 +18,66 @@ public class PriceMessageConsumerImpl implements PriceMessageConsumer {
 
 	@Autowired
 	private PriceService priceService;
-	
+
+	@Autowired
+	private PriceIngestionLanes ingestionLanes;
+
+	@Autowired
+	private TickJournal tickJournal;
+
+	@Autowired
+	private IngestionPartitions ingestionPartitions;
+
+	@PostConstruct
+	public void start() {
+		ingestionPartitions.receive(this::save);
+	}
+
 	@Override
 	public void onMessage(String csvPrice) {
-		priceService.saveCsvPrice(csvPrice);
+		tickJournal.append(csvPrice);
+		if (csvPrice.indexOf('\n') >= 0) {
+			save(claim(splitLines(csvPrice)));
+		} else if (ingestionPartitions.isEnabled()) {
+			save(ingestionPartitions.claim(Collections.singletonList(csvPrice)));
+		} else if (ingestionLanes.isEnabled()) {
+			ingestionLanes.submit(priceService.parseAdjustedPrice(csvPrice));
+		} else {
+			priceService.saveCsvPrice(csvPrice);
+		}
+	}
+
+	@Override
+	public void onMessages(List<String> csvPrices) {
+		csvPrices.forEach(tickJournal::append);
+		save(claim(csvPrices));
+	}
+
+	private List<String> claim(List<String> csvPrices) {
+		return ingestionPartitions.isEnabled() ? ingestionPartitions.claim(csvPrices) : csvPrices;
+	}
+
+	private void save(List<String> csvPrices) {
+		if (csvPrices.isEmpty()) {
+			return;
+		}
+		if (ingestionLanes.isEnabled()) {
+			List<Price> adjustedPrices = new ArrayList<>(csvPrices.size());
+			csvPrices.forEach(csvPrice -> adjustedPrices.add(priceService.parseAdjustedPrice(csvPrice)));
+			adjustedPrices.forEach(ingestionLanes::submit);
+		} else {
+			priceService.saveCsvPrices(csvPrices);
+		}
+	}
+
+	private List<String> splitLines(String payload) {
+		List<String> lines = new ArrayList<>();
+		for (String line : payload.split("\\r?\\n")) {
+			if (StringUtils.isNotBlank(line)) {
+				lines.add(line);
+			}
+		}
+		return lines;
 	}
 
 }
@@ -0,0 +1,430 @@
+package com.santander.efx.consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.exception.ServiceException;
+import com.santander.efx.model.Price;
+import com.santander.efx.service.PriceService;
+
+/**
+ * Append-only journal of the raw messages handed to
+ * {@link PriceMessageConsumer}, kept in {@code efx.journal.dir} (no journal
+ * when blank) so the book can be rebuilt after a restart of the service or
+ * of Redis.
+ * <p>
+ * Messages go to memory-mapped segment files of
+ * {@code efx.journal.segment-size} bytes, {@code ticks-<index>.journal}, the
+ * newest {@code efx.journal.retained-segments} of which are kept (all when
+ * 0). A segment starts with a {@value #SEGMENT_HEADER} byte header, magic
+ * and version ints and the segment index as a long, followed by records:
+ * <ul>
+ * <li>int: length of the message in bytes, written last so a record cut
+ * short by a crash reads as the end of the journal; -1 marks the end of a
+ * rolled segment</li>
+ * <li>long: epoch millis the message was received at</li>
+ * <li>the message in UTF-8, so one byte per character of the usual ASCII
+ * message</li>
+ * </ul>
+ * An append copies the message into the mapped page and nothing else: the
+ * operating system writes it out, so every appended message survives a
+ * crash of the service, while a crash of the host can lose what was not yet
+ * written out. A rolled segment is forced to disk, and segments beyond the
+ * retained ones deleted, on a background thread, so appends never wait for
+ * the disk; the last segment is forced on close. When a new segment cannot
+ * be started, appends are dropped and counted, and starting it is retried
+ * every {@value #RETRY_MILLIS} ms.
+ * <p>
+ * {@link #replay()} runs every journaled tick through
+ * {@link PriceService#savePrices(java.util.Collection)}, on startup when
+ * {@code efx.journal.replay-on-startup} is set. Upserts are newer-wins and
+ * history is keyed by tick, so replaying ticks already stored changes
+ * nothing.
+ */
+@Component
+public class TickJournal implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TickJournal.class);
+
+	static final int SEGMENT_HEADER = 16;
+	static final int RECORD_HEADER = 12;
+	private static final int MAGIC = 0x45464a4c;
+	private static final int VERSION = 1;
+	private static final int END_OF_SEGMENT = -1;
+	private static final int MIN_SEGMENT_SIZE = 4096;
+	private static final int REPLAY_BATCH = 512;
+	private static final long RETRY_MILLIS = 1000;
+	private static final Pattern SEGMENT_NAME = Pattern.compile("ticks-(\\d+)\\.journal");
+
+	@Autowired
+	private PriceService priceService;
+
+	private final File directory;
+	private final int segmentSize;
+	private final int retainedSegments;
+	private final boolean replayOnStartup;
+
+	private MappedByteBuffer segment;
+	private long segmentIndex;
+	private int position;
+	private long appended;
+	private long dropped;
+	private long retryAt;
+	private boolean closed;
+	private ExecutorService roller;
+
+	public TickJournal(@Value("${efx.journal.dir:}") String directory,
+			@Value("${efx.journal.segment-size:67108864}") int segmentSize,
+			@Value("${efx.journal.retained-segments:0}") int retainedSegments,
+			@Value("${efx.journal.replay-on-startup:false}") boolean replayOnStartup) {
+
+		if (segmentSize < MIN_SEGMENT_SIZE) {
+			throw new IllegalArgumentException("efx.journal.segment-size must be at least " + MIN_SEGMENT_SIZE);
+		}
+		this.directory = directory.trim().isEmpty() ? null : new File(directory.trim());
+		this.segmentSize = segmentSize;
+		this.retainedSegments = retainedSegments;
+		this.replayOnStartup = replayOnStartup;
+	}
+
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * Maps the newest segment and moves past its last complete record, or
+	 * starts the first one.
+	 */
+	@PostConstruct
+	public synchronized void open() throws IOException {
+
+		if (!isEnabled()) {
+			return;
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create journal directory " + directory);
+		}
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tick-journal-roller-");
+		threadFactory.setDaemon(true);
+		roller = Executors.newSingleThreadExecutor(threadFactory);
+
+		long[] indexes = segmentIndexes();
+		if (indexes.length == 0) {
+			map(1, true);
+			return;
+		}
+
+		map(indexes[indexes.length - 1], false);
+		while (position + RECORD_HEADER <= segment.capacity()) {
+			int length = segment.getInt(position);
+			if (length == END_OF_SEGMENT) {
+				roll();
+				return;
+			}
+			if (length <= 0 || position + RECORD_HEADER + length > segment.capacity()) {
+				break;
+			}
+			position += RECORD_HEADER + length;
+		}
+	}
+
+	/**
+	 * Journals one raw message. Costs a copy into the mapped segment, plus
+	 * mapping a new one every {@code efx.journal.segment-size} bytes.
+	 */
+	public void append(CharSequence message) {
+
+		int length = message.length();
+		if (!isEnabled() || length == 0) {
+			return;
+		}
+		byte[] encoded = null;
+		for (int i = 0; i < length; i++) {
+			if (message.charAt(i) >= 0x80) {
+				encoded = message.toString().getBytes(UTF_8);
+				length = encoded.length;
+				break;
+			}
+		}
+		if (length > segmentSize - SEGMENT_HEADER - RECORD_HEADER - 4) {
+			LOGGER.error("Not journaled, {} bytes do not fit in a segment", length);
+			return;
+		}
+
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			if (segment == null && !retry()) {
+				dropped++;
+				return;
+			}
+			if (position + RECORD_HEADER + length + 4 > segment.capacity() && !roll()) {
+				dropped++;
+				return;
+			}
+			MappedByteBuffer buffer = segment;
+			int start = position;
+			buffer.putLong(start + 4, System.currentTimeMillis());
+			for (int i = 0; i < length; i++) {
+				buffer.put(start + RECORD_HEADER + i, encoded != null ? encoded[i] : (byte) message.charAt(i));
+			}
+			buffer.putInt(start, length);
+			position = start + RECORD_HEADER + length;
+			appended++;
+		}
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (isEnabled() && replayOnStartup) {
+			replay();
+		}
+	}
+
+	/**
+	 * Runs every journaled tick through the price pipeline, oldest first, in
+	 * pipelined batches. Lines that do not parse are skipped.
+	 *
+	 * @return the number of ticks replayed
+	 */
+	public long replay() {
+
+		long start = System.nanoTime();
+		List<Price> batch = new ArrayList<>(REPLAY_BATCH);
+		long[] counts = new long[2];
+		read(message -> {
+			for (String line : message.split("\\r?\\n")) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				try {
+					batch.add(priceService.parseAdjustedPrice(line));
+				} catch (ServiceException e) {
+					counts[1]++;
+					continue;
+				}
+				if (batch.size() == REPLAY_BATCH) {
+					counts[0] += save(batch);
+				}
+			}
+		});
+		counts[0] += save(batch);
+
+		LOGGER.info("Replayed {} journaled ticks in {} ms, skipped {} bad lines", counts[0],
+				(System.nanoTime() - start) / 1_000_000, counts[1]);
+		return counts[0];
+	}
+
+	/**
+	 * Hands every journaled message to {@code action}, oldest first. Messages
+	 * appended meanwhile may be left out.
+	 */
+	public void read(Consumer<String> action) {
+
+		long lastIndex;
+		int end;
+		synchronized (this) {
+			if (closed || segmentIndex == 0) {
+				return;
+			}
+			lastIndex = segmentIndex;
+			end = position;
+		}
+
+		for (long index : segmentIndexes()) {
+			if (index > lastIndex) {
+				break;
+			}
+			MappedByteBuffer buffer;
+			try (FileChannel channel = new RandomAccessFile(segmentFile(index), "r").getChannel()) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			int limit = index == lastIndex ? end : buffer.capacity();
+			int offset = SEGMENT_HEADER;
+			byte[] bytes = new byte[256];
+			while (offset + RECORD_HEADER <= limit) {
+				int length = buffer.getInt(offset);
+				if (length <= 0 || offset + RECORD_HEADER + length > limit) {
+					break;
+				}
+				if (bytes.length < length) {
+					bytes = new byte[length];
+				}
+				for (int i = 0; i < length; i++) {
+					bytes[i] = buffer.get(offset + RECORD_HEADER + i);
+				}
+				action.accept(new String(bytes, 0, length, UTF_8));
+				offset += RECORD_HEADER + length;
+			}
+		}
+	}
+
+	public synchronized long getAppended() {
+		return appended;
+	}
+
+	/**
+	 * Messages not journaled because no segment could be started.
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	public synchronized long getSegmentIndex() {
+		return segmentIndex;
+	}
+
+	public synchronized int getPosition() {
+		return position;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Forces the last segment to disk, after waiting for rolled ones.
+	 */
+	@PreDestroy
+	public void close() throws InterruptedException {
+
+		synchronized (this) {
+			closed = true;
+			if (segment != null) {
+				segment.force();
+				segment = null;
+			}
+		}
+		if (roller != null) {
+			roller.shutdown();
+			roller.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	private long save(List<Price> batch) {
+
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		int size = batch.size();
+		priceService.savePrices(batch);
+		batch.clear();
+		return size;
+	}
+
+	/**
+	 * Ends the current segment and starts the next, leaving the rolled one
+	 * to the roller thread.
+	 *
+	 * @return whether the next segment was started
+	 */
+	private boolean roll() {
+
+		MappedByteBuffer rolled = segment;
+		rolled.putInt(position, END_OF_SEGMENT);
+		segment = null;
+		roller.execute(rolled::force);
+		return retry();
+	}
+
+	/**
+	 * Starts the segment after the last one, unless that failed less than
+	 * {@value #RETRY_MILLIS} ms ago.
+	 */
+	private boolean retry() {
+
+		long now = System.currentTimeMillis();
+		if (now < retryAt) {
+			return false;
+		}
+		try {
+			map(segmentIndex + 1, true);
+		} catch (IOException e) {
+			retryAt = now + RETRY_MILLIS;
+			LOGGER.error("Journal paused, cannot start segment {}, retrying in {} ms: {}", segmentIndex + 1,
+					RETRY_MILLIS, e.getMessage());
+			return false;
+		}
+		retryAt = 0;
+		if (retainedSegments > 0) {
+			long oldestRetained = segmentIndex - retainedSegments + 1;
+			roller.execute(() -> deleteBefore(oldestRetained));
+		}
+		return true;
+	}
+
+	private void deleteBefore(long oldestRetained) {
+		for (long index : segmentIndexes()) {
+			if (index < oldestRetained && !segmentFile(index).delete()) {
+				LOGGER.warn("Cannot delete journal segment {}", segmentFile(index));
+			}
+		}
+	}
+
+	private void map(long index, boolean create) throws IOException {
+
+		try (RandomAccessFile file = new RandomAccessFile(segmentFile(index), "rw")) {
+			if (create) {
+				file.setLength(segmentSize);
+			}
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+			if (create) {
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, VERSION);
+				buffer.putLong(8, index);
+			} else if (buffer.capacity() < SEGMENT_HEADER || buffer.getInt(0) != MAGIC
+					|| buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a journal segment: " + segmentFile(index));
+			}
+			this.segment = buffer;
+			this.segmentIndex = index;
+			this.position = SEGMENT_HEADER;
+		}
+	}
+
+	private long[] segmentIndexes() {
+
+		String[] names = directory.list();
+		if (names == null) {
+			return new long[0];
+		}
+		return Arrays.stream(names).map(SEGMENT_NAME::matcher).filter(Matcher::matches)
+				.mapToLong(matcher -> Long.parseLong(matcher.group(1))).sorted().toArray();
+	}
+
+	private File segmentFile(long index) {
+		return new File(directory, String.format("ticks-%012d.journal", index));
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.santander.efx.controller;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.consumer.PriceBackfill;
+
+/**
+ * {@code /actuator/backfill}: a {@code POST} of {@code {"path": "..."}}
+ * loads a CSV file, or a directory of them, on the server into the book and
+ * answers with what was loaded; a {@code GET} shows the progress of the
+ * running one.
+ * <p>
+ * Paths are taken relative to {@code efx.backfill.dir} and must stay inside
+ * it, links followed; with no directory configured nothing is loaded. The
+ * endpoint is not exposed over the web by default; expose it only behind
+ * authentication.
+ */
+@Component
+@Endpoint(id = "backfill")
+public class PriceBackfillEndpoint {
+
+	@Autowired
+	private PriceBackfill priceBackfill;
+
+	@Value("${efx.backfill.dir:}")
+	private String directory;
+
+	@ReadOperation
+	public Map<String, Object> progress() {
+
+		Map<String, Object> progress = new LinkedHashMap<>();
+		progress.put("running", priceBackfill.isRunning());
+		progress.put("lines", priceBackfill.getLinesRead());
+		progress.put("bytes", priceBackfill.getBytesRead());
+		progress.put("totalBytes", priceBackfill.getBytesTotal());
+		return progress;
+	}
+
+	@WriteOperation
+	public PriceBackfill.Report load(String path) throws IOException {
+		return priceBackfill.load(resolve(path));
+	}
+
+	private Path resolve(String path) throws IOException {
+
+		if (directory == null || directory.trim().isEmpty()) {
+			throw new InvalidEndpointRequestException("No efx.backfill.dir configured", "Backfill disabled");
+		}
+		Path root = Paths.get(directory.trim()).toRealPath();
+		try {
+			Path resolved = root.resolve(path).normalize().toRealPath();
+			if (resolved.startsWith(root)) {
+				return resolved;
+			}
+		} catch (NoSuchFileException e) {
+			throw new InvalidEndpointRequestException("No such file: " + path, "No such file");
+		}
+		throw new InvalidEndpointRequestException("Outside efx.backfill.dir: " + path, "Path outside backfill dir");
+	}
+
+}
@@ -1,31 +1,185 @@
 package com.santander.efx.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.santander.efx.exception.ServiceException;
 import com.santander.efx.model.Price;
+import com.santander.efx.model.PriceBar;
+import com.santander.efx.repository.PriceHistoryRepository;
 import com.santander.efx.service.PriceService;
+import com.santander.efx.utils.DateUtils;
+import com.santander.efx.utils.InstrumentRegistry;
 
 @RestController
 @RequestMapping("/price")
 public class PriceController {
 
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+	private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
 	@Autowired
 	private PriceService priceService;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private DateUtils dateUtils;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	@Value("${efx.push.timeout-ms:0}")
+	private long pushTimeout;
+
+	/**
+	 * With {@code efx.read.mode=async} the read endpoints release the servlet
+	 * thread while Redis answers; with {@code blocking} they read on it.
+	 */
+	@Value("#{'${efx.read.mode:blocking}' == 'async'}")
+	private boolean asyncReads;
+
+	/**
+	 * The whole book, as quoted to the client {@code tier} when given.
+	 */
 	@GetMapping
-	public List<Price> getAllPrices() {
-		return priceService.getAll();
+	public CompletableFuture<List<Price>> getAllPrices(@RequestParam(required = false) String tier) {
+
+		UnaryOperator<Price> pricing = priceService.tierPricing(tier);
+		CompletableFuture<List<Price>> prices = asyncReads ? priceService.getAllAsync()
+				: CompletableFuture.completedFuture(priceService.getAll());
+		return tier == null ? prices : prices.thenApply(book -> {
+			List<Price> quoted = new ArrayList<>(book.size());
+			book.forEach(price -> quoted.add(pricing.apply(price)));
+			return quoted;
+		});
+	}
+
+	/**
+	 * The whole book as newline-delimited JSON, one price per line, written
+	 * as it is paged in from Redis. A slow reader blocks the writer instead
+	 * of the book piling up in memory.
+	 */
+	@GetMapping(produces = APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamAllPrices(@RequestParam(required = false) String tier) {
+
+		UnaryOperator<Price> pricing = priceService.tierPricing(tier);
+		ObjectWriter writer = objectMapper.writerFor(Price.class);
+		StreamingResponseBody body = outputStream -> {
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+					.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+				priceService.forEachPrice(price -> {
+					try {
+						writer.writeValue(generator, pricing.apply(price));
+						generator.writeRaw('\n');
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		};
+		return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+	}
+
+	/**
+	 * Server-Sent Events of the given instruments, e.g.
+	 * {@code /price/updates?instrument=EUR-USD&instrument=GBP-USD}, as quoted
+	 * to the client {@code tier} when given. A client that falls behind skips
+	 * to the latest price of each instrument.
+	 */
+	@GetMapping(value = "/updates", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter subscribe(@RequestParam("instrument") List<String> instrumentNames,
+			@RequestParam(required = false) String tier) {
+
+		UnaryOperator<Price> pricing = priceService.tierPricing(tier);
+
+		List<String> names = new ArrayList<>(instrumentNames.size());
+		instrumentNames.forEach(instrumentName -> names.add(instrumentRegistry.canonicalPathName(instrumentName)));
+
+		SseEmitter emitter = new SseEmitter(pushTimeout);
+		priceService.subscribe(names, pricing, emitter);
+		return emitter;
 	}
 
 	@GetMapping("/{instrumentName}")
-	public Price getPriceByInstrumentName(@PathVariable String instrumentName) {
-		return priceService.getPriceByInstrumentName(instrumentName.replace("-", "/"));
+	public CompletableFuture<Price> getPriceByInstrumentName(@PathVariable String instrumentName,
+			@RequestParam(required = false) String tier) {
+
+		UnaryOperator<Price> pricing = priceService.tierPricing(tier);
+		String name = instrumentRegistry.canonicalPathName(instrumentName);
+		CompletableFuture<Price> price = asyncReads ? priceService.getPriceByInstrumentNameAsync(name)
+				: CompletableFuture.completedFuture(priceService.getPriceByInstrumentName(name));
+		return tier == null ? price : price.thenApply(pricing);
+	}
+
+	/**
+	 * Ticks of an instrument between two dates in the
+	 * {@value DateUtils#DATE_FORMAT} format, e.g.
+	 * {@code /price/EUR-USD/ticks?from=01-06-2020 12:01:00:000&to=01-06-2020 12:02:00:000}.
+	 */
+	@GetMapping("/{instrumentName}/ticks")
+	public List<Price> getTicks(@PathVariable String instrumentName, @RequestParam String from,
+			@RequestParam String to, @RequestParam(defaultValue = "10000") int limit) {
+		return priceService.getTicks(instrumentRegistry.canonicalPathName(instrumentName),
+				epochMillis("from", from), epochMillis("to", to), limit);
+	}
+
+	/**
+	 * The price of an instrument as of a date, e.g.
+	 * {@code /price/EUR-USD/ticks?at=01-06-2020 12:01:02:000}.
+	 */
+	@GetMapping(value = "/{instrumentName}/ticks", params = "at")
+	public Price getPriceAsOf(@PathVariable String instrumentName, @RequestParam String at) {
+		return priceService.getPriceAsOf(instrumentRegistry.canonicalPathName(instrumentName), epochMillis("at", at));
+	}
+
+	/**
+	 * OHLC bars of an instrument between two dates, for any interval that is
+	 * a multiple of a kept one, e.g.
+	 * {@code /price/EUR-USD/bars?interval=5m&from=01-06-2020 12:00:00:000&to=01-06-2020 13:00:00:000}.
+	 */
+	@GetMapping("/{instrumentName}/bars")
+	public List<PriceBar> getBars(@PathVariable String instrumentName, @RequestParam String interval,
+			@RequestParam String from, @RequestParam String to) {
+		return priceService.getBars(instrumentRegistry.canonicalPathName(instrumentName),
+				PriceHistoryRepository.parseInterval(interval).toMillis(), epochMillis("from", from),
+				epochMillis("to", to));
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+		return ResponseEntity.badRequest().body(e.getMessage());
+	}
+
+	private long epochMillis(String parameter, String date) {
+		try {
+			return dateUtils.parseEpochMillis(date, 0, date.length());
+		} catch (ServiceException e) {
+			throw new IllegalArgumentException(parameter + " must be a date like " + DateUtils.DATE_FORMAT);
+		}
 	}
 	
 }
@@ -0,0 +1,35 @@
+package com.santander.efx.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.service.PricingRules;
+
+/**
+ * {@code /actuator/pricing}: the pricing rules in force, and a {@code POST}
+ * reloads them after the {@value PricingRules#RULES_KEY} hash was edited.
+ * Not exposed over the web by default.
+ */
+@Component
+@Endpoint(id = "pricing")
+public class PricingRulesEndpoint {
+
+	@Autowired
+	private PricingRules pricingRules;
+
+	@ReadOperation
+	public Map<String, String> rules() {
+		return pricingRules.table().getRules();
+	}
+
+	@WriteOperation
+	public Map<String, String> reload() {
+		return pricingRules.reload().getRules();
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.santander.efx.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.consumer.TickJournal;
+
+/**
+ * {@code /actuator/journal}: where the tick journal stands, and a
+ * {@code POST} replays it into the book. Left out of the default web
+ * exposure, as the replay writes to the book.
+ */
+@Component
+@Endpoint(id = "journal")
+public class TickJournalEndpoint {
+
+	@Autowired
+	private TickJournal tickJournal;
+
+	@ReadOperation
+	public Map<String, Object> journal() {
+
+		Map<String, Object> journal = new LinkedHashMap<>();
+		journal.put("enabled", tickJournal.isEnabled());
+		if (tickJournal.isEnabled()) {
+			journal.put("directory", tickJournal.getDirectory().getAbsolutePath());
+			journal.put("segment", tickJournal.getSegmentIndex());
+			journal.put("position", tickJournal.getPosition());
+			journal.put("appended", tickJournal.getAppended());
+			journal.put("dropped", tickJournal.getDropped());
+		}
+		return journal;
+	}
+
+	@WriteOperation
+	public Map<String, Object> replay() {
+
+		Map<String, Object> replay = new LinkedHashMap<>();
+		replay.put("replayed", tickJournal.replay());
+		return replay;
+	}
+
+}
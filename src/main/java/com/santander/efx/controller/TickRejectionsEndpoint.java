@@ -0,0 +1,33 @@
+package com.santander.efx.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.service.TickRejections;
+
+/**
+ * {@code /actuator/rejects}: rejected feed lines per reason and the sampled
+ * bad lines.
+ */
+@Component
+@Endpoint(id = "rejects")
+public class TickRejectionsEndpoint {
+
+	@Autowired
+	private TickRejections tickRejections;
+
+	@ReadOperation
+	public Map<String, Object> rejects() {
+
+		Map<String, Object> rejects = new LinkedHashMap<>();
+		rejects.put("counts", tickRejections.getCounts());
+		rejects.put("samples", tickRejections.getSamples());
+		return rejects;
+	}
+
+}
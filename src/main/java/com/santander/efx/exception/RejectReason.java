@@ -0,0 +1,16 @@
+package com.santander.efx.exception;
+
+/**
+ * Why a feed line was rejected.
+ */
+public enum RejectReason {
+
+	FIELD_COUNT,
+	BLANK_FIELD,
+	EXTERNAL_ID,
+	INSTRUMENT,
+	PRICE,
+	DATE,
+	UNKNOWN_INSTRUMENT
+
+}
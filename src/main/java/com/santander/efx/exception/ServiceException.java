@@ -1,12 +1,43 @@
 package com.santander.efx.exception;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 public class ServiceException extends RuntimeException {
 
 	private static final long serialVersionUID = 6769798308099674356L;
 
+	private static final Map<RejectReason, ServiceException> REJECTIONS = new EnumMap<>(RejectReason.class);
+
+	static {
+		for (RejectReason reason : RejectReason.values()) {
+			REJECTIONS.put(reason, new ServiceException(reason));
+		}
+	}
+
+	private final RejectReason reason;
+
 	public ServiceException() {
 		super("Some error occurred");
-		printStackTrace();
+		this.reason = null;
+	}
+
+	private ServiceException(RejectReason reason) {
+		super("Rejected feed line: " + reason, null, false, false);
+		this.reason = reason;
+	}
+
+	/**
+	 * The shared, stackless exception for a rejected feed line. Creating and
+	 * throwing it costs no allocation and no stack walk, so a burst of bad
+	 * lines is about as cheap as good ones.
+	 */
+	public static ServiceException rejected(RejectReason reason) {
+		return REJECTIONS.get(reason);
+	}
+
+	public RejectReason getReason() {
+		return reason;
 	}
 
 }
@@ -4,24 +4,29 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Date;
 
-import org.springframework.data.annotation.Id;
-import org.springframework.data.redis.core.RedisHash;
-
 import com.fasterxml.jackson.annotation.JsonFormat;
-
-@RedisHash("price")
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.santander.efx.utils.DateUtils;
+import com.santander.efx.utils.FixedPoint;
+import com.santander.efx.utils.InstrumentRegistry;
+
+/**
+ * Latest price of an instrument. Bid and ask are held as fixed-point
+ * mantissas (see {@link FixedPoint}) and only turned into {@link BigDecimal}
+ * by their getters, at the JSON boundary. The date is held as epoch millis.
+ */
 public class Price implements Serializable {
 
 	private static final long serialVersionUID = -116205108527327894L;
 
-	@Id
+	private static final long NONE = Long.MIN_VALUE;
+
 	private String instrumentName;
+	private int instrumentId = InstrumentRegistry.UNKNOWN;
 	private Integer externalId;
-	private BigDecimal bid;
-	private BigDecimal ask;
-	
-	@JsonFormat(pattern="dd-MM-yyyy HH:mm:ss:SSS", timezone="Europe/Lisbon")
-	private Date date;
+	private long bid = NONE;
+	private long ask = NONE;
+	private long date = NONE;
 
 	public Price() {
 		super();
@@ -31,9 +36,9 @@ public class Price implements Serializable {
 		super();
 		this.instrumentName = instrumentName;
 		this.externalId = externalId;
-		this.bid = bid;
-		this.ask = ask;
-		this.date = date;
+		setBid(bid);
+		setAsk(ask);
+		setDate(date);
 	}
 
 	public String getInstrumentName() {
@@ -44,6 +49,19 @@ public class Price implements Serializable {
 		this.instrumentName = instrumentName;
 	}
 
+	/**
+	 * The {@link InstrumentRegistry} id of the instrument, when the price
+	 * was parsed in this process.
+	 */
+	@JsonIgnore
+	public int getInstrumentId() {
+		return instrumentId;
+	}
+
+	public void setInstrumentId(int instrumentId) {
+		this.instrumentId = instrumentId;
+	}
+
 	public Integer getExternalId() {
 		return externalId;
 	}
@@ -53,32 +71,60 @@ public class Price implements Serializable {
 	}
 
 	public BigDecimal getBid() {
-		return bid;
+		return bid == NONE ? null : FixedPoint.toBigDecimal(bid);
 	}
 
 	public void setBid(BigDecimal bid) {
+		this.bid = bid == null ? NONE : FixedPoint.fromBigDecimal(bid);
+	}
+
+	@JsonIgnore
+	public long getScaledBid() {
+		return bid;
+	}
+
+	public void setScaledBid(long bid) {
 		this.bid = bid;
 	}
 
 	public BigDecimal getAsk() {
-		return ask;
+		return ask == NONE ? null : FixedPoint.toBigDecimal(ask);
 	}
 
 	public void setAsk(BigDecimal ask) {
+		this.ask = ask == null ? NONE : FixedPoint.fromBigDecimal(ask);
+	}
+
+	@JsonIgnore
+	public long getScaledAsk() {
+		return ask;
+	}
+
+	public void setScaledAsk(long ask) {
 		this.ask = ask;
 	}
 
+	@JsonFormat(pattern = DateUtils.DATE_FORMAT, timezone = DateUtils.TIME_ZONE)
 	public Date getDate() {
-		return date;
+		return date == NONE ? null : new Date(date);
 	}
 
 	public void setDate(Date date) {
-		this.date = date;
+		this.date = date == null ? NONE : date.getTime();
+	}
+
+	@JsonIgnore
+	public long getTimestamp() {
+		return date;
+	}
+
+	public void setTimestamp(long timestamp) {
+		this.date = timestamp;
 	}
 
 	@Override
 	public String toString() {
-		return String.format("%s, %s, %s, %s, %s", instrumentName, externalId, bid, ask, date);
+		return String.format("%s, %s, %s, %s, %s", instrumentName, externalId, getBid(), getAsk(), getDate());
 	}
 
 }
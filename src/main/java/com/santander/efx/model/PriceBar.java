@@ -0,0 +1,153 @@
+package com.santander.efx.model;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.santander.efx.utils.DateUtils;
+import com.santander.efx.utils.FixedPoint;
+
+/**
+ * Open, high, low and close of the bid and ask of an instrument over the
+ * interval starting at its date. Prices are fixed-point mantissas, like
+ * {@link Price}'s; open and close are those of the earliest and latest tick
+ * in the interval, whatever order the ticks arrived in.
+ */
+public class PriceBar {
+
+	private String instrumentName;
+	private long start;
+	private long interval;
+	private long openTimestamp;
+	private long closeTimestamp;
+	private long ticks;
+	private long openBid;
+	private long highBid;
+	private long lowBid;
+	private long closeBid;
+	private long openAsk;
+	private long highAsk;
+	private long lowAsk;
+	private long closeAsk;
+
+	public PriceBar() {
+		super();
+	}
+
+	public PriceBar(String instrumentName, long start, long interval, long openTimestamp, long closeTimestamp,
+			long ticks, long[] bid, long[] ask) {
+		super();
+		this.instrumentName = instrumentName;
+		this.start = start;
+		this.interval = interval;
+		this.openTimestamp = openTimestamp;
+		this.closeTimestamp = closeTimestamp;
+		this.ticks = ticks;
+		this.openBid = bid[0];
+		this.highBid = bid[1];
+		this.lowBid = bid[2];
+		this.closeBid = bid[3];
+		this.openAsk = ask[0];
+		this.highAsk = ask[1];
+		this.lowAsk = ask[2];
+		this.closeAsk = ask[3];
+	}
+
+	/**
+	 * A bar of the longer interval containing this one, holding only this
+	 * one's ticks so far, for the others it covers to be
+	 * {@link #merge(PriceBar) merged} into.
+	 */
+	public PriceBar widen(long start, long interval) {
+		return new PriceBar(instrumentName, start, interval, openTimestamp, closeTimestamp, ticks,
+				new long[] { openBid, highBid, lowBid, closeBid }, new long[] { openAsk, highAsk, lowAsk, closeAsk });
+	}
+
+	/**
+	 * Folds a bar of the same instrument that falls within this one's
+	 * interval into it.
+	 */
+	public void merge(PriceBar other) {
+
+		if (other.openTimestamp < openTimestamp) {
+			openTimestamp = other.openTimestamp;
+			openBid = other.openBid;
+			openAsk = other.openAsk;
+		}
+		if (other.closeTimestamp >= closeTimestamp) {
+			closeTimestamp = other.closeTimestamp;
+			closeBid = other.closeBid;
+			closeAsk = other.closeAsk;
+		}
+		ticks += other.ticks;
+		highBid = Math.max(highBid, other.highBid);
+		lowBid = Math.min(lowBid, other.lowBid);
+		highAsk = Math.max(highAsk, other.highAsk);
+		lowAsk = Math.min(lowAsk, other.lowAsk);
+	}
+
+	public String getInstrumentName() {
+		return instrumentName;
+	}
+
+	@JsonFormat(pattern = DateUtils.DATE_FORMAT, timezone = DateUtils.TIME_ZONE)
+	public Date getDate() {
+		return new Date(start);
+	}
+
+	@JsonIgnore
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Length of the bar in millis.
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	public BigDecimal getOpenBid() {
+		return FixedPoint.toBigDecimal(openBid);
+	}
+
+	public BigDecimal getHighBid() {
+		return FixedPoint.toBigDecimal(highBid);
+	}
+
+	public BigDecimal getLowBid() {
+		return FixedPoint.toBigDecimal(lowBid);
+	}
+
+	public BigDecimal getCloseBid() {
+		return FixedPoint.toBigDecimal(closeBid);
+	}
+
+	public BigDecimal getOpenAsk() {
+		return FixedPoint.toBigDecimal(openAsk);
+	}
+
+	public BigDecimal getHighAsk() {
+		return FixedPoint.toBigDecimal(highAsk);
+	}
+
+	public BigDecimal getLowAsk() {
+		return FixedPoint.toBigDecimal(lowAsk);
+	}
+
+	public BigDecimal getCloseAsk() {
+		return FixedPoint.toBigDecimal(closeAsk);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, %s, %s, %s/%s/%s/%s, %s/%s/%s/%s", instrumentName, getDate(), ticks, getOpenBid(),
+				getHighBid(), getLowBid(), getCloseBid(), getOpenAsk(), getHighAsk(), getLowAsk(), getCloseAsk());
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.santander.efx.model;
+
+import com.santander.efx.utils.FixedPoint;
+import com.santander.efx.utils.InstrumentRegistry;
+
+/**
+ * Mutable, reusable holder for a single parsed feed tick. Prices are kept as
+ * fixed-point mantissas with {@link #SCALE} decimal places and the date as
+ * epoch millis, so a tick can be parsed and compared without boxing.
+ */
+public class PriceTick {
+
+	public static final int SCALE = FixedPoint.SCALE;
+
+	private int externalId;
+	private int instrumentId = InstrumentRegistry.UNKNOWN;
+	private String instrumentName;
+	private long bid;
+	private long ask;
+	private long timestamp;
+
+	public int getExternalId() {
+		return externalId;
+	}
+
+	public void setExternalId(int externalId) {
+		this.externalId = externalId;
+	}
+
+	/**
+	 * The {@link InstrumentRegistry} id of the instrument.
+	 */
+	public int getInstrumentId() {
+		return instrumentId;
+	}
+
+	public void setInstrumentId(int instrumentId) {
+		this.instrumentId = instrumentId;
+	}
+
+	public String getInstrumentName() {
+		return instrumentName;
+	}
+
+	public void setInstrumentName(String instrumentName) {
+		this.instrumentName = instrumentName;
+	}
+
+	public long getBid() {
+		return bid;
+	}
+
+	public void setBid(long bid) {
+		this.bid = bid;
+	}
+
+	public long getAsk() {
+		return ask;
+	}
+
+	public void setAsk(long ask) {
+		this.ask = ask;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, %s, %s, %s, %s", instrumentName, externalId, bid, ask, timestamp);
+	}
+
+}
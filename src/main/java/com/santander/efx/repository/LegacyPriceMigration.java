@@ -0,0 +1,191 @@
+package com.santander.efx.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.config.RedisShards;
+import com.santander.efx.model.Price;
+import com.santander.efx.utils.FixedPoint;
+
+/**
+ * Moves prices left in former layouts, listed by the {@code price} set of
+ * {@code spring.redis.host}, into the hash-tagged layout of
+ * {@link PriceRepository} on startup: {@code price:<instrument>} as a
+ * Spring Data {@code @RedisHash}, bid and ask stored as decimal strings, or
+ * as a {@link PriceSerializer} value. Tick history and bars are carried
+ * over whole, unless the instrument already has some in the new layout,
+ * then the prices are upserted, so a newer price stored meanwhile wins,
+ * and the old keys and index are deleted. An entry that cannot be read,
+ * or history that cannot be carried over, is logged and left in place for
+ * a later look.
+ */
+@Component
+public class LegacyPriceMigration implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LegacyPriceMigration.class);
+
+	static final String LEGACY_INDEX = "price";
+
+	@Autowired
+	private StringRedisTemplate stringRedisTemplate;
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Autowired
+	private PriceSerializer priceSerializer;
+
+	@Autowired
+	private RedisShards redisShards;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		try {
+			int migrated = migrate();
+			if (migrated > 0) {
+				LOGGER.info("Migrated {} legacy prices", migrated);
+			}
+		} catch (DataAccessException e) {
+			LOGGER.warn("Legacy price migration skipped: {}", e.getMessage());
+		}
+	}
+
+	public int migrate() {
+
+		Set<String> instrumentNames = stringRedisTemplate.opsForSet().members(LEGACY_INDEX);
+		if (instrumentNames == null || instrumentNames.isEmpty()) {
+			return 0;
+		}
+
+		List<String> names = new ArrayList<>(instrumentNames);
+		List<Object> types = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			names.forEach(instrumentName -> connection.type(legacyKey(instrumentName)));
+			return null;
+		});
+
+		List<Price> prices = new ArrayList<>();
+		List<byte[]> legacyKeys = new ArrayList<>();
+		List<byte[]> migratedNames = new ArrayList<>();
+		for (int i = 0; i < names.size(); i++) {
+			String instrumentName = names.get(i);
+			byte[] key = legacyKey(instrumentName);
+			try {
+				if (types.get(i) == DataType.HASH) {
+					Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(new String(key, UTF_8));
+					if (!hash.isEmpty()) {
+						prices.add(read(hash));
+					}
+				} else if (types.get(i) == DataType.STRING) {
+					byte[] value = stringRedisTemplate
+							.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+					if (value != null) {
+						prices.add(priceSerializer.deserialize(value));
+					}
+				}
+			} catch (DataAccessException e) {
+				throw e;
+			} catch (RuntimeException e) {
+				LOGGER.warn("Legacy price {} not migrated: {}", new String(key, UTF_8), e.toString());
+				continue;
+			}
+			legacyKeys.add(key);
+			legacyKeys.addAll(moveHistory(instrumentName));
+			migratedNames.add(instrumentName.getBytes(UTF_8));
+		}
+
+		int migrated = priceRepository.upsertAllIfNewer(prices).size();
+		if (!migratedNames.isEmpty()) {
+			stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+				// one key per DEL: legacy keys carry no hash tag, and a cluster
+				// refuses a DEL over several slots
+				legacyKeys.forEach(connection::del);
+				connection.sRem(LEGACY_INDEX.getBytes(UTF_8), migratedNames.toArray(new byte[migratedNames.size()][]));
+				return null;
+			});
+		}
+		return migrated;
+	}
+
+	/**
+	 * Copies the instrument's legacy ticks and bars to their new keys.
+	 *
+	 * @return the legacy keys carried over
+	 */
+	private List<byte[]> moveHistory(String instrumentName) {
+
+		List<byte[][]> moves = new ArrayList<>();
+		moves.add(new byte[][] { legacyKey(PriceHistoryRepository.TICKS_KEYSPACE, instrumentName),
+				PriceHistoryRepository.ticksKey(instrumentName) });
+		for (long interval : priceHistoryRepository.getBarIntervals()) {
+			moves.add(new byte[][] { legacyKey(PriceHistoryRepository.BARS_KEYSPACE + ":" + interval, instrumentName),
+					PriceHistoryRepository.barsKey(interval, instrumentName) });
+		}
+
+		List<byte[]> legacyKeys = new ArrayList<>(moves.size());
+		for (byte[][] move : moves) {
+			byte[] dump = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.dump(move[0]));
+			if (dump == null) {
+				continue;
+			}
+			try {
+				redisShards.template(redisShards.shardOf(move[1])).execute((RedisCallback<Void>) connection -> {
+					connection.restore(move[1], 0, dump);
+					return null;
+				});
+			} catch (DataAccessException e) {
+				LOGGER.warn("Legacy {} not carried over, kept: {}", new String(move[0], UTF_8), e.getMessage());
+				continue;
+			}
+			legacyKeys.add(move[0]);
+		}
+		return legacyKeys;
+	}
+
+	static Price read(Map<Object, Object> hash) {
+
+		for (String field : new String[] { "instrumentName", "bid", "ask", "date" }) {
+			if (hash.get(field) == null) {
+				throw new IllegalArgumentException("No " + field + " in legacy price");
+			}
+		}
+		Price price = new Price();
+		price.setInstrumentName((String) hash.get("instrumentName"));
+		price.setExternalId(hash.containsKey("externalId") ? Integer.valueOf((String) hash.get("externalId")) : null);
+		price.setScaledBid(readScaled((String) hash.get("bid")));
+		price.setScaledAsk(readScaled((String) hash.get("ask")));
+		price.setTimestamp(Long.parseLong((String) hash.get("date")));
+		return price;
+	}
+
+	private static long readScaled(String value) {
+		return FixedPoint.fromBigDecimal(new BigDecimal(value));
+	}
+
+	private static byte[] legacyKey(String instrumentName) {
+		return legacyKey(LEGACY_INDEX, instrumentName);
+	}
+
+	private static byte[] legacyKey(String keyspace, String instrumentName) {
+		return (keyspace + ":" + instrumentName).getBytes(UTF_8);
+	}
+
+}
@@ -0,0 +1,292 @@
+package com.santander.efx.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.santander.efx.config.RedisShards;
+import com.santander.efx.model.Price;
+import com.santander.efx.model.PriceBar;
+
+/**
+ * Tick history and OHLC bars per instrument, kept for
+ * {@code efx.history.retention-ms} behind the instrument's newest tick, and
+ * at most {@code efx.history.max-ticks} ticks, or as many as the retention
+ * allows when 0. None is kept when {@code efx.history.enabled} is false or
+ * the retention is 0, and storing a price then costs no history command at
+ * all.
+ * <ul>
+ * <li>{@code price-history:{<tag>}:<instrument>}: every tick stored through
+ * {@link PriceRepository#upsertIfNewer(Price)} or
+ * {@link PriceRepository#upsertAllIfNewer(java.util.Collection)}, whether or
+ * not it was the newest, as a {@link PriceSerializer} value scored by its
+ * date</li>
+ * <li>{@code price-bars-open:{<tag>}:<instrument>}: the latest bar of every
+ * interval, as fixed hash fields {@code <interval millis>:1} to
+ * {@code :12}, and the newest tick's date</li>
+ * <li>{@code price-bars:<interval millis>:{<tag>}:<instrument>}: earlier
+ * bars per {@code efx.history.bar-intervals} interval, aligned on the epoch
+ * and scored by their start</li>
+ * </ul>
+ * All are written by {@code price-upsert.lua} in the round trip that stores
+ * the price. A tick in the latest bars costs one read and one write of the
+ * open bars hash, whatever the number of intervals; a bar moves to its
+ * sorted set once, when the next one opens. Reading bars never rescans
+ * ticks. Bars of other intervals are built from the longest kept
+ * interval that divides them. Keys carry the {@link
+ * PriceRepository#hashTag(String) hash tag} of the instrument's price, so
+ * they live on its shard.
+ */
+@Repository
+public class PriceHistoryRepository {
+
+	static final String TICKS_KEYSPACE = "price-history";
+	static final String BARS_KEYSPACE = "price-bars";
+	static final String OPEN_BARS_KEYSPACE = "price-bars-open";
+
+	private static final int BAR_FIELDS = 12;
+
+	@Autowired
+	private RedisShards redisShards;
+
+	@Autowired
+	private PriceSerializer priceSerializer;
+
+	private final boolean enabled;
+	private final long retention;
+	private final long[] intervals;
+	private final byte[][] scriptArgs;
+
+	public PriceHistoryRepository(@Value("${efx.history.enabled:true}") boolean enabled,
+			@Value("${efx.history.retention-ms:0}") long retention,
+			@Value("${efx.history.max-ticks:100000}") long maxTicks,
+			@Value("${efx.history.bar-intervals:}") String[] intervals) {
+
+		if (maxTicks < 0) {
+			throw new IllegalArgumentException("efx.history.max-ticks must be 0, for no limit, or more, not " + maxTicks);
+		}
+		this.enabled = enabled && retention > 0;
+		this.retention = retention;
+		this.intervals = this.enabled ? Arrays.stream(intervals).filter(interval -> !interval.trim().isEmpty())
+				.mapToLong(interval -> parseInterval(interval).toMillis()).sorted().distinct().toArray() : new long[0];
+		this.scriptArgs = new byte[this.intervals.length + 2][];
+		this.scriptArgs[0] = String.valueOf(retention).getBytes(UTF_8);
+		this.scriptArgs[1] = String.valueOf(maxTicks).getBytes(UTF_8);
+		for (int i = 0; i < this.intervals.length; i++) {
+			this.scriptArgs[i + 2] = String.valueOf(this.intervals[i]).getBytes(UTF_8);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * The kept bar intervals in millis, shortest first.
+	 */
+	public long[] getBarIntervals() {
+		return intervals.clone();
+	}
+
+	/**
+	 * Reads a bar interval such as {@code 500ms}, {@code 1m} or {@code PT1H}.
+	 */
+	public static Duration parseInterval(String interval) {
+		return DurationStyle.detectAndParse(interval.trim());
+	}
+
+	/**
+	 * Ticks dated from {@code from} to {@code to} inclusive, oldest first, at
+	 * most {@code limit} of them.
+	 */
+	public List<Price> findTicks(String instrumentName, long from, long to, int limit) {
+
+		byte[] key = ticksKey(instrumentName);
+		Set<byte[]> values = readTemplate(key).execute((RedisCallback<Set<byte[]>>) connection -> connection
+				.zRangeByScore(key, from, to, 0, limit));
+		return decodeTicks(values);
+	}
+
+	/**
+	 * The last tick dated at or before {@code at}: the price as of then.
+	 */
+	public Optional<Price> findTickAsOf(String instrumentName, long at) {
+
+		byte[] key = ticksKey(instrumentName);
+		Set<byte[]> values = readTemplate(key).execute((RedisCallback<Set<byte[]>>) connection -> connection
+				.zRevRangeByScore(key, Double.NEGATIVE_INFINITY, at, 0, 1));
+		List<Price> ticks = decodeTicks(values);
+		return ticks.isEmpty() ? Optional.empty() : Optional.of(ticks.get(0));
+	}
+
+	/**
+	 * Bars of {@code interval} millis starting from the one containing
+	 * {@code from} up to the one containing {@code to}, oldest first. Bars
+	 * with no ticks are left out.
+	 *
+	 * @throws IllegalArgumentException when no kept interval divides
+	 *                                  {@code interval}
+	 */
+	public List<PriceBar> findBars(String instrumentName, long interval, long from, long to) {
+
+		long base = baseInterval(interval);
+		long start = from - Math.floorMod(from, interval);
+		long end = to - Math.floorMod(to, base);
+
+		byte[] key = barsKey(base, instrumentName);
+		byte[] openKey = openBarsKey(instrumentName);
+		byte[][] openFields = new byte[BAR_FIELDS][];
+		for (int i = 0; i < BAR_FIELDS; i++) {
+			openFields[i] = (base + ":" + (i + 1)).getBytes(UTF_8);
+		}
+		Set<byte[]> values = readTemplate(key).execute((RedisCallback<Set<byte[]>>) connection -> connection
+				.zRangeByScore(key, start, end));
+		List<byte[]> openValues = readTemplate(openKey)
+				.execute((RedisCallback<List<byte[]>>) connection -> connection.hMGet(openKey, openFields));
+
+		List<PriceBar> kept = new ArrayList<>();
+		if (values != null) {
+			values.forEach(value -> kept.add(decodeBar(instrumentName, base, value)));
+		}
+		PriceBar open = decodeOpenBar(instrumentName, base, openValues);
+		if (open != null && open.getStart() >= start && open.getStart() <= end) {
+			kept.add(open);
+		}
+
+		List<PriceBar> bars = new ArrayList<>();
+		PriceBar current = null;
+		for (PriceBar bar : kept) {
+			long barStart = bar.getStart() - Math.floorMod(bar.getStart(), interval);
+			if (current != null && current.getStart() == barStart) {
+				current.merge(bar);
+			} else {
+				current = base == interval ? bar : bar.widen(barStart, interval);
+				bars.add(current);
+			}
+		}
+		return bars;
+	}
+
+	/**
+	 * How many of {@code price-upsert.lua}'s keys, after the price and index
+	 * keys, are history and bar keys: none when no history is kept.
+	 */
+	int scriptKeyCount() {
+		return isEnabled() ? intervals.length + 2 : 0;
+	}
+
+	byte[][] scriptKeys(String instrumentName) {
+
+		byte[][] keys = new byte[scriptKeyCount()][];
+		if (keys.length == 0) {
+			return keys;
+		}
+		keys[0] = ticksKey(instrumentName);
+		keys[1] = openBarsKey(instrumentName);
+		for (int i = 0; i < intervals.length; i++) {
+			keys[i + 2] = barsKey(intervals[i], instrumentName);
+		}
+		return keys;
+	}
+
+	/**
+	 * The arguments of {@code price-upsert.lua} after the encoded price.
+	 */
+	byte[][] scriptArgs(Price price) {
+
+		if (!isEnabled()) {
+			return new byte[0][];
+		}
+
+		byte[][] args = new byte[scriptArgs.length + 2][];
+		args[0] = String.valueOf(price.getScaledBid()).getBytes(UTF_8);
+		args[1] = String.valueOf(price.getScaledAsk()).getBytes(UTF_8);
+		System.arraycopy(scriptArgs, 0, args, 2, scriptArgs.length);
+		return args;
+	}
+
+	private RedisTemplate<String, Price> readTemplate(byte[] key) {
+		return redisShards.readTemplate(redisShards.shardOf(key));
+	}
+
+	private long baseInterval(long interval) {
+
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Bar interval must be positive");
+		}
+		for (int i = intervals.length - 1; i >= 0; i--) {
+			if (interval % intervals[i] == 0) {
+				return intervals[i];
+			}
+		}
+		throw new IllegalArgumentException(
+				"Bars of " + Duration.ofMillis(interval) + " cannot be built from the kept intervals");
+	}
+
+	private List<Price> decodeTicks(Set<byte[]> values) {
+
+		List<Price> ticks = new ArrayList<>(values == null ? 0 : values.size());
+		if (values != null) {
+			values.forEach(value -> ticks.add(priceSerializer.deserialize(value)));
+		}
+		return ticks;
+	}
+
+	private static PriceBar decodeBar(String instrumentName, long interval, byte[] value) {
+
+		String[] fields = new String(value, UTF_8).split(" ");
+		long[] numbers = new long[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			numbers[i] = Long.parseLong(fields[i]);
+		}
+		return bar(instrumentName, interval, numbers);
+	}
+
+	private static PriceBar decodeOpenBar(String instrumentName, long interval, List<byte[]> values) {
+
+		if (values == null || values.size() < BAR_FIELDS) {
+			return null;
+		}
+		long[] numbers = new long[BAR_FIELDS];
+		for (int i = 0; i < BAR_FIELDS; i++) {
+			byte[] value = values.get(i);
+			if (value == null) {
+				return null;
+			}
+			numbers[i] = Long.parseLong(new String(value, UTF_8));
+		}
+		return bar(instrumentName, interval, numbers);
+	}
+
+	private static PriceBar bar(String instrumentName, long interval, long[] numbers) {
+		return new PriceBar(instrumentName, numbers[0], interval, numbers[1], numbers[2], numbers[3],
+				Arrays.copyOfRange(numbers, 4, 8), Arrays.copyOfRange(numbers, 8, 12));
+	}
+
+	static byte[] ticksKey(String instrumentName) {
+		return (TICKS_KEYSPACE + ":" + PriceRepository.hashTag(instrumentName) + ":" + instrumentName).getBytes(UTF_8);
+	}
+
+	static byte[] openBarsKey(String instrumentName) {
+		return (OPEN_BARS_KEYSPACE + ":" + PriceRepository.hashTag(instrumentName) + ":" + instrumentName)
+				.getBytes(UTF_8);
+	}
+
+	static byte[] barsKey(long interval, String instrumentName) {
+		return (BARS_KEYSPACE + ":" + interval + ":" + PriceRepository.hashTag(instrumentName) + ":" + instrumentName)
+				.getBytes(UTF_8);
+	}
+
+}
@@ -1,17 +1,535 @@
 package com.santander.efx.repository;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import javax.annotation.PostConstruct;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Repository;
 
+import com.santander.efx.config.RedisConfiguration;
+import com.santander.efx.config.RedisShards;
 import com.santander.efx.model.Price;
+import com.santander.efx.utils.HashSlots;
+import com.santander.efx.utils.InstrumentRegistry;
+
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.SortArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+/**
+ * Latest prices, stored as one {@link PriceSerializer} value per instrument
+ * under {@code price:{<tag>}:<instrument>} and indexed by the
+ * {@code price-index:{<tag>}} set of its bucket.
+ * <p>
+ * Instruments fall into {@value #INDEX_BUCKETS} buckets by the CRC16 of
+ * their name, and every key of a bucket, history included, carries the
+ * bucket's {@link HashSlots hash tag}, so the keys a write touches share a
+ * slot and no index set is written by every price. The tags spread the
+ * buckets evenly over the slot range, and so over the {@link RedisShards
+ * shards}: writes and reads go to the shard owning their bucket, and the
+ * whole book is read with one command per bucket, pipelined to each shard,
+ * all shards at once. As no command spans two slots, the same layout runs on
+ * a Redis Cluster, where the client routes each command to its slot's
+ * master.
+ * <p>
+ * Newer-wins writes run atomically in Redis through the preloaded
+ * {@code price-upsert.lua} script, so each price costs one round trip (or a
+ * share of one when pipelined) and concurrent writers cannot overwrite a
+ * newer price with an older one. Every accepted write is announced on
+ * {@link RedisConfiguration#PRICE_UPDATES_CHANNEL}. The same call records
+ * the tick in the {@link PriceHistoryRepository history}.
+ * <p>
+ * The keys a write touches are encoded once per {@link InstrumentRegistry}
+ * instrument and reused for every later price carrying its id.
+ */
 @Repository
-public interface PriceRepository extends CrudRepository<Price, String> {
+public class PriceRepository {
+
+	static final String KEYSPACE = "price";
+	static final String INDEX_KEYSPACE = "price-index";
+	static final int INDEX_BUCKETS = 16;
+	private static final String[] BUCKET_TAGS = HashSlots.spreadTags(INDEX_BUCKETS);
+	private static final byte[] UPDATES_CHANNEL = RedisConfiguration.PRICE_UPDATES_CHANNEL.getBytes(UTF_8);
+	private static final int SCAN_PAGE = 256;
+	private static final ScanOptions SCAN_OPTIONS = ScanOptions.scanOptions().count(SCAN_PAGE).build();
+
+	private static final byte[][] INDEX_KEYS = new byte[INDEX_BUCKETS][];
+	private static final byte[][] KEY_PREFIXES = new byte[INDEX_BUCKETS][];
+	private static final SortArgs[] ALL_VALUES = new SortArgs[INDEX_BUCKETS];
+
+	static {
+		for (int bucket = 0; bucket < INDEX_BUCKETS; bucket++) {
+			String tag = "{" + BUCKET_TAGS[bucket] + "}";
+			INDEX_KEYS[bucket] = (INDEX_KEYSPACE + ":" + tag).getBytes(UTF_8);
+			KEY_PREFIXES[bucket] = (KEYSPACE + ":" + tag + ":").getBytes(UTF_8);
+			ALL_VALUES[bucket] = SortArgs.Builder.by("nosort").get(KEYSPACE + ":" + tag + ":*");
+		}
+	}
+
+	@Autowired
+	private PriceSerializer priceSerializer;
+
+	@Autowired
+	private RedisScript<Long> priceUpsertScript;
+
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Autowired
+	private RedisShards redisShards;
+
+	@Autowired
+	@SuppressWarnings("rawtypes")
+	private RedisScript<List> priceBookScript;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	private AtomicReferenceArray<byte[][]> instrumentKeys;
+	private int[] bucketShards;
+	private List<List<String>> bucketIndexKeys;
+	private List<List<String>> bucketPatterns;
+
+	@Value("${efx.redis.timeout-ms:60000}")
+	private long timeout;
+
+	@PostConstruct
+	public void init() {
+
+		instrumentKeys = new AtomicReferenceArray<>(instrumentRegistry.capacity());
+		bucketShards = new int[INDEX_BUCKETS];
+		bucketIndexKeys = new ArrayList<>(INDEX_BUCKETS);
+		bucketPatterns = new ArrayList<>(INDEX_BUCKETS);
+		for (int bucket = 0; bucket < INDEX_BUCKETS; bucket++) {
+			bucketShards[bucket] = redisShards.shardOf(INDEX_KEYS[bucket]);
+			bucketIndexKeys.add(Collections.singletonList(new String(INDEX_KEYS[bucket], UTF_8)));
+			bucketPatterns.add(Collections.singletonList(new String(KEY_PREFIXES[bucket], UTF_8) + "*"));
+		}
+	}
+
+	/**
+	 * The stored price, read from a replica when {@code efx.redis.read-from}
+	 * allows, so it may lag the latest write.
+	 */
+	public Optional<Price> findById(String instrumentName) {
+		return Optional.ofNullable(
+				redisShards.readTemplate(shard(instrumentName)).opsForValue().get(key(instrumentName)));
+	}
+
+	/**
+	 * Non-blocking {@link #findById(String)}: completes on a Lettuce I/O
+	 * thread.
+	 */
+	public Mono<Price> findByIdAsync(String instrumentName) {
+		return redisShards.reactiveReadTemplate(shard(instrumentName)).opsForValue().get(key(instrumentName));
+	}
+
+	/**
+	 * The stored price read from the shard's primary, never a replica: for
+	 * values that are kept, such as cache fills, or that follow an update
+	 * notification and must be at least as new as it.
+	 */
+	public Optional<Price> findLatest(String instrumentName) {
+		return Optional.ofNullable(
+				redisShards.template(shard(instrumentName)).opsForValue().get(key(instrumentName)));
+	}
+
+	/**
+	 * Non-blocking {@link #findLatest(String)}.
+	 */
+	public Mono<Price> findLatestAsync(String instrumentName) {
+		return redisShards.reactiveTemplate(shard(instrumentName)).opsForValue().get(key(instrumentName));
+	}
+
+	/**
+	 * Non-blocking {@link #findAll()} through {@code price-book.lua}, since
+	 * there is no reactive {@code SORT}: one call per bucket, so that each
+	 * touches a single slot as a cluster requires, all in flight at once.
+	 */
+	public Mono<List<Price>> findAllAsync() {
+		return findBook(redisShards::reactiveTemplate);
+	}
+
+	/**
+	 * Reads the whole book in one round trip, all shards at once: {@code SORT
+	 * price-index:{<tag>} BY nosort GET price:{<tag>}:*} returns the value of
+	 * every indexed instrument of a bucket without sorting, and the commands
+	 * of all buckets are written back to back on each shard's connection
+	 * before any reply is awaited. Pipelining this way rather than through
+	 * {@link RedisConnection#openPipeline()} keeps to the shared connection,
+	 * which a pipeline would swap for a dedicated one.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Price> findAll() {
+
+		List<RedisConnection> connections = new ArrayList<>(redisShards.size());
+		List<RedisFuture<List<byte[]>>> replies = new ArrayList<>(INDEX_BUCKETS);
+		try {
+			for (int shard = 0; shard < redisShards.size(); shard++) {
+				if (!ownsBuckets(shard)) {
+					continue;
+				}
+				RedisConnection connection = redisShards.readTemplate(shard).getRequiredConnectionFactory()
+						.getConnection();
+				connections.add(connection);
+				RedisClusterAsyncCommands<byte[], byte[]> commands = (RedisClusterAsyncCommands<byte[], byte[]>) connection
+						.getNativeConnection();
+				for (int bucket = 0; bucket < INDEX_BUCKETS; bucket++) {
+					if (bucketShards[bucket] == shard) {
+						replies.add(commands.sort(INDEX_KEYS[bucket], ALL_VALUES[bucket]));
+					}
+				}
+			}
+
+			List<Price> prices = new ArrayList<>();
+			for (RedisFuture<List<byte[]>> reply : replies) {
+				for (byte[] value : LettuceFutures.awaitOrCancel(reply, timeout, TimeUnit.MILLISECONDS)) {
+					if (value != null && value.length > 0) {
+						prices.add(priceSerializer.deserialize(value));
+					}
+				}
+			}
+			return prices;
+		} catch (RedisException e) {
+			throw new RedisSystemException("Could not read the price book", e);
+		} finally {
+			connections.forEach(RedisConnection::close);
+		}
+	}
+
+	/**
+	 * Hands every stored price to {@code action} without holding the book in
+	 * memory: each bucket's index is walked with {@code SSCAN} and each page
+	 * of {@value #SCAN_PAGE} keys is read with one {@code MGET}, on one slot.
+	 * Prices written during the walk may or may not be seen, and a rehash of
+	 * an index can repeat an instrument.
+	 */
+	public void forEach(Consumer<? super Price> action) {
+
+		for (int bucket = 0; bucket < INDEX_BUCKETS; bucket++) {
+			byte[] indexKey = INDEX_KEYS[bucket];
+			byte[] keyPrefix = KEY_PREFIXES[bucket];
+			redisShards.readTemplate(bucketShards[bucket]).execute((RedisCallback<Void>) connection -> {
+				List<byte[]> keys = new ArrayList<>(SCAN_PAGE);
+				try (Cursor<byte[]> instrumentNames = connection.sScan(indexKey, SCAN_OPTIONS)) {
+					while (instrumentNames.hasNext()) {
+						keys.add(concat(keyPrefix, instrumentNames.next()));
+						if (keys.size() == SCAN_PAGE) {
+							readPage(connection, keys, action);
+							keys.clear();
+						}
+					}
+				} catch (IOException e) {
+					throw new RedisSystemException("Could not close the price index scan", e);
+				}
+				readPage(connection, keys, action);
+				return null;
+			});
+		}
+	}
+
+	/**
+	 * Unconditionally stores the price, whatever the stored one's date.
+	 */
+	public Price save(Price price) {
+		saveAll(Collections.singletonList(price));
+		return price;
+	}
+
+	public Iterable<Price> saveAll(Iterable<Price> prices) {
+
+		List<List<byte[][]>> shardKeys = new ArrayList<>(redisShards.size());
+		List<List<Price>> shardPrices = new ArrayList<>(redisShards.size());
+		for (int shard = 0; shard < redisShards.size(); shard++) {
+			shardKeys.add(new ArrayList<>());
+			shardPrices.add(new ArrayList<>());
+		}
+		prices.forEach(price -> {
+			byte[][] keys = instrumentKeys(price);
+			int shard = redisShards.shardOf(keys[0]);
+			shardKeys.get(shard).add(keys);
+			shardPrices.get(shard).add(price);
+		});
+
+		for (int shard = 0; shard < redisShards.size(); shard++) {
+			List<byte[][]> keys = shardKeys.get(shard);
+			List<Price> values = shardPrices.get(shard);
+			if (keys.isEmpty()) {
+				continue;
+			}
+			redisShards.template(shard).execute((RedisCallback<Void>) connection -> {
+				pipelined(connection, pipeline -> {
+					for (int i = 0; i < keys.size(); i++) {
+						byte[][] instrumentKeys = keys.get(i);
+						pipeline.set(instrumentKeys[0], encode(values.get(i)));
+						pipeline.sAdd(instrumentKeys[1], instrumentKeys[instrumentKeys.length - 1]);
+					}
+				});
+				return null;
+			});
+		}
+		return prices;
+	}
+
+	public boolean upsertIfNewer(Price price) {
+
+		byte[][] keysAndArgs = upsertKeysAndArgs(price);
+		int shard = redisShards.shardOf(keysAndArgs[0]);
+		Long written = redisShards.template(shard).execute((RedisCallback<Long>) connection -> {
+			try {
+				return evalUpsert(connection, keysAndArgs);
+			} catch (DataAccessException e) {
+				if (!isNoScript(e)) {
+					throw e;
+				}
+				loadScript(connection);
+				return evalUpsert(connection, keysAndArgs);
+			}
+		});
+		return written != null && written == 1L;
+	}
+
+	public List<Price> upsertAllIfNewer(Collection<Price> prices) {
+
+		List<Price> written = new ArrayList<>(prices.size());
+		if (prices.isEmpty()) {
+			return written;
+		}
+
+		List<byte[][]> upserts = new ArrayList<>(prices.size());
+		prices.forEach(price -> upserts.add(upsertKeysAndArgs(price)));
+
+		if (redisShards.size() == 1) {
+			List<Object> results = upsertAll(0, upserts);
+			int i = 0;
+			for (Price price : prices) {
+				if (Long.valueOf(1L).equals(results.get(i++))) {
+					written.add(price);
+				}
+			}
+			return written;
+		}
+
+		int[] shards = new int[upserts.size()];
+		List<List<byte[][]>> shardUpserts = new ArrayList<>(redisShards.size());
+		for (int shard = 0; shard < redisShards.size(); shard++) {
+			shardUpserts.add(new ArrayList<>());
+		}
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = redisShards.shardOf(upserts.get(i)[0]);
+			shardUpserts.get(shards[i]).add(upserts.get(i));
+		}
+		List<List<Object>> shardResults = new ArrayList<>(redisShards.size());
+		for (int shard = 0; shard < redisShards.size(); shard++) {
+			List<byte[][]> batch = shardUpserts.get(shard);
+			shardResults.add(batch.isEmpty() ? Collections.emptyList() : upsertAll(shard, batch));
+		}
+
+		int[] next = new int[redisShards.size()];
+		int i = 0;
+		for (Price price : prices) {
+			int shard = shards[i++];
+			if (Long.valueOf(1L).equals(shardResults.get(shard).get(next[shard]++))) {
+				written.add(price);
+			}
+		}
+		return written;
+	}
+
+	private List<Object> upsertAll(int shard, List<byte[][]> upserts) {
+		return redisShards.template(shard).execute((RedisCallback<List<Object>>) connection -> {
+			try {
+				return pipelined(connection, pipeline -> upserts.forEach(upsert -> evalUpsert(pipeline, upsert)));
+			} catch (RedisPipelineException e) {
+				if (!isNoScript(e)) {
+					throw e;
+				}
+				loadScript(connection);
+				return pipelined(connection, pipeline -> upserts.forEach(upsert -> evalUpsert(pipeline, upsert)));
+			}
+		});
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Mono<List<Price>> findBook(IntFunction<ReactiveRedisTemplate<String, Price>> templates) {
+		return Flux.range(0, INDEX_BUCKETS)
+				.flatMap(bucket -> templates.apply(bucketShards[bucket])
+						.execute(priceBookScript, bucketIndexKeys.get(bucket), bucketPatterns.get(bucket),
+								RedisElementWriter.from(StringRedisSerializer.UTF_8),
+								(RedisElementReader) RedisElementReader.from(priceSerializer)))
+				.flatMapIterable(prices -> (List<Price>) prices)
+				.collectList();
+	}
+
+	private byte[][] upsertKeysAndArgs(Price price) {
+
+		byte[][] keys = instrumentKeys(price);
+		byte[][] historyArgs = priceHistoryRepository.scriptArgs(price);
+		byte[][] keysAndArgs = new byte[keys.length + 3 + historyArgs.length][];
+		int i = keys.length - 1;
+		System.arraycopy(keys, 0, keysAndArgs, 0, i);
+		keysAndArgs[i++] = String.valueOf(price.getTimestamp()).getBytes(UTF_8);
+		keysAndArgs[i++] = keys[keys.length - 1];
+		keysAndArgs[i++] = UPDATES_CHANNEL;
+		keysAndArgs[i++] = encode(price);
+		for (byte[] arg : historyArgs) {
+			keysAndArgs[i++] = arg;
+		}
+		return keysAndArgs;
+	}
+
+	/**
+	 * The price, index and history keys of the price's instrument, in
+	 * {@code price-upsert.lua} order, then its encoded name.
+	 */
+	private byte[][] instrumentKeys(Price price) {
+
+		int id = price.getInstrumentId();
+		byte[][] keys = id == InstrumentRegistry.UNKNOWN ? null : instrumentKeys.get(id);
+		if (keys != null) {
+			return keys;
+		}
+
+		byte[][] historyKeys = priceHistoryRepository.scriptKeys(price.getInstrumentName());
+		keys = new byte[historyKeys.length + 3][];
+		keys[0] = key(price.getInstrumentName()).getBytes(UTF_8);
+		keys[1] = INDEX_KEYS[bucket(price.getInstrumentName())];
+		System.arraycopy(historyKeys, 0, keys, 2, historyKeys.length);
+		keys[keys.length - 1] = price.getInstrumentName().getBytes(UTF_8);
+		if (id != InstrumentRegistry.UNKNOWN) {
+			instrumentKeys.set(id, keys);
+		}
+		return keys;
+	}
+
+	private Long evalUpsert(RedisConnection connection, byte[][] keysAndArgs) {
+		return connection.evalSha(priceUpsertScript.getSha1(), ReturnType.INTEGER,
+				2 + priceHistoryRepository.scriptKeyCount(), keysAndArgs);
+	}
+
+	private void loadScript(RedisConnection connection) {
+		connection.scriptLoad(priceUpsertScript.getScriptAsString().getBytes(UTF_8));
+	}
+
+	private void readPage(RedisConnection connection, List<byte[]> keys, Consumer<? super Price> action) {
+
+		if (keys.isEmpty()) {
+			return;
+		}
+		for (byte[] value : connection.mGet(keys.toArray(new byte[keys.size()][]))) {
+			if (value != null) {
+				action.accept(priceSerializer.deserialize(value));
+			}
+		}
+	}
+
+	private byte[] encode(Price price) {
+		return priceSerializer.serialize(price);
+	}
+
+	/**
+	 * The hash tag of an instrument's keys: its bucket's, braces included.
+	 */
+	public static String hashTag(String instrumentName) {
+		return "{" + BUCKET_TAGS[bucket(instrumentName)] + "}";
+	}
+
+	public static String key(String instrumentName) {
+		return KEYSPACE + ":" + hashTag(instrumentName) + ":" + instrumentName;
+	}
+
+	/**
+	 * The index set listing the instrument, along with the rest of its
+	 * bucket.
+	 */
+	public static String indexKey(String instrumentName) {
+		return INDEX_KEYSPACE + ":" + hashTag(instrumentName);
+	}
+
+	private boolean ownsBuckets(int shard) {
+
+		for (int bucketShard : bucketShards) {
+			if (bucketShard == shard) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int shard(String instrumentName) {
+		return bucketShards[bucket(instrumentName)];
+	}
+
+	private static int bucket(String instrumentName) {
+
+		byte[] name = instrumentName.getBytes(UTF_8);
+		return HashSlots.crc16(name, 0, name.length) & (INDEX_BUCKETS - 1);
+	}
+
+	private static byte[] concat(byte[] prefix, byte[] instrumentName) {
+
+		byte[] key = new byte[prefix.length + instrumentName.length];
+		System.arraycopy(prefix, 0, key, 0, prefix.length);
+		System.arraycopy(instrumentName, 0, key, prefix.length, instrumentName.length);
+		return key;
+	}
+
+	private static List<Object> pipelined(RedisConnection connection, Consumer<RedisConnection> commands) {
+		connection.openPipeline();
+		try {
+			commands.accept(connection);
+		} catch (RuntimeException e) {
+			connection.closePipeline();
+			throw e;
+		}
+		return connection.closePipeline();
+	}
 
-	Optional<Price> findById(String instrumentName);
-	List<Price> findAll();
+	private static boolean isNoScript(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+				return true;
+			}
+		}
+		if (e instanceof RedisPipelineException) {
+			for (Object result : ((RedisPipelineException) e).getPipelineResult()) {
+				if (result instanceof Throwable && isNoScript((Throwable) result)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
 
 }
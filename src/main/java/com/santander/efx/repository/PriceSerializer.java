@@ -0,0 +1,82 @@
+package com.santander.efx.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.santander.efx.model.Price;
+
+/**
+ * Compact binary layout of a stored price, big-endian:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     1  version
+ *      1     4  external id
+ *      5     8  bid mantissa
+ *     13     8  ask mantissa
+ *     21     8  epoch millis
+ *     29     1  instrument name length
+ *     30     n  instrument name, UTF-8
+ * </pre>
+ *
+ * The fixed part comes first so {@code price-upsert.lua} can read the
+ * timestamp at {@link #TIMESTAMP_OFFSET} with a {@code GETRANGE}.
+ */
+public class PriceSerializer implements RedisSerializer<Price> {
+
+	public static final int TIMESTAMP_OFFSET = 21;
+
+	private static final byte VERSION = 1;
+	private static final int HEADER = 30;
+	private static final int NO_EXTERNAL_ID = Integer.MIN_VALUE;
+
+	@Override
+	public byte[] serialize(Price price) throws SerializationException {
+
+		if (price == null) {
+			return null;
+		}
+
+		byte[] name = price.getInstrumentName().getBytes(UTF_8);
+		if (name.length > 0xff) {
+			throw new SerializationException("Instrument name too long: " + price.getInstrumentName());
+		}
+
+		return ByteBuffer.allocate(HEADER + name.length)
+				.put(VERSION)
+				.putInt(price.getExternalId() == null ? NO_EXTERNAL_ID : price.getExternalId())
+				.putLong(price.getScaledBid())
+				.putLong(price.getScaledAsk())
+				.putLong(price.getTimestamp())
+				.put((byte) name.length)
+				.put(name)
+				.array();
+	}
+
+	@Override
+	public Price deserialize(byte[] bytes) throws SerializationException {
+
+		if (bytes == null) {
+			return null;
+		}
+		if (bytes.length < HEADER || bytes[0] != VERSION) {
+			throw new SerializationException("Not a version " + VERSION + " price value");
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+		int externalId = buffer.getInt();
+
+		Price price = new Price();
+		price.setExternalId(externalId == NO_EXTERNAL_ID ? null : externalId);
+		price.setScaledBid(buffer.getLong());
+		price.setScaledAsk(buffer.getLong());
+		price.setTimestamp(buffer.getLong());
+		price.setInstrumentName(new String(bytes, HEADER, buffer.get() & 0xff, UTF_8));
+		return price;
+	}
+
+}
@@ -0,0 +1,376 @@
+package com.santander.efx.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.utils.FixedPoint;
+
+/**
+ * Latest price per instrument held off the heap, one fixed-width record per
+ * {@link com.santander.efx.utils.InstrumentRegistry} id, in a direct buffer
+ * or in a memory-mapped file a co-located process can read. Updating a
+ * price writes five numbers in place; no object is kept per instrument, and
+ * a {@link Price} is only built by {@link #get(int, String)}.
+ * <p>
+ * The buffer, little-endian, starts with a {@value #HEADER} byte header of
+ * ints: magic, version, record size and capacity. Record {@code id} follows
+ * at {@code HEADER + id * RECORD}:
+ * <ul>
+ * <li>long: sequence, odd while the record is being written</li>
+ * <li>int: instrument id; int: external id, {@link Integer#MIN_VALUE} for
+ * none</li>
+ * <li>long: bid and long: ask, fixed-point mantissas of scale
+ * {@value FixedPoint#SCALE}</li>
+ * <li>long: epoch millis of the price, {@link Long#MIN_VALUE} for no
+ * price</li>
+ * <li>byte: length of the UTF-8 instrument name, 0 when longer than
+ * {@value #NAME_BYTES} bytes, followed by the name</li>
+ * </ul>
+ * Records are guarded by a seqlock: a writer makes the sequence odd, writes
+ * the fields and makes it even again, and a reader retries until it reads
+ * the same even sequence before and after the fields, so readers never see
+ * a record half written. In this process the sequences live in an
+ * {@link AtomicLongArray}: a writer owns a record by moving its sequence
+ * from even to odd with a compare-and-set and publishes it with a volatile
+ * write, while a reader only makes two volatile reads of it, so readers
+ * write no shared memory and do not contend with one another. The record's
+ * sequence in the buffer is a copy kept for readers in other processes,
+ * which only read.
+ */
+public final class OffHeapPriceBook {
+
+	public static final int HEADER = 64;
+	public static final int RECORD = 64;
+	public static final int NAME_BYTES = 23;
+
+	private static final int MAGIC = 0x45465842;
+	private static final int VERSION = 1;
+
+	private static final int INSTRUMENT_ID = 8;
+	private static final int EXTERNAL_ID = 12;
+	private static final int BID = 16;
+	private static final int ASK = 24;
+	private static final int MILLIS = 32;
+	private static final int NAME = 40;
+
+	private static final int NO_EXTERNAL_ID = Integer.MIN_VALUE;
+	private static final long NONE = Long.MIN_VALUE;
+
+	private final ByteBuffer buffer;
+	private final int capacity;
+	private final boolean writable;
+	private final AtomicLongArray sequences;
+	private final AtomicInteger size = new AtomicInteger();
+
+	private OffHeapPriceBook(ByteBuffer buffer, int capacity, boolean writable) {
+
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.capacity = capacity;
+		this.writable = writable;
+		this.sequences = new AtomicLongArray(capacity);
+		if (writable) {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, RECORD);
+			buffer.putInt(12, capacity);
+			for (int id = 0; id < capacity; id++) {
+				reset(offset(id), id);
+			}
+		}
+	}
+
+	/**
+	 * A book of {@code capacity} records in a direct buffer.
+	 */
+	public static OffHeapPriceBook allocate(int capacity) {
+		return new OffHeapPriceBook(ByteBuffer.allocateDirect(HEADER + capacity * RECORD), capacity, true);
+	}
+
+	/**
+	 * A book of {@code capacity} records mapped from {@code file}, created or
+	 * resized as needed, starting empty.
+	 */
+	public static OffHeapPriceBook map(File file, int capacity) throws IOException {
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER + (long) capacity * RECORD);
+			return new OffHeapPriceBook(buffer, capacity, true);
+		}
+	}
+
+	/**
+	 * A read-only view of a book another process maps from {@code file}.
+	 */
+	public static OffHeapPriceBook attach(File file) throws IOException {
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+					|| buffer.getInt(8) != RECORD) {
+				throw new IOException("Not a price book: " + file);
+			}
+			int capacity = buffer.getInt(12);
+			if (buffer.capacity() < HEADER + (long) capacity * RECORD) {
+				throw new IOException("Price book cut short: " + file);
+			}
+			return new OffHeapPriceBook(buffer, capacity, false);
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Records holding a price, as written through this book.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Stores a price as the instrument's latest, unless a price as new is
+	 * already held.
+	 *
+	 * @param encodedName the UTF-8 name, written for readers in other
+	 *                    processes
+	 * @return whether the price was stored
+	 */
+	public boolean put(int id, Price price, byte[] encodedName) {
+
+		int at = offset(id);
+		long millis = price.getTimestamp();
+		long sequence = lock(id);
+		long current = buffer.getLong(at + MILLIS);
+		if (current != NONE && current >= millis) {
+			sequences.set(id, sequence);
+			return false;
+		}
+		Integer externalId = price.getExternalId();
+		write(at, id, sequence, externalId == null ? NO_EXTERNAL_ID : externalId, price.getScaledBid(),
+				price.getScaledAsk(), millis, encodedName);
+		if (current == NONE) {
+			size.incrementAndGet();
+		}
+		return true;
+	}
+
+	/**
+	 * The instrument's latest price, or {@code null}. The name is read from
+	 * the record when not given.
+	 */
+	public Price get(int id, String name) {
+
+		int at = offset(id);
+		for (;;) {
+			long sequence = beginRead(at, id);
+			if ((sequence & 1) != 0) {
+				continue;
+			}
+			long millis = buffer.getLong(at + MILLIS);
+			int externalId = buffer.getInt(at + EXTERNAL_ID);
+			long bid = buffer.getLong(at + BID);
+			long ask = buffer.getLong(at + ASK);
+			String recordName = name == null && millis != NONE ? name(at) : name;
+			if (!endRead(at, id, sequence)) {
+				continue;
+			}
+			if (millis == NONE) {
+				return null;
+			}
+
+			Price price = new Price();
+			price.setInstrumentId(id);
+			price.setInstrumentName(recordName);
+			price.setExternalId(externalId == NO_EXTERNAL_ID ? null : externalId);
+			price.setScaledBid(bid);
+			price.setScaledAsk(ask);
+			price.setTimestamp(millis);
+			return price;
+		}
+	}
+
+	/**
+	 * Epoch millis of the instrument's latest price, or
+	 * {@link Long#MIN_VALUE}.
+	 */
+	public long timestamp(int id) {
+
+		int at = offset(id);
+		for (;;) {
+			long sequence = beginRead(at, id);
+			if ((sequence & 1) != 0) {
+				continue;
+			}
+			long millis = buffer.getLong(at + MILLIS);
+			if (endRead(at, id, sequence)) {
+				return millis;
+			}
+		}
+	}
+
+	/**
+	 * Drops the instrument's price when it is older than {@code timestamp}.
+	 *
+	 * @return whether a price was dropped
+	 */
+	public boolean invalidate(int id, long timestamp) {
+
+		int at = offset(id);
+		long sequence = lock(id);
+		long current = buffer.getLong(at + MILLIS);
+		if (current == NONE || current >= timestamp) {
+			sequences.set(id, sequence);
+			return false;
+		}
+		write(at, id, sequence, NO_EXTERNAL_ID, 0, 0, NONE, null);
+		size.decrementAndGet();
+		return true;
+	}
+
+	public void clear() {
+		for (int id = 0; id < capacity; id++) {
+			invalidate(id, Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Writes what changed in a mapped book out to its file.
+	 */
+	public void force() {
+		if (buffer instanceof MappedByteBuffer && !buffer.isReadOnly()) {
+			((MappedByteBuffer) buffer).force();
+		}
+	}
+
+	/**
+	 * Takes a record for writing, waiting out any other writer.
+	 *
+	 * @return its even sequence, to be restored or moved on by two
+	 */
+	private long lock(int id) {
+
+		if (!writable) {
+			throw new UnsupportedOperationException("Price book attached read-only");
+		}
+		for (;;) {
+			long sequence = sequences.get(id);
+			if ((sequence & 1) == 0 && sequences.compareAndSet(id, sequence, sequence + 1)) {
+				return sequence;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Writes a record taken with {@link #lock(int)} and releases it, the
+	 * buffer's copy of the sequence odd while the fields change.
+	 */
+	private void write(int at, int id, long sequence, int externalId, long bid, long ask, long millis,
+			byte[] encodedName) {
+
+		buffer.putLong(at, sequence + 1);
+		publish(id, sequence + 1);
+		buffer.putInt(at + INSTRUMENT_ID, id);
+		buffer.putInt(at + EXTERNAL_ID, externalId);
+		buffer.putLong(at + BID, bid);
+		buffer.putLong(at + ASK, ask);
+		buffer.putLong(at + MILLIS, millis);
+		if (encodedName != null && buffer.get(at + NAME) == 0 && encodedName.length <= NAME_BYTES) {
+			for (int i = 0; i < encodedName.length; i++) {
+				buffer.put(at + NAME + 1 + i, encodedName[i]);
+			}
+			buffer.put(at + NAME, (byte) encodedName.length);
+		}
+		publish(id, sequence + 1);
+		buffer.putLong(at, sequence + 2);
+		publish(id, sequence + 2);
+	}
+
+	/**
+	 * Empties a record left by an earlier writer, evening out a sequence a
+	 * crash may have left odd, and forgets its name.
+	 */
+	private void reset(int at, int id) {
+
+		sequences.set(id, buffer.getLong(at) + 1 & ~1L);
+		long sequence = lock(id);
+		buffer.putLong(at, sequence + 1);
+		publish(id, sequence + 1);
+		buffer.put(at + NAME, (byte) 0);
+		write(at, id, sequence, NO_EXTERNAL_ID, 0, 0, NONE, null);
+	}
+
+	/**
+	 * The sequence a read of a record starts from: this process's own when
+	 * the book is written here, else the buffer's copy.
+	 */
+	private long beginRead(int at, int id) {
+
+		if (writable) {
+			return sequences.get(id);
+		}
+		long sequence = buffer.getLong(at);
+		sequences.get(id);
+		return sequence;
+	}
+
+	/**
+	 * Whether the fields read since {@link #beginRead(int, int)} returned
+	 * {@code sequence} are whole.
+	 */
+	private boolean endRead(int at, int id, long sequence) {
+
+		if (writable) {
+			return sequences.get(id) == sequence;
+		}
+		sequences.get(id);
+		return buffer.getLong(at) == sequence;
+	}
+
+	/**
+	 * A volatile write of the record's sequence by the writer holding it:
+	 * buffer writes before it are visible to whoever reads the sequence
+	 * after it, and it orders the buffer's copy of the sequence around the
+	 * fields for other processes, Java 8 having no fences outside
+	 * {@code sun.misc.Unsafe}. Attached readers order their buffer reads
+	 * with volatile reads of their own sequences.
+	 */
+	private void publish(int id, long sequence) {
+		sequences.set(id, sequence);
+	}
+
+	private String name(int at) {
+
+		int length = buffer.get(at + NAME);
+		if (length <= 0 || length > NAME_BYTES) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(at + NAME + 1 + i);
+		}
+		return new String(bytes, UTF_8);
+	}
+
+	private int offset(int id) {
+
+		if (id < 0 || id >= capacity) {
+			throw new IndexOutOfBoundsException("No record " + id + " in a book of " + capacity);
+		}
+		return HEADER + id * RECORD;
+	}
+
+}
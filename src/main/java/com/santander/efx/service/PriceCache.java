@@ -0,0 +1,211 @@
+package com.santander.efx.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.exception.ServiceException;
+import com.santander.efx.model.Price;
+import com.santander.efx.utils.InstrumentRegistry;
+
+/**
+ * In-process cache of the latest price per instrument, filled on the write
+ * path and on read misses. Other nodes' writes arrive as
+ * {@code "<epoch millis> <instrument>"} messages on the price updates channel
+ * and evict any older cached entry. When full, an entry not read recently
+ * is evicted: cached instruments sit in a ring in the order they were
+ * cached, a hit marks its entry, and eviction walks the ring from the
+ * front, giving marked entries a second pass at the back (CLOCK), so it
+ * never scans the whole cache.
+ * <p>
+ * Prices are held in an {@link OffHeapPriceBook} of one record per
+ * {@link InstrumentRegistry} id rather than as objects, so updates allocate
+ * nothing and reads neither lock nor write shared memory; a {@link Price}
+ * is built for each hit. With {@code efx.book.file} set, the book is mapped
+ * from that file for co-located processes to read.
+ */
+@Component
+public class PriceCache implements MessageListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PriceCache.class);
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	private final int maxSize;
+	private final File file;
+	private OffHeapPriceBook book;
+
+	private int[] ring;
+	private int ringHead;
+	private int ringSize;
+	private AtomicIntegerArray queued;
+	private AtomicIntegerArray referenced;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public PriceCache(@Value("${efx.cache.max-size:1024}") int maxSize, @Value("${efx.book.file:}") String file) {
+		this.maxSize = maxSize;
+		this.file = file.trim().isEmpty() ? null : new File(file.trim());
+	}
+
+	@PostConstruct
+	public void open() throws IOException {
+		int capacity = instrumentRegistry.capacity();
+		this.book = file == null ? OffHeapPriceBook.allocate(capacity) : OffHeapPriceBook.map(file, capacity);
+		this.ring = new int[capacity];
+		this.queued = new AtomicIntegerArray(capacity);
+		this.referenced = new AtomicIntegerArray(capacity);
+	}
+
+	@PreDestroy
+	public void close() {
+		book.force();
+	}
+
+	public Price get(String instrumentName) {
+
+		int id = instrumentRegistry.id(instrumentName);
+		Price price = id == InstrumentRegistry.UNKNOWN ? null : book.get(id, instrumentRegistry.name(id));
+		if (price == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+			referenced.lazySet(id, 1);
+		}
+		return price;
+	}
+
+	public void put(Price price) {
+
+		int id = id(price);
+		if (id == InstrumentRegistry.UNKNOWN || !book.put(id, price, instrumentRegistry.encodedName(id))) {
+			return;
+		}
+		if (queued.compareAndSet(id, 0, 1)) {
+			synchronized (ring) {
+				enqueue(id);
+			}
+		}
+		if (book.size() > maxSize) {
+			synchronized (ring) {
+				while (book.size() > maxSize && ringSize > 0) {
+					evictOne();
+				}
+			}
+		}
+	}
+
+	public void invalidate(String instrumentName, long timestamp) {
+
+		int id = instrumentRegistry.id(instrumentName);
+		if (id != InstrumentRegistry.UNKNOWN) {
+			book.invalidate(id, timestamp);
+		}
+	}
+
+	public void clear() {
+		book.clear();
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+
+		String body = new String(message.getBody(), UTF_8);
+		int separator = body.indexOf(' ');
+		if (separator <= 0) {
+			LOGGER.debug("Price update skipped, no date: {}", body);
+			return;
+		}
+
+		long timestamp;
+		try {
+			timestamp = Long.parseLong(body.substring(0, separator));
+		} catch (NumberFormatException e) {
+			LOGGER.debug("Price update skipped, bad date: {}", body);
+			return;
+		}
+		invalidate(body.substring(separator + 1), timestamp);
+	}
+
+	public int size() {
+		return book.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Takes the entry at the front of the ring: evicts it unless it was read
+	 * since its last pass, in which case it goes to the back; entries already
+	 * invalidated leave the ring.
+	 */
+	private void evictOne() {
+
+		int id = ring[ringHead];
+		ringHead = (ringHead + 1) % ring.length;
+		ringSize--;
+		if (referenced.get(id) != 0 && book.timestamp(id) != Long.MIN_VALUE) {
+			referenced.set(id, 0);
+			enqueue(id);
+			return;
+		}
+		referenced.set(id, 0);
+		queued.set(id, 0);
+		// a put racing with the eviction either sees the id unqueued or has
+		// written a price read here, so it is queued exactly once
+		if (book.invalidate(id, Long.MAX_VALUE)) {
+			evictions.increment();
+		} else if (book.timestamp(id) != Long.MIN_VALUE && queued.compareAndSet(id, 0, 1)) {
+			enqueue(id);
+		}
+	}
+
+	private void enqueue(int id) {
+		ring[(ringHead + ringSize) % ring.length] = id;
+		ringSize++;
+	}
+
+	/**
+	 * The id of a price's instrument, registering a name first read from
+	 * Redis, or {@link InstrumentRegistry#UNKNOWN} when it cannot be.
+	 */
+	private int id(Price price) {
+
+		int id = price.getInstrumentId();
+		if (id != InstrumentRegistry.UNKNOWN) {
+			return id;
+		}
+		try {
+			return instrumentRegistry.resolve(price.getInstrumentName());
+		} catch (ServiceException e) {
+			return InstrumentRegistry.UNKNOWN;
+		}
+	}
+
+}
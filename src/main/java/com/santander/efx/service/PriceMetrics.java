@@ -0,0 +1,120 @@
+package com.santander.efx.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Hot path meters, published under {@code /actuator/metrics}. Stage timers
+ * keep HDR-backed percentiles and every meter is registered up front, so
+ * recording a tick does not allocate.
+ * <ul>
+ * <li>{@code efx.tick.stage{stage=parse|spread|store}}: time per stage; a
+ * store is one Redis round trip, for one price or a pipelined batch</li>
+ * <li>{@code efx.tick.lag}: wall clock at store time minus the tick's own
+ * timestamp, for accepted prices</li>
+ * <li>{@code efx.ticks{result=accepted|stale|conflated|rejected}}: stale
+ * ticks were older than the stored price, conflated ones were replaced by a
+ * newer tick before being written, rejected ones did not parse</li>
+ * <li>{@code efx.price.read{source=instrument|book}}: read latency</li>
+ * <li>{@code efx.cache.*}, {@code efx.subscriptions} and
+ * {@code efx.push.overflows}: cache and push state</li>
+ * </ul>
+ */
+@Component
+public class PriceMetrics {
+
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final Timer parse;
+	private final Timer spread;
+	private final Timer store;
+	private final Timer lag;
+	private final Timer readInstrument;
+	private final Timer readBook;
+	private final Counter accepted;
+	private final Counter stale;
+	private final Counter conflated;
+	private final Counter rejected;
+
+	public PriceMetrics(MeterRegistry registry, PriceCache priceCache, PriceSubscriptions priceSubscriptions) {
+
+		this.parse = stageTimer(registry, "parse");
+		this.spread = stageTimer(registry, "spread");
+		this.store = stageTimer(registry, "store");
+		this.lag = Timer.builder("efx.tick.lag").description("Feed to store lag").publishPercentiles(PERCENTILES)
+				.register(registry);
+		this.readInstrument = readTimer(registry, "instrument");
+		this.readBook = readTimer(registry, "book");
+		this.accepted = ticks(registry, "accepted");
+		this.stale = ticks(registry, "stale");
+		this.conflated = ticks(registry, "conflated");
+		this.rejected = ticks(registry, "rejected");
+
+		FunctionCounter.builder("efx.cache.hits", priceCache, PriceCache::getHits).register(registry);
+		FunctionCounter.builder("efx.cache.misses", priceCache, PriceCache::getMisses).register(registry);
+		FunctionCounter.builder("efx.cache.evictions", priceCache, PriceCache::getEvictions).register(registry);
+		Gauge.builder("efx.cache.size", priceCache, PriceCache::size).register(registry);
+		Gauge.builder("efx.subscriptions", priceSubscriptions, PriceSubscriptions::size).register(registry);
+		FunctionCounter.builder("efx.push.overflows", priceSubscriptions, PriceSubscriptions::getOverflows)
+				.register(registry);
+	}
+
+	public void parsed(long startNanos) {
+		parse.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void spread(long startNanos) {
+		spread.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void stored(long startNanos) {
+		store.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void readInstrument(long startNanos) {
+		readInstrument.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void readBook(long startNanos) {
+		readBook.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void accepted(long tickTimestamp) {
+		accepted.increment();
+		lag.record(System.currentTimeMillis() - tickTimestamp, TimeUnit.MILLISECONDS);
+	}
+
+	public void stale(int count) {
+		stale.increment(count);
+	}
+
+	public void conflated() {
+		conflated.increment();
+	}
+
+	public void rejected() {
+		rejected.increment();
+	}
+
+	private static Timer stageTimer(MeterRegistry registry, String stage) {
+		return Timer.builder("efx.tick.stage").tag("stage", stage).publishPercentiles(PERCENTILES)
+				.register(registry);
+	}
+
+	private static Timer readTimer(MeterRegistry registry, String source) {
+		return Timer.builder("efx.price.read").tag("source", source).publishPercentiles(PERCENTILES)
+				.register(registry);
+	}
+
+	private static Counter ticks(MeterRegistry registry, String result) {
+		return Counter.builder("efx.ticks").tag("result", result).register(registry);
+	}
+
+}
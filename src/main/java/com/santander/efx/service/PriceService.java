@@ -1,81 +1,299 @@
 package com.santander.efx.service;
 
-import java.math.BigDecimal;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.santander.efx.exception.ServiceException;
 import com.santander.efx.model.Price;
+import com.santander.efx.model.PriceBar;
+import com.santander.efx.model.PriceTick;
+import com.santander.efx.repository.PriceHistoryRepository;
 import com.santander.efx.repository.PriceRepository;
-import com.santander.efx.utils.DateUtils;
+import com.santander.efx.utils.CsvTickParser;
 
 @Service
 public class PriceService {
 
+	// parsed into, then copied into the Price that goes on, so one per thread
+	private static final ThreadLocal<PriceTick> TICKS = ThreadLocal.withInitial(PriceTick::new);
+
 	@Autowired
-	private DateUtils dateUtils;
+	private CsvTickParser csvTickParser;
 
 	@Autowired
 	private PriceRepository priceRepository;
 
-	private final static BigDecimal SPREAD = new BigDecimal("0.1");
-	private final static int SCALE = 4;
-	private final static int ROUNDING_MODE = BigDecimal.ROUND_HALF_DOWN;
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Autowired
+	private PriceCache priceCache;
+
+	@Autowired
+	private PriceSubscriptions priceSubscriptions;
+
+	@Autowired
+	private PriceMetrics priceMetrics;
+
+	@Autowired
+	private TickRejections tickRejections;
+
+	@Autowired
+	private PricingRules pricingRules;
+
+	@Autowired
+	private PriceWriteBehind priceWriteBehind;
 
 	public List<Price> getAll() {
-		return this.priceRepository.findAll();
+
+		long start = System.nanoTime();
+		List<Price> prices = this.priceWriteBehind.overlay(this.priceRepository.findAll());
+		this.priceMetrics.readBook(start);
+		return prices;
+	}
+
+	/**
+	 * {@link #getAll()} without blocking the caller on Redis.
+	 */
+	public CompletableFuture<List<Price>> getAllAsync() {
+
+		long start = System.nanoTime();
+		return this.priceRepository.findAllAsync().toFuture()
+				.thenApply(this.priceWriteBehind::overlay)
+				.whenComplete((prices, e) -> this.priceMetrics.readBook(start));
+	}
+
+	/**
+	 * Walks the book in Redis, so with write-behind on, prices can be up to a
+	 * flush behind.
+	 */
+	public void forEachPrice(Consumer<? super Price> action) {
+		this.priceRepository.forEach(action);
 	}
 
 	public Price getPriceByInstrumentName(String instrumentName) {
 
-		Optional<Price> opPrice = this.priceRepository.findById(instrumentName);
+		long start = System.nanoTime();
+		Price cached = cachedPrice(instrumentName);
+		if (cached != null) {
+			this.priceMetrics.readInstrument(start);
+			return cached;
+		}
+
+		Optional<Price> opPrice = this.priceRepository.findLatest(instrumentName);
+		opPrice.ifPresent(this.priceCache::put);
+		this.priceMetrics.readInstrument(start);
 		return opPrice.orElse(new Price());
 	}
 
+	/**
+	 * {@link #getPriceByInstrumentName(String)} without blocking the caller on
+	 * Redis. Cache hits complete immediately.
+	 */
+	public CompletableFuture<Price> getPriceByInstrumentNameAsync(String instrumentName) {
+
+		long start = System.nanoTime();
+		Price cached = cachedPrice(instrumentName);
+		if (cached != null) {
+			this.priceMetrics.readInstrument(start);
+			return CompletableFuture.completedFuture(cached);
+		}
+
+		return this.priceRepository.findLatestAsync(instrumentName)
+				.doOnNext(this.priceCache::put)
+				.defaultIfEmpty(new Price())
+				.toFuture()
+				.whenComplete((price, e) -> this.priceMetrics.readInstrument(start));
+	}
+
+	/**
+	 * How stored prices are quoted to a client tier, with the rules in force
+	 * now; prices are left as they are for no tier.
+	 *
+	 * @throws IllegalArgumentException when no rule names the tier
+	 */
+	public UnaryOperator<Price> tierPricing(String tier) {
+
+		PricingTable table = this.pricingRules.table();
+		int index = table.tier(tier);
+		return price -> table.skew(price, index);
+	}
+
+	/**
+	 * The instrument's ticks dated between {@code from} and {@code to}
+	 * inclusive, oldest first.
+	 */
+	public List<Price> getTicks(String instrumentName, long from, long to, int limit) {
+		return this.priceHistoryRepository.findTicks(instrumentName, from, to, limit);
+	}
+
+	/**
+	 * The instrument's price as of {@code at}, or an empty price when no tick
+	 * that old is kept.
+	 */
+	public Price getPriceAsOf(String instrumentName, long at) {
+		return this.priceHistoryRepository.findTickAsOf(instrumentName, at).orElse(new Price());
+	}
+
+	public List<PriceBar> getBars(String instrumentName, long interval, long from, long to) {
+		return this.priceHistoryRepository.findBars(instrumentName, interval, from, to);
+	}
+
 	public void saveCsvPrice(String strPrice) {
 
-		String[] arrPrice = extractCsv(strPrice);
+		Price price = parseAdjustedPrice(strPrice);
+		if (this.priceWriteBehind.isEnabled()) {
+			writeBehind(price);
+			return;
+		}
 
-		Price price = new Price();
-		price.setExternalId(Integer.valueOf(arrPrice[0]));
-		price.setInstrumentName(arrPrice[1]);
-		price.setBid(new BigDecimal(arrPrice[2]).setScale(SCALE, ROUNDING_MODE));
-		price.setAsk(new BigDecimal(arrPrice[3]).setScale(SCALE, ROUNDING_MODE));
-		price.setDate(dateUtils.formatDate(arrPrice[4]));
+		long start = System.nanoTime();
+		boolean written = this.priceRepository.upsertIfNewer(price);
+		this.priceMetrics.stored(start);
+		if (written) {
+			accepted(price);
+		} else {
+			this.priceMetrics.stale(1);
+		}
+
+	}
 
-		Optional<Price> oldPrice = this.priceRepository.findById(price.getInstrumentName());
+	/**
+	 * Saves a burst of CSV prices. The burst is collapsed to the newest tick per
+	 * instrument and the survivors are upserted in one pipelined round trip,
+	 * whatever the size of the burst. Every line is validated before anything
+	 * is written.
+	 */
+	public void saveCsvPrices(List<String> strPrices) {
 
-		if (!oldPrice.isPresent() || oldPrice.isPresent() && price.getDate().after(oldPrice.get().getDate())) {
-			this.priceRepository.save(adjustedPrice(price));
+		Map<String, Price> newest = new LinkedHashMap<>();
+		for (String strPrice : strPrices) {
+			Price price = parseCsvPrice(strPrice);
+			newest.merge(price.getInstrumentName(), price, (current, candidate) -> {
+				this.priceMetrics.conflated();
+				return candidate.getTimestamp() > current.getTimestamp() ? candidate : current;
+			});
 		}
 
+		List<Price> adjustedPrices = new ArrayList<>(newest.size());
+		newest.values().forEach(price -> adjustedPrices.add(adjustedPrice(price)));
+		savePrices(adjustedPrices);
+
+	}
+
+	/**
+	 * Parses a CSV price and applies the spread, without saving it.
+	 */
+	public Price parseAdjustedPrice(String strPrice) {
+		return adjustedPrice(parseCsvPrice(strPrice));
+	}
+
+	/**
+	 * Applies the spread to a tick parsed elsewhere.
+	 */
+	public Price adjustedPrice(PriceTick tick) {
+		return adjustedPrice(toPrice(tick));
 	}
 
-	private String[] extractCsv(String strPrice) {
+	/**
+	 * Upserts already adjusted prices, at most one per instrument, in one
+	 * pipelined round trip, or hands them to the write-behind book.
+	 */
+	public void savePrices(Collection<Price> adjustedPrices) {
+
+		if (this.priceWriteBehind.isEnabled()) {
+			adjustedPrices.forEach(this::writeBehind);
+			return;
+		}
+
+		long start = System.nanoTime();
+		List<Price> written = this.priceRepository.upsertAllIfNewer(adjustedPrices);
+		this.priceMetrics.stored(start);
+		written.forEach(this::accepted);
+		this.priceMetrics.stale(adjustedPrices.size() - written.size());
+	}
 
-		List<String> csvList = Arrays.asList(strPrice.split(","));
+	/**
+	 * Subscribes to pushes of the given instruments, starting with their
+	 * current prices, each quoted with {@code pricing}.
+	 */
+	public void subscribe(List<String> instrumentNames, UnaryOperator<Price> pricing, SseEmitter emitter) {
 
-		
-		
-		if (csvList.size() != 5 || csvList.stream().anyMatch(e -> StringUtils.isBlank(e))) {
-			throw new ServiceException();
+		this.priceSubscriptions.subscribe(instrumentNames, pricing, emitter);
+		for (String instrumentName : instrumentNames) {
+			Price price = getPriceByInstrumentName(instrumentName);
+			if (price.getInstrumentName() != null) {
+				this.priceSubscriptions.publish(price);
+			}
 		}
 
-		return csvList.stream().map(e -> e.trim()).toArray(String[]::new);
 	}
 
-	private Price adjustedPrice(Price price) {
+	private Price cachedPrice(String instrumentName) {
+
+		Price unflushed = this.priceWriteBehind.getUnflushed(instrumentName);
+		return unflushed != null ? unflushed : this.priceCache.get(instrumentName);
+	}
+
+	private void writeBehind(Price price) {
 
-		BigDecimal bidSpread = BigDecimal.ONE.subtract(SPREAD);
-		BigDecimal askSpread = BigDecimal.ONE.add(SPREAD);
+		if (this.priceWriteBehind.offer(price)) {
+			accepted(price);
+		} else {
+			this.priceMetrics.stale(1);
+		}
+	}
+
+	private void accepted(Price price) {
+		this.priceMetrics.accepted(price.getTimestamp());
+		this.priceCache.put(price);
+		this.priceSubscriptions.publish(price);
+	}
+
+	private Price parseCsvPrice(String strPrice) {
+
+		long start = System.nanoTime();
+		PriceTick tick;
+		try {
+			tick = csvTickParser.parse(strPrice, TICKS.get());
+		} catch (ServiceException e) {
+			this.tickRejections.reject(e.getReason(), strPrice);
+			throw e;
+		}
+		this.priceMetrics.parsed(start);
+
+		return toPrice(tick);
+	}
+
+	private Price toPrice(PriceTick tick) {
+
+		Price price = new Price();
+		price.setExternalId(tick.getExternalId());
+		price.setInstrumentId(tick.getInstrumentId());
+		price.setInstrumentName(tick.getInstrumentName());
+		price.setScaledBid(tick.getBid());
+		price.setScaledAsk(tick.getAsk());
+		price.setTimestamp(tick.getTimestamp());
+
+		return price;
+	}
+
+	private Price adjustedPrice(Price price) {
 
-		price.setBid(price.getBid().multiply(bidSpread).setScale(SCALE, ROUNDING_MODE));
-		price.setAsk(price.getAsk().multiply(askSpread).setScale(SCALE, ROUNDING_MODE));
+		long start = System.nanoTime();
+		this.pricingRules.table().adjust(price);
+		this.priceMetrics.spread(start);
 
 		return price;
 	}
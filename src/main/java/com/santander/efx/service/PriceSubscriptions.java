@@ -0,0 +1,244 @@
+package com.santander.efx.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceRepository;
+
+/**
+ * Pushes accepted prices to Server-Sent Events subscribers. Each subscriber
+ * keeps at most one pending price per instrument, replaced by newer ones
+ * while it is busy sending, so a slow client only ever gets the latest price
+ * and never queues more than its instrument count. Each subscriber quotes
+ * prices its own way, e.g. to its client tier, as they are sent, so the
+ * conflation runs on stored prices. A subscriber is drained
+ * by at most one sender thread at a time, from a pool of
+ * {@code efx.push.sender-threads} threads and
+ * {@code efx.push.sender-queue} waiting tasks; when the queue is
+ * full a subscriber's prices stay pending, conflated, until its next price
+ * finds room, and such overflows are counted.
+ * <p>
+ * Prices written by other nodes arrive as {@code "<epoch millis> <instrument>"}
+ * messages on the price updates channel and, when someone subscribes to that
+ * instrument and this node has not published it yet, are read back from
+ * the primary on the sender pool, not on the listener thread, and pushed,
+ * so a lagging replica never sends an older price than announced. Reads
+ * for one instrument are conflated the same way while one is outstanding.
+ */
+@Component
+public class PriceSubscriptions implements MessageListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PriceSubscriptions.class);
+
+	private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+	private final Map<String, Long> published = new ConcurrentHashMap<>();
+	private final Map<String, Long> refreshing = new ConcurrentHashMap<>();
+	private final ThreadPoolExecutor senders;
+	private final LongAdder overflows = new LongAdder();
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	public PriceSubscriptions(@Value("${efx.push.sender-threads:4}") int senderThreads,
+			@Value("${efx.push.sender-queue:1024}") int senderQueue) {
+		this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(senderQueue), senderThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+		this.senders.allowCoreThreadTimeOut(true);
+	}
+
+	public void subscribe(Collection<String> instrumentNames, SseEmitter emitter) {
+		subscribe(instrumentNames, UnaryOperator.identity(), emitter);
+	}
+
+	public void subscribe(Collection<String> instrumentNames, UnaryOperator<Price> pricing, SseEmitter emitter) {
+
+		Subscriber subscriber = new Subscriber(instrumentNames, pricing, emitter);
+		emitter.onCompletion(() -> unsubscribe(subscriber));
+		emitter.onTimeout(() -> unsubscribe(subscriber));
+		emitter.onError(e -> unsubscribe(subscriber));
+
+		instrumentNames.forEach(instrumentName -> subscribers
+				.computeIfAbsent(instrumentName, name -> ConcurrentHashMap.newKeySet()).add(subscriber));
+	}
+
+	public void publish(Price price) {
+
+		Set<Subscriber> instrumentSubscribers = subscribers.get(price.getInstrumentName());
+		if (instrumentSubscribers == null) {
+			return;
+		}
+
+		published.merge(price.getInstrumentName(), price.getTimestamp(), Math::max);
+		instrumentSubscribers.forEach(subscriber -> subscriber.offer(price));
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+
+		String body = new String(message.getBody(), UTF_8);
+		int separator = body.indexOf(' ');
+		if (separator <= 0) {
+			LOGGER.debug("Price update skipped, no date: {}", body);
+			return;
+		}
+
+		long timestamp;
+		try {
+			timestamp = Long.parseLong(body.substring(0, separator));
+		} catch (NumberFormatException e) {
+			LOGGER.debug("Price update skipped, bad date: {}", body);
+			return;
+		}
+		String instrumentName = body.substring(separator + 1);
+		Long newestPublished = published.get(instrumentName);
+		if (subscribers.containsKey(instrumentName) && (newestPublished == null || newestPublished < timestamp)
+				&& refreshing.put(instrumentName, timestamp) == null) {
+			try {
+				senders.execute(() -> refresh(instrumentName));
+			} catch (RejectedExecutionException e) {
+				refreshing.remove(instrumentName);
+				overflows.increment();
+			}
+		}
+	}
+
+	/**
+	 * Times the sender pool was full, leaving prices pending until the next
+	 * one for the same subscriber or instrument.
+	 */
+	public long getOverflows() {
+		return overflows.sum();
+	}
+
+	private void refresh(String instrumentName) {
+
+		refreshing.remove(instrumentName);
+		priceRepository.findLatest(instrumentName).ifPresent(this::publish);
+	}
+
+	public int size() {
+
+		Set<Subscriber> all = ConcurrentHashMap.newKeySet();
+		subscribers.values().forEach(all::addAll);
+		return all.size();
+	}
+
+	@PreDestroy
+	public void close() {
+
+		senders.shutdownNow();
+		subscribers.values().forEach(instrumentSubscribers -> instrumentSubscribers
+				.forEach(subscriber -> subscriber.emitter.complete()));
+	}
+
+	private static ThreadFactory senderThreadFactory() {
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("price-push-");
+		threadFactory.setDaemon(true);
+		return threadFactory;
+	}
+
+	private void unsubscribe(Subscriber subscriber) {
+
+		subscriber.closed = true;
+		subscriber.instrumentNames.forEach(instrumentName -> subscribers.computeIfPresent(instrumentName,
+				(name, instrumentSubscribers) -> {
+					instrumentSubscribers.remove(subscriber);
+					return instrumentSubscribers.isEmpty() ? null : instrumentSubscribers;
+				}));
+	}
+
+	private final class Subscriber {
+
+		private final Collection<String> instrumentNames;
+		private final UnaryOperator<Price> pricing;
+		private final SseEmitter emitter;
+		private final Map<String, Price> pending = new ConcurrentHashMap<>();
+		private final Map<String, Long> sent = new ConcurrentHashMap<>();
+		private final AtomicBoolean draining = new AtomicBoolean();
+		private volatile boolean closed;
+
+		private Subscriber(Collection<String> instrumentNames, UnaryOperator<Price> pricing, SseEmitter emitter) {
+			this.instrumentNames = instrumentNames;
+			this.pricing = pricing;
+			this.emitter = emitter;
+		}
+
+		private void offer(Price price) {
+
+			if (closed || !isNewer(price)) {
+				return;
+			}
+
+			pending.merge(price.getInstrumentName(), price,
+					(current, candidate) -> candidate.getTimestamp() > current.getTimestamp() ? candidate : current);
+			if (draining.compareAndSet(false, true)) {
+				try {
+					senders.execute(this::drain);
+				} catch (RejectedExecutionException e) {
+					draining.set(false);
+					overflows.increment();
+				}
+			}
+		}
+
+		private void drain() {
+
+			do {
+				for (String instrumentName : pending.keySet()) {
+					Price price = pending.remove(instrumentName);
+					if (price != null && !closed && isNewer(price)) {
+						send(price);
+					}
+				}
+				draining.set(false);
+			} while (!pending.isEmpty() && draining.compareAndSet(false, true));
+		}
+
+		private void send(Price price) {
+
+			try {
+				emitter.send(SseEmitter.event().name("price").id(String.valueOf(price.getTimestamp()))
+						.data(pricing.apply(price)));
+				sent.put(price.getInstrumentName(), price.getTimestamp());
+			} catch (IOException | IllegalStateException e) {
+				unsubscribe(this);
+				emitter.completeWithError(e);
+			}
+		}
+
+		private boolean isNewer(Price price) {
+
+			Long last = sent.get(price.getInstrumentName());
+			return last == null || last < price.getTimestamp();
+		}
+
+	}
+
+}
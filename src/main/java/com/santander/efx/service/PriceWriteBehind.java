@@ -0,0 +1,294 @@
+package com.santander.efx.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceRepository;
+import com.santander.efx.utils.InstrumentRegistry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Write-behind book, on with {@code efx.write.mode=behind}. Accepted prices
+ * become the instrument's latest in memory at once, newer-wins, and mark it
+ * dirty; a flusher thread writes the latest price of every dirty instrument
+ * to Redis in pipelined batches every {@code efx.write-behind.flush-interval-ms},
+ * or as soon as {@code efx.write-behind.max-dirty} instruments are dirty.
+ * However many times an instrument ticks between flushes, it costs one
+ * write, so ingestion is no longer bound by Redis throughput.
+ * <p>
+ * Until flushed, a price is read from here rather than from Redis. Only
+ * flushed prices reach the tick history, and a price older than one another
+ * node stored is found out at flush time, when Redis turns it down, and is
+ * then dropped from the {@link PriceCache} so reads go back to Redis. A flush
+ * that fails leaves its instruments dirty for the next one, and everything
+ * dirty is flushed on shutdown.
+ * <p>
+ * Per-instrument state is indexed by {@link InstrumentRegistry} id: the
+ * latest price in an {@link OffHeapPriceBook} record, the date of the last
+ * one flushed and the dirty flag, so no price is held as an object between
+ * flushes; one is built for each price flushed or read.
+ */
+@Component
+public class PriceWriteBehind {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PriceWriteBehind.class);
+
+	private static final int MAX_BATCH = 512;
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	@Autowired
+	private PriceMetrics priceMetrics;
+
+	@Autowired
+	private PriceCache priceCache;
+
+	private final boolean enabled;
+	private final long flushIntervalNanos;
+	private final int maxDirty;
+	private final AtomicInteger dirtyCount = new AtomicInteger();
+	private final LongAdder flushed = new LongAdder();
+
+	private OffHeapPriceBook latest;
+	private AtomicLongArray stored;
+	private AtomicIntegerArray dirty;
+	private Thread flusher;
+	private volatile boolean running;
+
+	public PriceWriteBehind(MeterRegistry registry,
+			@Value("#{'${efx.write.mode:immediate}' == 'behind'}") boolean enabled,
+			@Value("${efx.write-behind.flush-interval-ms:10}") long flushInterval,
+			@Value("${efx.write-behind.max-dirty:512}") int maxDirty) {
+
+		this.enabled = enabled;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushInterval));
+		this.maxDirty = Math.max(1, maxDirty);
+		if (enabled) {
+			Gauge.builder("efx.write-behind.dirty", dirtyCount, AtomicInteger::get).register(registry);
+			FunctionCounter.builder("efx.write-behind.flushed", flushed, LongAdder::sum).register(registry);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@PostConstruct
+	public void start() {
+
+		if (!enabled) {
+			return;
+		}
+		int capacity = instrumentRegistry.capacity();
+		latest = OffHeapPriceBook.allocate(capacity);
+		stored = new AtomicLongArray(capacity);
+		for (int id = 0; id < capacity; id++) {
+			stored.set(id, Long.MIN_VALUE);
+		}
+		dirty = new AtomicIntegerArray(capacity);
+		running = true;
+		flusher = new Thread(this::run, "price-write-behind");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Makes an adjusted price its instrument's latest, unless a price as new
+	 * is already held.
+	 *
+	 * @return whether the price was taken
+	 */
+	public boolean offer(Price price) {
+
+		int id = id(price);
+		if (!latest.put(id, price, null)) {
+			return false;
+		}
+		if (dirty.getAndSet(id, 1) == 0 && dirtyCount.incrementAndGet() == maxDirty) {
+			LockSupport.unpark(flusher);
+		}
+		return true;
+	}
+
+	/**
+	 * The instrument's latest price when it has not been flushed yet, else
+	 * {@code null}.
+	 */
+	public Price getUnflushed(String instrumentName) {
+
+		int id = enabled ? instrumentRegistry.id(instrumentName) : InstrumentRegistry.UNKNOWN;
+		if (id == InstrumentRegistry.UNKNOWN) {
+			return null;
+		}
+		return isUnflushed(id) ? latest.get(id, instrumentRegistry.name(id)) : null;
+	}
+
+	/**
+	 * A book read from Redis with the prices not flushed yet laid over it.
+	 */
+	public List<Price> overlay(List<Price> prices) {
+
+		if (!enabled) {
+			return prices;
+		}
+		int size = instrumentRegistry.size();
+		Price[] unflushed = new Price[size];
+		int count = 0;
+		for (int id = 0; id < size; id++) {
+			if (isUnflushed(id)) {
+				unflushed[id] = latest.get(id, instrumentRegistry.name(id));
+				count++;
+			}
+		}
+		if (count == 0) {
+			return prices;
+		}
+
+		List<Price> merged = new ArrayList<>(prices.size() + count);
+		for (Price price : prices) {
+			int id = instrumentRegistry.id(price.getInstrumentName());
+			Price newer = id == InstrumentRegistry.UNKNOWN || id >= size ? null : unflushed[id];
+			if (newer != null && newer.getTimestamp() > price.getTimestamp()) {
+				merged.add(newer);
+			} else {
+				merged.add(price);
+			}
+			if (newer != null) {
+				unflushed[id] = null;
+			}
+		}
+		for (Price price : unflushed) {
+			if (price != null) {
+				merged.add(price);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Writes the latest price of every dirty instrument.
+	 *
+	 * @return the number of prices written
+	 */
+	public synchronized int flush() {
+
+		if (!enabled) {
+			return 0;
+		}
+		List<Price> batch = new ArrayList<>(MAX_BATCH);
+		int written = 0;
+		int size = instrumentRegistry.size();
+		for (int id = 0; id < size; id++) {
+			if (dirty.get(id) == 0 || dirty.getAndSet(id, 0) == 0) {
+				continue;
+			}
+			dirtyCount.decrementAndGet();
+			batch.add(latest.get(id, instrumentRegistry.name(id)));
+			if (batch.size() == MAX_BATCH) {
+				written += write(batch);
+			}
+		}
+		return written + write(batch);
+	}
+
+	public int getDirtyCount() {
+		return dirtyCount.get();
+	}
+
+	public long getFlushed() {
+		return flushed.sum();
+	}
+
+	/**
+	 * Stops the flusher and flushes whatever is still dirty.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+
+		if (!enabled) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(flusher);
+		flusher.join();
+		int written = flush();
+		LOGGER.info("Write-behind stopped, flushed {} prices, {} left dirty", written, dirtyCount.get());
+	}
+
+	private void run() {
+		while (running) {
+			LockSupport.parkNanos(this, flushIntervalNanos);
+			flush();
+		}
+	}
+
+	private int write(List<Price> batch) {
+
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		int size = batch.size();
+		long start = System.nanoTime();
+		try {
+			List<Price> written = priceRepository.upsertAllIfNewer(batch);
+			priceMetrics.stored(start);
+			priceMetrics.stale(size - written.size());
+			int next = 0;
+			for (Price price : batch) {
+				stored.set(id(price), price.getTimestamp());
+				if (next < written.size() && written.get(next) == price) {
+					next++;
+				} else {
+					priceCache.invalidate(price.getInstrumentName(), price.getTimestamp() + 1);
+				}
+			}
+			flushed.add(size);
+			return size;
+		} catch (RuntimeException e) {
+			LOGGER.error("Write-behind flush of {} prices failed, keeping them dirty: {}", size, e.getMessage());
+			for (Price price : batch) {
+				int id = id(price);
+				if (dirty.getAndSet(id, 1) == 0) {
+					dirtyCount.incrementAndGet();
+				}
+			}
+			return 0;
+		} finally {
+			batch.clear();
+		}
+	}
+
+	private boolean isUnflushed(int id) {
+		return latest.timestamp(id) != stored.get(id);
+	}
+
+	private int id(Price price) {
+
+		int id = price.getInstrumentId();
+		return id != InstrumentRegistry.UNKNOWN ? id : instrumentRegistry.resolve(price.getInstrumentName());
+	}
+
+}
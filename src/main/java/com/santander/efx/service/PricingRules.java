@@ -0,0 +1,87 @@
+package com.santander.efx.service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * The pricing rules in force: the {@code efx.pricing.rules} entries, e.g.
+ * {@code EUR/USD=0.05,USD/JPY=0.08:0.12,*@gold=-0.02}, overridden by the
+ * fields of the {@value #RULES_KEY} Redis hash, on top of
+ * {@code efx.pricing.default-margin}. See {@link PricingTable} for the
+ * format.
+ * <p>
+ * Rules are compiled into a new {@link PricingTable} on startup and on
+ * {@link #reload()}, which swaps it in with a single write: a tick is
+ * adjusted by either table, never a mix. Rules that do not compile leave
+ * the table in force untouched.
+ */
+@Component
+public class PricingRules implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PricingRules.class);
+
+	public static final String RULES_KEY = "pricing-rules";
+
+	@Autowired
+	private StringRedisTemplate stringRedisTemplate;
+
+	private final BigDecimal defaultMargin;
+	private final Map<String, String> configuredRules = new LinkedHashMap<>();
+	private volatile PricingTable table;
+
+	public PricingRules(@Value("${efx.pricing.default-margin:0.1}") BigDecimal defaultMargin,
+			@Value("${efx.pricing.rules:}") String[] rules) {
+
+		for (String rule : rules) {
+			if (rule.trim().isEmpty()) {
+				continue;
+			}
+			int separator = rule.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Bad pricing rule: " + rule);
+			}
+			configuredRules.put(rule.substring(0, separator).trim(), rule.substring(separator + 1).trim());
+		}
+		this.defaultMargin = defaultMargin;
+		this.table = PricingTable.compile(defaultMargin, configuredRules);
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		try {
+			reload();
+		} catch (DataAccessException | IllegalArgumentException e) {
+			LOGGER.warn("Pricing with the configured rules only: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Compiles the configured and stored rules and puts them in force.
+	 */
+	public PricingTable reload() {
+
+		Map<String, String> rules = new LinkedHashMap<>(configuredRules);
+		stringRedisTemplate.<String, String>opsForHash().entries(RULES_KEY).forEach(rules::put);
+
+		PricingTable compiled = PricingTable.compile(defaultMargin, rules);
+		this.table = compiled;
+		LOGGER.info("Pricing with {} rules", rules.size());
+		return compiled;
+	}
+
+	public PricingTable table() {
+		return table;
+	}
+
+}
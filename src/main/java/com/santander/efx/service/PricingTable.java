@@ -0,0 +1,229 @@
+package com.santander.efx.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.utils.FixedPoint;
+
+/**
+ * Immutable, compiled pricing rules: for every instrument, the bid and ask
+ * {@link FixedPoint#rate(BigDecimal) rates} applied to feed prices before
+ * they are stored, and per client tier the rates that skew stored prices on
+ * the way out.
+ * <p>
+ * Rules are keyed {@code <instrument>} or {@code <instrument>@<tier>}, with
+ * {@code *} standing for every instrument without a rule of its own, and
+ * valued {@code <margin>} or {@code <bid margin>:<ask margin>}: the bid is
+ * lowered and the ask raised by the margin, e.g. {@code 0.1} stores
+ * {@code 90%} of the feed bid and {@code 110%} of its ask. A tier margin
+ * applies on top of the stored price and may be negative to tighten it.
+ * <p>
+ * Instruments with rules are placed by a perfect hash found at compile
+ * time, so a lookup is one multiply, one shift and one {@code equals}, and
+ * allocates nothing.
+ */
+public final class PricingTable {
+
+	public static final String ANY_INSTRUMENT = "*";
+	public static final char TIER_SEPARATOR = '@';
+	private static final int MAX_SEEDS = 4096;
+
+	private final String[] instrumentNames;
+	private final long[] rates;
+	private final int shift;
+	private final int seed;
+	private final int defaultSlot;
+	private final int columns;
+	private final Map<String, Integer> tiers;
+	private final Map<String, String> rules;
+
+	private PricingTable(String[] instrumentNames, long[] rates, int shift, int seed, Map<String, Integer> tiers,
+			Map<String, String> rules) {
+		this.instrumentNames = instrumentNames;
+		this.rates = rates;
+		this.shift = shift;
+		this.seed = seed;
+		this.defaultSlot = instrumentNames.length;
+		this.columns = tiers.size() + 1;
+		this.tiers = tiers;
+		this.rules = rules;
+	}
+
+	/**
+	 * Compiles rules on top of a margin for instruments no rule covers.
+	 *
+	 * @throws IllegalArgumentException when a rule does not read
+	 */
+	public static PricingTable compile(BigDecimal defaultMargin, Map<String, String> rules) {
+
+		Map<String, BigDecimal[]> margins = new HashMap<>();
+		Map<String, Integer> tiers = new LinkedHashMap<>();
+		Set<String> instrumentSet = new LinkedHashSet<>();
+		rules.forEach((key, value) -> {
+			int separator = key.indexOf(TIER_SEPARATOR);
+			String instrumentName = separator < 0 ? key : key.substring(0, separator);
+			if (instrumentName.isEmpty() || separator == key.length() - 1) {
+				throw new IllegalArgumentException("Bad pricing rule key: " + key);
+			}
+			if (separator >= 0) {
+				tiers.putIfAbsent(key.substring(separator + 1), tiers.size() + 1);
+			}
+			if (!instrumentName.equals(ANY_INSTRUMENT)) {
+				instrumentSet.add(instrumentName);
+			}
+			margins.put(key, margins(key, value));
+		});
+
+		List<String> instruments = new ArrayList<>(instrumentSet);
+		int bits = 1;
+		while (1 << bits < instruments.size() * 2) {
+			bits++;
+		}
+		for (int maxBits = bits + 4; bits <= maxBits; bits++) {
+			int shift = 32 - bits;
+			for (int seed = 1; seed < MAX_SEEDS * 2; seed += 2) {
+				int mixedSeed = seed * 0x9E3779B9 | 1;
+				String[] slots = place(instruments, 1 << bits, shift, mixedSeed);
+				if (slots != null) {
+					return new PricingTable(slots, rates(slots, tiers, margins, defaultMargin), shift, mixedSeed,
+							Collections.unmodifiableMap(tiers), Collections.unmodifiableMap(new LinkedHashMap<>(rules)));
+				}
+			}
+		}
+		throw new IllegalArgumentException("No perfect hash for the priced instruments, are two hash codes equal?");
+	}
+
+	/**
+	 * Sets a feed price's bid and ask to what is stored for its instrument.
+	 */
+	public Price adjust(Price price) {
+
+		int at = index(slot(price.getInstrumentName()), 0);
+		price.setScaledBid(FixedPoint.applyRate(price.getScaledBid(), rates[at]));
+		price.setScaledAsk(FixedPoint.applyRate(price.getScaledAsk(), rates[at + 1]));
+		return price;
+	}
+
+	/**
+	 * The index of a tier for {@link #skew(Price, int)}, 0 for no tier.
+	 *
+	 * @throws IllegalArgumentException when no rule names the tier
+	 */
+	public int tier(String tier) {
+
+		if (tier == null || tier.isEmpty()) {
+			return 0;
+		}
+		Integer index = tiers.get(tier);
+		if (index == null) {
+			throw new IllegalArgumentException("Unknown tier: " + tier);
+		}
+		return index;
+	}
+
+	/**
+	 * A stored price as quoted to a tier: a skewed copy, or the price itself
+	 * for no tier or one without a price.
+	 */
+	public Price skew(Price price, int tier) {
+
+		if (tier == 0 || price.getInstrumentName() == null) {
+			return price;
+		}
+		int at = index(slot(price.getInstrumentName()), tier);
+		Price skewed = new Price();
+		skewed.setInstrumentName(price.getInstrumentName());
+		skewed.setInstrumentId(price.getInstrumentId());
+		skewed.setExternalId(price.getExternalId());
+		skewed.setScaledBid(FixedPoint.applyRate(price.getScaledBid(), rates[at]));
+		skewed.setScaledAsk(FixedPoint.applyRate(price.getScaledAsk(), rates[at + 1]));
+		skewed.setTimestamp(price.getTimestamp());
+		return skewed;
+	}
+
+	/**
+	 * The rules this table was compiled from.
+	 */
+	public Map<String, String> getRules() {
+		return rules;
+	}
+
+	private int slot(String instrumentName) {
+
+		if (instrumentNames.length == 0) {
+			return defaultSlot;
+		}
+		int slot = (instrumentName.hashCode() * seed) >>> shift;
+		return instrumentName.equals(instrumentNames[slot]) ? slot : defaultSlot;
+	}
+
+	private int index(int slot, int tier) {
+		return (slot * columns + tier) * 2;
+	}
+
+	private static String[] place(List<String> instruments, int size, int shift, int seed) {
+
+		String[] slots = new String[instruments.isEmpty() ? 0 : size];
+		for (String instrumentName : instruments) {
+			int slot = (instrumentName.hashCode() * seed) >>> shift;
+			if (slots[slot] != null) {
+				return null;
+			}
+			slots[slot] = instrumentName;
+		}
+		return slots;
+	}
+
+	private static long[] rates(String[] slots, Map<String, Integer> tiers, Map<String, BigDecimal[]> margins,
+			BigDecimal defaultMargin) {
+
+		int columns = tiers.size() + 1;
+		long[] rates = new long[(slots.length + 1) * columns * 2];
+		BigDecimal[] noMargin = { BigDecimal.ZERO, BigDecimal.ZERO };
+		for (int slot = 0; slot <= slots.length; slot++) {
+			String instrumentName = slot < slots.length ? slots[slot] : ANY_INSTRUMENT;
+			if (instrumentName == null) {
+				continue;
+			}
+			BigDecimal[] book = margins.getOrDefault(instrumentName,
+					margins.getOrDefault(ANY_INSTRUMENT, new BigDecimal[] { defaultMargin, defaultMargin }));
+			setRates(rates, (slot * columns) * 2, book);
+			for (Map.Entry<String, Integer> tier : tiers.entrySet()) {
+				String suffix = TIER_SEPARATOR + tier.getKey();
+				BigDecimal[] skew = margins.getOrDefault(instrumentName + suffix,
+						margins.getOrDefault(ANY_INSTRUMENT + suffix, noMargin));
+				setRates(rates, (slot * columns + tier.getValue()) * 2, skew);
+			}
+		}
+		return rates;
+	}
+
+	private static void setRates(long[] rates, int at, BigDecimal[] margins) {
+		rates[at] = FixedPoint.rate(BigDecimal.ONE.subtract(margins[0]));
+		rates[at + 1] = FixedPoint.rate(BigDecimal.ONE.add(margins[1]));
+	}
+
+	private static BigDecimal[] margins(String key, String value) {
+
+		try {
+			int separator = value.indexOf(':');
+			BigDecimal bid = new BigDecimal(separator < 0 ? value.trim() : value.substring(0, separator).trim());
+			BigDecimal ask = separator < 0 ? bid : new BigDecimal(value.substring(separator + 1).trim());
+			if (bid.compareTo(BigDecimal.ONE) >= 0 || ask.compareTo(BigDecimal.ONE.negate()) <= 0) {
+				throw new IllegalArgumentException("Pricing rule " + key + "=" + value + " leaves no price");
+			}
+			return new BigDecimal[] { bid, ask };
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad pricing rule " + key + "=" + value);
+		}
+	}
+
+}
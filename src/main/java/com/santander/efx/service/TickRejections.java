@@ -0,0 +1,96 @@
+package com.santander.efx.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.exception.RejectReason;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Accounts for rejected feed lines: an {@code efx.ticks.rejected{reason}}
+ * counter per {@link RejectReason}, at most one warning per
+ * {@code efx.rejects.log-interval-ms} with the number of rejections it
+ * stands for, and the last {@code efx.rejects.samples} bad lines kept for
+ * inspection (none when 0). Recording a rejection takes no lock and, with
+ * the line already in hand, allocates nothing.
+ */
+@Component
+public class TickRejections {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TickRejections.class);
+
+	private final Map<RejectReason, Counter> counters = new EnumMap<>(RejectReason.class);
+	private final PriceMetrics priceMetrics;
+	private final long logIntervalNanos;
+	private final AtomicLong nextLog = new AtomicLong(System.nanoTime());
+	private final AtomicLong unlogged = new AtomicLong();
+	private final AtomicReferenceArray<String> samples;
+	private final AtomicLong sampled = new AtomicLong();
+
+	public TickRejections(MeterRegistry registry, PriceMetrics priceMetrics,
+			@Value("${efx.rejects.samples:0}") int sampleSize,
+			@Value("${efx.rejects.log-interval-ms:1000}") long logIntervalMillis) {
+
+		for (RejectReason reason : RejectReason.values()) {
+			counters.put(reason, Counter.builder("efx.ticks.rejected").tag("reason", reason.name()).register(registry));
+		}
+		this.priceMetrics = priceMetrics;
+		this.logIntervalNanos = TimeUnit.MILLISECONDS.toNanos(logIntervalMillis);
+		this.samples = new AtomicReferenceArray<>(sampleSize);
+	}
+
+	public void reject(RejectReason reason, String line) {
+
+		priceMetrics.rejected();
+		if (reason != null) {
+			counters.get(reason).increment();
+		}
+		if (samples.length() > 0) {
+			samples.set((int) (sampled.getAndIncrement() % samples.length()), line);
+		}
+
+		long now = System.nanoTime();
+		long next = nextLog.get();
+		if (now - next >= 0 && nextLog.compareAndSet(next, now + logIntervalNanos)) {
+			LOGGER.warn("Rejected {} feed line ({} more since last warning): {}", reason, unlogged.getAndSet(0), line);
+		} else {
+			unlogged.incrementAndGet();
+		}
+	}
+
+	public Map<RejectReason, Long> getCounts() {
+
+		Map<RejectReason, Long> counts = new EnumMap<>(RejectReason.class);
+		counters.forEach((reason, counter) -> counts.put(reason, (long) counter.count()));
+		return counts;
+	}
+
+	/**
+	 * The sampled bad lines, oldest first.
+	 */
+	public List<String> getSamples() {
+
+		List<String> lines = new ArrayList<>(samples.length());
+		long end = sampled.get();
+		for (long i = Math.max(0, end - samples.length()); i < end; i++) {
+			String line = samples.get((int) (i % samples.length()));
+			if (line != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.santander.efx.utils;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable {@link CharSequence} view over ASCII bytes, so raw feed buffers can
+ * go through {@link CsvTickParser} without being decoded into a
+ * {@link String} first. Not thread-safe; keep one instance per thread.
+ */
+public final class AsciiSequence implements CharSequence {
+
+	private byte[] array;
+	private ByteBuffer buffer;
+	private int offset;
+	private int length;
+
+	public AsciiSequence wrap(byte[] array, int offset, int length) {
+		this.array = array;
+		this.buffer = null;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	public AsciiSequence wrap(ByteBuffer buffer, int offset, int length) {
+		this.array = null;
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		byte b = array != null ? array[offset + index] : buffer.get(offset + index);
+		return (char) (b & 0xff);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException(start + ", " + end);
+		}
+		if (array != null) {
+			return new String(array, offset + start, end - start, US_ASCII);
+		}
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + start + i);
+		}
+		return new String(bytes, US_ASCII);
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length).toString();
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.santander.efx.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent hashing of keys onto nodes. Every node is placed at
+ * {@code virtualNodes} points of a 32-bit ring and a key belongs to the node
+ * at the first point at or after its own hash, so when a node joins or
+ * leaves only the keys of the points it takes or gives up change owner,
+ * about {@code 1/n} of them, and the rest stay put.
+ * <p>
+ * Hashes depend on the characters of keys and node names alone, so rings of
+ * the same nodes built anywhere, in any order, agree on every owner.
+ */
+public final class ConsistentHashRing {
+
+	private final List<String> nodes;
+	private final int[] points;
+	private final String[] owners;
+
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+
+		if (nodes.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("A ring needs nodes and virtual nodes");
+		}
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+
+		long[] placed = new long[this.nodes.size() * virtualNodes];
+		for (int node = 0; node < this.nodes.size(); node++) {
+			String name = this.nodes.get(node);
+			for (int replica = 0; replica < virtualNodes; replica++) {
+				String point = name + '#' + replica;
+				placed[node * virtualNodes + replica] = (long) hash(point, 0, point.length()) << 32 | node;
+			}
+		}
+		Arrays.sort(placed);
+
+		this.points = new int[placed.length];
+		this.owners = new String[placed.length];
+		for (int i = 0; i < placed.length; i++) {
+			points[i] = (int) (placed[i] >> 32);
+			owners[i] = this.nodes.get((int) placed[i]);
+		}
+	}
+
+	/**
+	 * The nodes, sorted.
+	 */
+	public List<String> nodes() {
+		return nodes;
+	}
+
+	public boolean contains(String node) {
+		return Collections.binarySearch(nodes, node) >= 0;
+	}
+
+	public String owner(CharSequence key) {
+		return owner(key, 0, key.length());
+	}
+
+	/**
+	 * The owner of the key {@code key[start, end)}.
+	 */
+	public String owner(CharSequence key, int start, int end) {
+
+		int hash = hash(key, start, end);
+		int point = Arrays.binarySearch(points, hash);
+		if (point < 0) {
+			point = -point - 1;
+		} else {
+			while (point > 0 && points[point - 1] == hash) {
+				point--;
+			}
+		}
+		return owners[point == points.length ? 0 : point];
+	}
+
+	/**
+	 * FNV-1a over the characters, finished with the MurmurHash3 mix so that
+	 * similar keys land far apart.
+	 */
+	static int hash(CharSequence key, int start, int end) {
+
+		int hash = 0x811c9dc5;
+		for (int i = start; i < end; i++) {
+			hash = (hash ^ key.charAt(i)) * 0x01000193;
+		}
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+}
@@ -0,0 +1,198 @@
+package com.santander.efx.utils;
+
+import static com.santander.efx.model.PriceTick.SCALE;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.exception.RejectReason;
+import com.santander.efx.exception.ServiceException;
+import com.santander.efx.model.PriceTick;
+
+/**
+ * Single pass parser for {@code id, instrument, bid, ask, date} feed lines.
+ * Field count, blanks and numbers are checked while scanning, and the id and
+ * prices are parsed straight into primitives; bid and ask are rounded to
+ * {@link PriceTick#SCALE} places with {@code HALF_DOWN}, like
+ * {@code new BigDecimal(field).setScale(SCALE, ROUND_HALF_DOWN)}.
+ * <p>
+ * Rejects what the former {@code String.split} based parser rejected: a field
+ * count other than five (trailing empty fields excepted) or a blank field.
+ * Malformed numbers and dates are rejected too, as are prices in exponent
+ * notation or of {@code 10^8} and above.
+ * <p>
+ * The instrument is resolved through the {@link InstrumentRegistry}, which
+ * hands back its id and canonical name without allocating for an instrument
+ * seen before, and may reject it as unknown.
+ */
+@Component
+public class CsvTickParser {
+
+	private static final int FIELDS = 5;
+	private static final long MAX_MANTISSA = 1_000_000_000_000L;
+
+	@Autowired
+	private DateUtils dateUtils;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	public PriceTick parse(CharSequence line, PriceTick tick) {
+
+		int length = line.length();
+		int field = 0;
+		int start = 0;
+
+		for (int i = 0; i <= length; i++) {
+			if (i < length && line.charAt(i) != ',') {
+				continue;
+			}
+			if (field == FIELDS) {
+				if (!onlySeparators(line, start, length)) {
+					throw ServiceException.rejected(RejectReason.FIELD_COUNT);
+				}
+				break;
+			}
+			parseField(field++, line, start, i, tick);
+			start = i + 1;
+		}
+
+		if (field != FIELDS) {
+			throw ServiceException.rejected(RejectReason.FIELD_COUNT);
+		}
+		return tick;
+	}
+
+	private void parseField(int field, CharSequence line, int start, int end, PriceTick tick) {
+
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start == end) {
+			throw ServiceException.rejected(RejectReason.BLANK_FIELD);
+		}
+
+		switch (field) {
+		case 0:
+			tick.setExternalId(parseInt(line, start, end));
+			break;
+		case 1:
+			int instrumentId = instrumentRegistry.resolve(line, start, end);
+			tick.setInstrumentId(instrumentId);
+			tick.setInstrumentName(instrumentRegistry.name(instrumentId));
+			break;
+		case 2:
+			tick.setBid(parseScaled(line, start, end));
+			break;
+		case 3:
+			tick.setAsk(parseScaled(line, start, end));
+			break;
+		default:
+			tick.setTimestamp(dateUtils.parseEpochMillis(line, start, end));
+		}
+	}
+
+	private static int parseInt(CharSequence line, int start, int end) {
+
+		boolean negative = line.charAt(start) == '-';
+		if (negative || line.charAt(start) == '+') {
+			start++;
+		}
+		if (start == end) {
+			throw ServiceException.rejected(RejectReason.EXTERNAL_ID);
+		}
+
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int d = digit(line.charAt(i));
+			value = value * 10 + d;
+			if (d < 0 || value > (long) Integer.MAX_VALUE + 1) {
+				throw ServiceException.rejected(RejectReason.EXTERNAL_ID);
+			}
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE) {
+			throw ServiceException.rejected(RejectReason.EXTERNAL_ID);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses a plain decimal into a mantissa with {@link PriceTick#SCALE}
+	 * places, rounding {@code HALF_DOWN}: a dropped remainder of exactly one
+	 * half rounds towards zero, anything above it away from zero.
+	 */
+	private static long parseScaled(CharSequence line, int start, int end) {
+
+		boolean negative = line.charAt(start) == '-';
+		if (negative || line.charAt(start) == '+') {
+			start++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		int roundingDigit = 0;
+		boolean sticky = false;
+
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			if (c == '.') {
+				if (fractionDigits >= 0) {
+					throw ServiceException.rejected(RejectReason.PRICE);
+				}
+				fractionDigits = 0;
+				continue;
+			}
+			int d = digit(c);
+			if (d < 0) {
+				throw ServiceException.rejected(RejectReason.PRICE);
+			}
+			digits++;
+			if (fractionDigits < 0 || fractionDigits < SCALE) {
+				mantissa = mantissa * 10 + d;
+				if (mantissa >= MAX_MANTISSA) {
+					throw ServiceException.rejected(RejectReason.PRICE);
+				}
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			} else if (fractionDigits++ == SCALE) {
+				roundingDigit = d;
+			} else if (d != 0) {
+				sticky = true;
+			}
+		}
+
+		if (digits == 0) {
+			throw ServiceException.rejected(RejectReason.PRICE);
+		}
+		for (int i = Math.max(fractionDigits, 0); i < SCALE; i++) {
+			mantissa *= 10;
+		}
+		if (mantissa >= MAX_MANTISSA) {
+			throw ServiceException.rejected(RejectReason.PRICE);
+		}
+		if (roundingDigit > 5 || roundingDigit == 5 && sticky) {
+			mantissa++;
+		}
+		return negative ? -mantissa : mantissa;
+	}
+
+	private static boolean onlySeparators(CharSequence line, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (line.charAt(i) != ',') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int digit(char c) {
+		return c < '0' || c > '9' ? -1 : c - '0';
+	}
+
+}
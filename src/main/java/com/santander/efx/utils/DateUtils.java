@@ -1,23 +1,128 @@
 package com.santander.efx.utils;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
 import java.util.Date;
 
 import org.springframework.stereotype.Component;
 
+import com.santander.efx.exception.RejectReason;
+import com.santander.efx.exception.ServiceException;
+
+/**
+ * Parses feed dates in the fixed {@value #DATE_FORMAT} layout, in the
+ * {@value #TIME_ZONE} zone prices are rendered in. Digits are read straight
+ * from their positions, and the epoch millis of recent days' midnights are
+ * cached, one slot per day number over a {@value #DAYS} day span, so threads
+ * parsing different days, e.g. a backfill and the live feed, do not evict
+ * each other and most dates only cost the time-of-day arithmetic. Slots hold
+ * immutable days and are written without locks; a thread that does not see
+ * another's write yet just works the day out again.
+ */
 @Component
 public class DateUtils {
 
-	private static final String DATE_FORMAT = "dd-MM-yyyy HH:mm:ss:SSS";
+	public static final String DATE_FORMAT = "dd-MM-yyyy HH:mm:ss:SSS";
+	public static final String TIME_ZONE = "Europe/Lisbon";
+
+	private static final ZoneId ZONE = ZoneId.of(TIME_ZONE);
+	private static final int LENGTH = DATE_FORMAT.length();
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+	private static final int DAYS = 64;
+
+	private final Day[] days = new Day[DAYS];
 
 	public Date formatDate(String strDate) {
+		return new Date(parseEpochMillis(strDate, 0, strDate.length()));
+	}
+
+	public long parseEpochMillis(CharSequence text, int start, int end) {
+
+		if (end - start != LENGTH || text.charAt(start + 2) != '-' || text.charAt(start + 5) != '-'
+				|| text.charAt(start + 10) != ' ' || text.charAt(start + 13) != ':'
+				|| text.charAt(start + 16) != ':' || text.charAt(start + 19) != ':') {
+			throw ServiceException.rejected(RejectReason.DATE);
+		}
+
+		int dayOfMonth = digits(text, start, 2);
+		int month = digits(text, start + 3, 2);
+		int year = digits(text, start + 6, 4);
+		int hour = digits(text, start + 11, 2);
+		int minute = digits(text, start + 14, 2);
+		int second = digits(text, start + 17, 2);
+		int millis = digits(text, start + 20, 3);
+
+		if (hour > 23 || minute > 59 || second > 59) {
+			throw ServiceException.rejected(RejectReason.DATE);
+		}
+
+		Day current = day(year, month, dayOfMonth);
+		if (!current.fixedOffset) {
+			return LocalDateTime.of(year, month, dayOfMonth, hour, minute, second, millis * 1_000_000).atZone(ZONE)
+					.toInstant().toEpochMilli();
+		}
+		return current.midnight + ((hour * 60L + minute) * 60L + second) * 1_000L + millis;
+	}
+
+	private Day day(int year, int month, int dayOfMonth) {
+
+		int key = year * 10_000 + month * 100 + dayOfMonth;
+		int slot = (year * 372 + month * 31 + dayOfMonth) & (DAYS - 1);
+		Day current = this.days[slot];
+		if (current != null && current.key == key) {
+			return current;
+		}
+
+		LocalDate date;
 		try {
-			return new SimpleDateFormat(DATE_FORMAT).parse(strDate);
-		} catch (ParseException e) {
-			e.printStackTrace();
+			date = LocalDate.of(year, month, dayOfMonth);
+		} catch (DateTimeException e) {
+			throw ServiceException.rejected(RejectReason.DATE);
+		}
+
+		Instant midnight = date.atStartOfDay(ZONE).toInstant();
+		ZoneOffsetTransition transition = ZONE.getRules().nextTransition(midnight);
+		boolean fixedOffset = transition == null
+				|| transition.getInstant().toEpochMilli() >= midnight.toEpochMilli() + MILLIS_PER_DAY;
+
+		current = new Day(key, midnight.toEpochMilli(), fixedOffset);
+		this.days[slot] = current;
+		return current;
+	}
+
+	private static int digits(CharSequence text, int start, int count) {
+
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				throw ServiceException.rejected(RejectReason.DATE);
+			}
+			value = value * 10 + c - '0';
 		}
-		return null;
+		return value;
+	}
+
+	/**
+	 * Midnight of a day in {@link #ZONE}. Days with an offset transition are
+	 * flagged so their times go through {@code java.time} instead.
+	 */
+	private static final class Day {
+
+		private final int key;
+		private final long midnight;
+		private final boolean fixedOffset;
+
+		private Day(int key, long midnight, boolean fixedOffset) {
+			this.key = key;
+			this.midnight = midnight;
+			this.fixedOffset = fixedOffset;
+		}
+
 	}
 
 }
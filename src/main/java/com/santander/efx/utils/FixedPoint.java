@@ -0,0 +1,80 @@
+package com.santander.efx.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point arithmetic on {@code long} mantissas with {@link #SCALE}
+ * decimal places, rounding {@code HALF_DOWN} exactly like
+ * {@code BigDecimal.setScale(SCALE, ROUND_HALF_DOWN)}.
+ */
+public final class FixedPoint {
+
+	public static final int SCALE = 4;
+	public static final long ONE = 10_000L;
+	public static final int RATE_SCALE = 8;
+	public static final long RATE_ONE = 100_000_000L;
+
+	private FixedPoint() {
+	}
+
+	/**
+	 * Converts a factor such as {@code 1.1} into a multiplier for
+	 * {@link #multiply(long, long)}. The factor must be exact at {@link #SCALE}.
+	 */
+	public static long multiplier(BigDecimal factor) {
+		return factor.setScale(SCALE).unscaledValue().longValueExact();
+	}
+
+	public static long multiply(long mantissa, long multiplier) {
+
+		long product = Math.multiplyExact(mantissa, multiplier);
+		long quotient = product / ONE;
+		long remainder = Math.abs(product % ONE);
+
+		if (remainder * 2 > ONE) {
+			quotient += Long.signum(product);
+		}
+		return quotient;
+	}
+
+	/**
+	 * Converts a factor such as {@code 0.99985} into a rate for
+	 * {@link #applyRate(long, long)}: a multiplier with {@link #RATE_SCALE}
+	 * places, for factors {@link #multiplier(BigDecimal)} cannot hold
+	 * exactly. Finer factors are rounded {@code HALF_DOWN}.
+	 */
+	public static long rate(BigDecimal factor) {
+		return factor.setScale(RATE_SCALE, BigDecimal.ROUND_HALF_DOWN).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * Multiplies a mantissa by a {@link #rate(BigDecimal) rate}, rounding the
+	 * product back to {@link #SCALE} places {@code HALF_DOWN}.
+	 */
+	public static long applyRate(long mantissa, long rate) {
+
+		long product;
+		try {
+			product = Math.multiplyExact(mantissa, rate);
+		} catch (ArithmeticException e) {
+			return BigDecimal.valueOf(mantissa).multiply(BigDecimal.valueOf(rate))
+					.divide(BigDecimal.valueOf(RATE_ONE), 0, BigDecimal.ROUND_HALF_DOWN).longValueExact();
+		}
+		long quotient = product / RATE_ONE;
+		long remainder = Math.abs(product % RATE_ONE);
+
+		if (remainder * 2 > RATE_ONE) {
+			quotient += Long.signum(product);
+		}
+		return quotient;
+	}
+
+	public static long fromBigDecimal(BigDecimal value) {
+		return value.setScale(SCALE, BigDecimal.ROUND_HALF_DOWN).unscaledValue().longValueExact();
+	}
+
+	public static BigDecimal toBigDecimal(long mantissa) {
+		return BigDecimal.valueOf(mantissa, SCALE);
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.santander.efx.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Redis Cluster key slots: {@code CRC16(key) mod 16384}, where only the
+ * part between the first {@code {} and the next {@code }} is hashed when it
+ * is not empty, so keys sharing such a hash tag share a slot.
+ */
+public final class HashSlots {
+
+	public static final int SLOTS = 16384;
+
+	private static final int[] CRC16_TABLE = new int[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			int crc = i << 8;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+			}
+			CRC16_TABLE[i] = crc & 0xFFFF;
+		}
+	}
+
+	private HashSlots() {
+	}
+
+	public static int slot(String key) {
+		return slot(key.getBytes(UTF_8));
+	}
+
+	public static int slot(byte[] key) {
+
+		int open = indexOf(key, (byte) '{', 0);
+		if (open >= 0) {
+			int close = indexOf(key, (byte) '}', open + 1);
+			if (close > open + 1) {
+				return crc16(key, open + 1, close) & (SLOTS - 1);
+			}
+		}
+		return crc16(key, 0, key.length) & (SLOTS - 1);
+	}
+
+	/**
+	 * CRC16-CCITT (XModem) of {@code bytes[from, to)}, as Redis hashes keys.
+	 */
+	public static int crc16(byte[] bytes, int from, int to) {
+
+		int crc = 0;
+		for (int i = from; i < to; i++) {
+			crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ bytes[i]) & 0xFF]) & 0xFFFF;
+		}
+		return crc;
+	}
+
+	/**
+	 * {@code count} hash tags, the {@code i}th hashing into the {@code i}th of
+	 * {@code count} equal slot ranges, so keys tagged with them spread evenly
+	 * over servers owning contiguous slot ranges. Tags are the smallest
+	 * decimal numbers that qualify, so the same count always gives the same
+	 * tags.
+	 */
+	public static String[] spreadTags(int count) {
+
+		if (count < 1 || count > SLOTS) {
+			throw new IllegalArgumentException("Between 1 and " + SLOTS + " tags, not " + count);
+		}
+		String[] tags = new String[count];
+		int found = 0;
+		for (int n = 0; found < count; n++) {
+			String tag = Integer.toString(n);
+			int range = (int) ((long) slot(tag) * count / SLOTS);
+			if (tags[range] == null) {
+				tags[range] = tag;
+				found++;
+			}
+		}
+		return tags;
+	}
+
+	private static int indexOf(byte[] bytes, byte b, int from) {
+
+		for (int i = from; i < bytes.length; i++) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
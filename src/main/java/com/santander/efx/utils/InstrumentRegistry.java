@@ -0,0 +1,244 @@
+package com.santander.efx.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.santander.efx.exception.RejectReason;
+import com.santander.efx.exception.ServiceException;
+
+/**
+ * Dense int ids, from 0, and canonical interned names for instruments. The
+ * {@code efx.instruments.known} pairs are registered first, in order; other
+ * names are registered the first time they are resolved, up to
+ * {@code efx.instruments.capacity} instruments, unless
+ * {@code efx.instruments.reject-unknown} is set, in which case they are
+ * rejected as {@link RejectReason#UNKNOWN_INSTRUMENT}. With
+ * {@code efx.instruments.pairs-only} set, only new names shaped like a pair,
+ * two codes of {@value #MIN_CODE} to {@value #MAX_CODE} upper-case letters
+ * or digits around a {@code /}, are registered, so typos and garbage cannot
+ * use up ids; others are rejected as {@link RejectReason#INSTRUMENT}. By
+ * default any name is taken.
+ * <p>
+ * Names are found through an open-addressing table read without locks,
+ * straight from a {@link CharSequence} range, so resolving a known name
+ * allocates nothing and callers holding an id can index arrays instead of
+ * hashing names. In {@link #pathId(CharSequence) path lookups} a {@code -}
+ * stands for the {@code /} that cannot appear in a URL path segment.
+ * Registering takes a lock and is rare. Ids are only meaningful within this
+ * process, so they are never written to Redis.
+ */
+@Component
+public class InstrumentRegistry {
+
+	public static final int UNKNOWN = -1;
+
+	private static final int MIN_CODE = 2;
+	private static final int MAX_CODE = 12;
+
+	private final int capacity;
+	private final boolean rejectUnknown;
+
+	@Value("${efx.instruments.pairs-only:false}")
+	private boolean pairsOnly;
+
+	private final int mask;
+	private final AtomicIntegerArray slots;
+	private final AtomicReferenceArray<String> names;
+	private final AtomicReferenceArray<byte[]> encodedNames;
+	private volatile int size;
+
+	public InstrumentRegistry(@Value("${efx.instruments.known:}") String[] known,
+			@Value("${efx.instruments.capacity:4096}") int capacity,
+			@Value("${efx.instruments.reject-unknown:false}") boolean rejectUnknown) {
+
+		int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+		this.capacity = capacity;
+		this.rejectUnknown = rejectUnknown;
+		this.mask = tableSize - 1;
+		this.slots = new AtomicIntegerArray(tableSize);
+		this.names = new AtomicReferenceArray<>(capacity);
+		this.encodedNames = new AtomicReferenceArray<>(capacity);
+		for (String name : known) {
+			String trimmed = name.trim();
+			if (!trimmed.isEmpty() && id(trimmed) == UNKNOWN) {
+				if (size == capacity) {
+					throw new IllegalArgumentException("efx.instruments.capacity is below the known instruments");
+				}
+				register(trimmed, 0, trimmed.length());
+			}
+		}
+	}
+
+	/**
+	 * The id of a name, or {@link #UNKNOWN}.
+	 */
+	public int id(CharSequence name) {
+		return id(name, 0, name.length());
+	}
+
+	public int id(CharSequence name, int start, int end) {
+		return find(name, start, end, false);
+	}
+
+	/**
+	 * The id of a name taken from a URL path, where {@code -} stands for
+	 * {@code /}, or {@link #UNKNOWN}.
+	 */
+	public int pathId(CharSequence name) {
+		return find(name, 0, name.length(), true);
+	}
+
+	/**
+	 * The id of a name, registering it when new.
+	 *
+	 * @throws ServiceException {@link RejectReason#UNKNOWN_INSTRUMENT} when
+	 *                          the name is new and unknown names are rejected
+	 *                          or the registry is full,
+	 *                          {@link RejectReason#INSTRUMENT} when it is new,
+	 *                          not a pair and only pairs are taken
+	 */
+	public int resolve(CharSequence name) {
+		return resolve(name, 0, name.length());
+	}
+
+	public int resolve(CharSequence name, int start, int end) {
+
+		int id = find(name, start, end, false);
+		if (id != UNKNOWN) {
+			return id;
+		}
+		synchronized (this) {
+			id = find(name, start, end, false);
+			if (id != UNKNOWN) {
+				return id;
+			}
+			if (rejectUnknown || size == capacity) {
+				throw ServiceException.rejected(RejectReason.UNKNOWN_INSTRUMENT);
+			}
+			if (pairsOnly && !isPair(name, start, end)) {
+				throw ServiceException.rejected(RejectReason.INSTRUMENT);
+			}
+			return register(name, start, end);
+		}
+	}
+
+	/**
+	 * Whether a name is shaped like a currency pair, such as {@code EUR/USD}.
+	 */
+	public static boolean isPair(CharSequence name, int start, int end) {
+
+		int separator = -1;
+		for (int i = start; i < end; i++) {
+			char c = name.charAt(i);
+			if (c == '/' && separator < 0) {
+				separator = i;
+			} else if (!(c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+				return false;
+			}
+		}
+		return separator >= 0 && isCode(separator - start) && isCode(end - separator - 1);
+	}
+
+	private static boolean isCode(int length) {
+		return length >= MIN_CODE && length <= MAX_CODE;
+	}
+
+	/**
+	 * The canonical name of a URL path name: the registered instrument it
+	 * stands for, or the name with every {@code -} turned into {@code /}.
+	 */
+	public String canonicalPathName(String name) {
+
+		int id = pathId(name);
+		return id != UNKNOWN ? name(id) : name.replace('-', '/');
+	}
+
+	public String name(int id) {
+		return names.get(id);
+	}
+
+	/**
+	 * The UTF-8 bytes of an instrument's name, shared: do not modify.
+	 */
+	public byte[] encodedName(int id) {
+		return encodedNames.get(id);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public boolean isRejectingUnknown() {
+		return rejectUnknown;
+	}
+
+	private synchronized int register(CharSequence name, int start, int end) {
+
+		int id = size;
+		String canonical = name.subSequence(start, end).toString().intern();
+		names.set(id, canonical);
+		encodedNames.set(id, canonical.getBytes(UTF_8));
+		int slot = hash(name, start, end) & mask;
+		while (slots.get(slot) != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots.set(slot, id + 1);
+		size = id + 1;
+		return id;
+	}
+
+	private int find(CharSequence name, int start, int end, boolean path) {
+
+		for (int slot = hash(name, start, end) & mask;; slot = (slot + 1) & mask) {
+			int entry = slots.get(slot);
+			if (entry == 0) {
+				return UNKNOWN;
+			}
+			if (matches(names.get(entry - 1), name, start, end, path)) {
+				return entry - 1;
+			}
+		}
+	}
+
+	private static boolean matches(String registered, CharSequence name, int start, int end, boolean path) {
+
+		if (registered.length() != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			char c = name.charAt(i);
+			char r = registered.charAt(i - start);
+			if (c != r && !(path && normalize(c) == normalize(r))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes {@code -} as {@code /}, so exact and path lookups probe from the
+	 * same slot.
+	 */
+	private static int hash(CharSequence name, int start, int end) {
+
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			h = 31 * h + normalize(name.charAt(i));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static char normalize(char c) {
+		return c == '-' ? '/' : c;
+	}
+
+}
@@ -0,0 +1,16 @@
+-- Every stored price of some buckets in one round trip, skipping index
+-- entries whose key is gone. A cluster only takes one bucket per call, the
+-- keys of a call having to share a slot.
+-- KEYS[i]  index set of instrument names of a bucket, e.g. price-index:{0}
+-- ARGV[i]  GET pattern of its price keys, e.g. price:{0}:*
+
+local prices = {}
+for i, index in ipairs(KEYS) do
+	local values = redis.call('SORT', index, 'BY', 'nosort', 'GET', ARGV[i])
+	for _, value in ipairs(values) do
+		if value then
+			prices[#prices + 1] = value
+		end
+	end
+end
+return prices
@@ -0,0 +1,150 @@
+-- Newer-wins upsert of a binary price value (see PriceSerializer), recording
+-- the tick in the instrument's history whether or not it is the newest.
+-- KEYS[1] price key, KEYS[2] index set of the price's bucket, all keys
+-- sharing its hash tag
+-- KEYS[3] tick history sorted set, KEYS[4] open bars hash, KEYS[5..] closed
+-- bar sorted sets (optional)
+-- ARGV[1] epoch millis of the new price, ARGV[2] instrument name,
+-- ARGV[3] updates channel, ARGV[4] encoded price
+-- ARGV[5] bid mantissa, ARGV[6] ask mantissa, ARGV[7] history retention
+-- in millis, ARGV[8] most ticks kept, 0 for no limit, ARGV[9..] bar
+-- interval in millis of each bar key
+-- Returns 1 when the price was written and announced on the updates channel,
+-- 0 when the stored one is as new or newer.
+local function stored_timestamp(key)
+	local kind = redis.call('TYPE', key).ok
+	if kind == 'string' then
+		local bytes = redis.call('GETRANGE', key, 21, 28)
+		local timestamp = 0
+		for i = 1, 8 do
+			timestamp = timestamp * 256 + string.byte(bytes, i)
+		end
+		return timestamp
+	elseif kind == 'hash' then
+		-- legacy @RedisHash entry: an equally new price still replaces it,
+		-- and one without a readable date is no stored price at all
+		local date = tonumber(redis.call('HGET', key, 'date'))
+		if date then
+			return date - 1
+		end
+	end
+	return nil
+end
+
+-- A bar is 12 numbers: start, open-ts, close-ts, ticks, bid-o, bid-h,
+-- bid-l, bid-c, ask-o, ask-h, ask-l, ask-c. The latest bar of each interval
+-- is open: it is kept in the open bars hash, as fields "<interval>:1" to
+-- "<interval>:12", next to "newest", the newest tick's date, all read in one
+-- HMGET and written in one HMSET. When a tick starts a later bar, the open
+-- one is closed into the interval's sorted set as a member
+-- "start open-ts close-ts ..." scored by its start, and only late ticks of
+-- closed bars rewrite such members.
+local BAR_FIELDS = 12
+
+local function fold(bar, timestamp, bid, ask)
+	if timestamp < bar[2] then
+		bar[2], bar[5], bar[9] = timestamp, bid, ask
+	end
+	if timestamp >= bar[3] then
+		bar[3], bar[8], bar[12] = timestamp, bid, ask
+	end
+	bar[4] = bar[4] + 1
+	bar[6], bar[7] = math.max(bar[6], bid), math.min(bar[7], bid)
+	bar[10], bar[11] = math.max(bar[10], ask), math.min(bar[11], ask)
+end
+
+local function format(bar)
+	local fields = {}
+	for i = 1, BAR_FIELDS do
+		fields[i] = string.format('%.0f', bar[i])
+	end
+	return fields
+end
+
+local function update_closed_bar(key, start, timestamp, bid, ask)
+	local member = redis.call('ZRANGEBYSCORE', key, start, start)[1]
+	local bar
+	if member then
+		redis.call('ZREM', key, member)
+		bar = {}
+		for field in string.gmatch(member, '%S+') do
+			bar[#bar + 1] = tonumber(field)
+		end
+		fold(bar, timestamp, bid, ask)
+	else
+		bar = { start, timestamp, timestamp, 1, bid, bid, bid, bid, ask, ask, ask, ask }
+	end
+	redis.call('ZADD', key, start, table.concat(format(bar), ' '))
+end
+
+-- Ticks are members scored by their date, so a replayed tick is recorded
+-- once; ticks older than the retention behind the newest, and the oldest
+-- beyond the most kept, are dropped.
+local function record_tick(timestamp)
+	local retention, max_ticks = tonumber(ARGV[7]), tonumber(ARGV[8])
+	local fields = {}
+	for i = 5, #KEYS do
+		for n = 1, BAR_FIELDS do
+			fields[#fields + 1] = ARGV[i + 4] .. ':' .. n
+		end
+	end
+	fields[#fields + 1] = 'newest'
+	local values = redis.call('HMGET', KEYS[4], unpack(fields))
+	local newest = math.max(timestamp, tonumber(values[#values] or timestamp))
+	local cutoff = newest - retention
+	if timestamp < cutoff or redis.call('ZADD', KEYS[3], timestamp, ARGV[4]) == 0 then
+		return
+	end
+	redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', '(' .. string.format('%.0f', cutoff))
+	if max_ticks > 0 then
+		redis.call('ZREMRANGEBYRANK', KEYS[3], 0, -max_ticks - 1)
+	end
+
+	local bid, ask = tonumber(ARGV[5]), tonumber(ARGV[6])
+	local update = {}
+	for i = 5, #KEYS do
+		local interval = tonumber(ARGV[i + 4])
+		local start = timestamp - timestamp % interval
+		local offset = (i - 5) * BAR_FIELDS
+		local bar = {}
+		for n = 1, BAR_FIELDS do
+			bar[n] = tonumber(values[offset + n])
+		end
+		if bar[1] == start then
+			fold(bar, timestamp, bid, ask)
+		elseif bar[1] == nil or start > bar[1] then
+			if bar[1] then
+				redis.call('ZADD', KEYS[i], bar[1], table.concat(format(bar), ' '))
+				redis.call('ZREMRANGEBYSCORE', KEYS[i], '-inf', string.format('%.0f', cutoff - interval))
+			end
+			bar = { start, timestamp, timestamp, 1, bid, bid, bid, bid, ask, ask, ask, ask }
+		else
+			update_closed_bar(KEYS[i], start, timestamp, bid, ask)
+			bar = nil
+		end
+		if bar then
+			local formatted = format(bar)
+			for n = 1, BAR_FIELDS do
+				update[#update + 1] = fields[offset + n]
+				update[#update + 1] = formatted[n]
+			end
+		end
+	end
+	update[#update + 1] = 'newest'
+	update[#update + 1] = string.format('%.0f', newest)
+	redis.call('HMSET', KEYS[4], unpack(update))
+end
+
+local timestamp = tonumber(ARGV[1])
+if #KEYS > 2 then
+	record_tick(timestamp)
+end
+
+local stored = stored_timestamp(KEYS[1])
+if stored and stored >= timestamp then
+	return 0
+end
+redis.call('SET', KEYS[1], ARGV[4])
+redis.call('SADD', KEYS[2], ARGV[2])
+redis.call('PUBLISH', ARGV[3], ARGV[1] .. ' ' .. ARGV[2])
+return 1
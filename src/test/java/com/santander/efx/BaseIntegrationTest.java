@@ -7,10 +7,15 @@ import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 
+import com.santander.efx.service.PriceCache;
+
 public class BaseIntegrationTest extends BaseTest {
 
 	@Autowired 
 	private RedisTemplate< String, String > template;
+
+	@Autowired
+	private PriceCache priceCache;
 	
 	@Before
 	public void setUp() {
@@ -21,6 +26,7 @@ public class BaseIntegrationTest extends BaseTest {
 				return null;
 			}
 		});
+		priceCache.clear();
 	}
 	
 }
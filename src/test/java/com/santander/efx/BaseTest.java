@@ -33,6 +33,20 @@ public class BaseTest {
 				dateUtils.formatDate("01-06-2020 12:01:01:001"));
 	}
 
+	protected static Price getMockPrice(String instrumentName, Integer externalId, long timestamp) {
+		Price price = new Price(instrumentName, externalId, new BigDecimal("1.1000"), new BigDecimal("1.2000"), null);
+		price.setTimestamp(timestamp);
+		return price;
+	}
+
+	protected static Price getMockPrice(String instrumentName, Integer externalId, long scaledBid, long scaledAsk,
+			long timestamp) {
+		Price price = getMockPrice(instrumentName, externalId, timestamp);
+		price.setScaledBid(scaledBid);
+		price.setScaledAsk(scaledAsk);
+		return price;
+	}
+
 	protected String getMockCsvPrice() {
 		return "1, EUR/USD, 1.1900,1.2450,01-06-2020 12:01:01:001";
 	}
@@ -0,0 +1,147 @@
+package com.santander.efx.config;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.model.Price;
+import com.santander.efx.utils.HashSlots;
+
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.resource.ClientResources;
+
+public class RedisConfigurationTest {
+
+	private final RedisConfiguration configuration = new RedisConfiguration(6370, "localhost");
+	private ClientResources clientResources;
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(configuration, "ioThreads", 2);
+		ReflectionTestUtils.setField(configuration, "computationThreads", 3);
+		ReflectionTestUtils.setField(configuration, "timeout", 250L);
+		ReflectionTestUtils.setField(configuration, "connectTimeout", 100L);
+		ReflectionTestUtils.setField(configuration, "poolMaxActive", 16);
+		ReflectionTestUtils.setField(configuration, "poolMinIdle", 2);
+		ReflectionTestUtils.setField(configuration, "poolMaxWait", 50L);
+		ReflectionTestUtils.setField(configuration, "pipelineFlush", "on-close");
+		ReflectionTestUtils.setField(configuration, "replicas", new String[] { "replica-1:6380", " replica-2 : 6381" });
+		ReflectionTestUtils.setField(configuration, "readFrom", "replicaPreferred");
+		clientResources = configuration.lettuceClientResources();
+	}
+
+	@After
+	public void tearDown() {
+		clientResources.shutdown();
+	}
+
+	@Test
+	public void shouldShareOneConnectionByDefault() {
+
+		LettuceConnectionFactory factory = configuration.redisConnectionFactory(clientResources);
+
+		assertThat(factory.getShareNativeConnection()).isTrue();
+		assertThat(factory.getClientConfiguration()).isNotInstanceOf(LettucePoolingClientConfiguration.class);
+		assertThat(factory.getClientConfiguration().getCommandTimeout()).isEqualTo(Duration.ofMillis(250));
+		assertThat(factory.getClientConfiguration().getClientResources()).containsSame(clientResources);
+		assertThat(clientResources.ioThreadPoolSize()).isEqualTo(2);
+		assertThat(clientResources.computationThreadPoolSize()).isEqualTo(3);
+
+	}
+
+	@Test
+	public void shouldBorrowPooledConnectionsForBlockingCalls() {
+
+		ReflectionTestUtils.setField(configuration, "pooled", true);
+
+		LettuceConnectionFactory factory = configuration.redisConnectionFactory(clientResources);
+
+		assertThat(factory.getShareNativeConnection()).isFalse();
+		LettucePoolingClientConfiguration clientConfiguration = (LettucePoolingClientConfiguration) factory
+				.getClientConfiguration();
+		assertThat(clientConfiguration.getPoolConfig().getMaxTotal()).isEqualTo(16);
+		assertThat(clientConfiguration.getPoolConfig().getMinIdle()).isEqualTo(2);
+		assertThat(clientConfiguration.getPoolConfig().getMaxWaitMillis()).isEqualTo(50L);
+
+	}
+
+	@Test
+	public void shouldRouteReadsToReplicas() {
+
+		LettuceConnectionFactory factory = configuration.redisReplicaConnectionFactory(clientResources);
+
+		assertThat(factory.getClientConfiguration().getReadFrom()).containsSame(ReadFrom.REPLICA_PREFERRED);
+		RedisStaticMasterReplicaConfiguration topology = (RedisStaticMasterReplicaConfiguration) ReflectionTestUtils
+				.getField(factory, "configuration");
+		assertThat(topology.getNodes()).extracting(node -> node.getHostName() + ":" + node.getPort())
+				.containsExactly("localhost:6370", "replica-1:6380", "replica-2:6381");
+
+	}
+
+	@Test
+	public void shouldConnectToClusterWhenNodesAreListed() {
+
+		ReflectionTestUtils.setField(configuration, "clusterNodes", new String[] { "node-1:7000", " node-2 : 7001" });
+		ReflectionTestUtils.setField(configuration, "clusterMaxRedirects", 3);
+
+		LettuceConnectionFactory factory = configuration.redisConnectionFactory(clientResources);
+
+		assertThat(factory.isClusterAware()).isTrue();
+		RedisClusterConfiguration cluster = factory.getClusterConfiguration();
+		assertThat(cluster.getClusterNodes()).extracting(node -> node.getHost() + ":" + node.getPort())
+				.containsExactlyInAnyOrder("node-1:7000", "node-2:7001");
+		assertThat(cluster.getMaxRedirects()).isEqualTo(3);
+		ClusterClientOptions options = (ClusterClientOptions) factory.getClientConfiguration().getClientOptions().get();
+		assertThat(options.getTopologyRefreshOptions().isPeriodicRefreshEnabled()).isFalse();
+		assertThat(options.getTopologyRefreshOptions().getAdaptiveRefreshTriggers()).isNotEmpty();
+
+	}
+
+	@Test
+	public void shouldReadPipelineFlushPolicies() {
+
+		assertThat(RedisConfiguration.pipeliningFlushPolicy("each-command")).isNotNull();
+		assertThat(RedisConfiguration.pipeliningFlushPolicy("on-close")).isNotNull();
+		assertThat(RedisConfiguration.pipeliningFlushPolicy("64")).isNotNull();
+		assertThatThrownBy(() -> RedisConfiguration.pipeliningFlushPolicy("sometimes"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> RedisConfiguration.pipeliningFlushPolicy("0"))
+				.isInstanceOf(IllegalArgumentException.class);
+
+	}
+
+	@Test
+	public void shouldSplitSlotsEvenlyOverShards() {
+
+		List<RedisTemplate<String, Price>> templates = Arrays.asList(null, null, null);
+		RedisShards shards = new RedisShards(templates, templates, Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList());
+
+		assertThat(shards.size()).isEqualTo(3);
+		assertThat(shards.shardOf(0)).isEqualTo(0);
+		assertThat(shards.shardOf(5461)).isEqualTo(0);
+		assertThat(shards.shardOf(5462)).isEqualTo(1);
+		assertThat(shards.shardOf(10922)).isEqualTo(1);
+		assertThat(shards.shardOf(10923)).isEqualTo(2);
+		assertThat(shards.shardOf(HashSlots.SLOTS - 1)).isEqualTo(2);
+		assertThat(shards.shardOf("{foo}bar".getBytes(UTF_8))).isEqualTo(2);
+
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.santander.efx.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.test.context.TestConfiguration;
+
+import redis.embedded.RedisServer;
+
+/**
+ * An embedded Redis on the port of each of {@code efx.redis.shards}.
+ */
+@TestConfiguration
+@ConditionalOnExpression("!'${efx.redis.shards:}'.trim().isEmpty()")
+public class RedisShardsTestConfiguration {
+
+	private final List<RedisServer> redisServers = new ArrayList<>();
+
+	public RedisShardsTestConfiguration(@Value("${efx.redis.shards}") String[] shards) {
+		for (String shard : shards) {
+			redisServers.add(new RedisServer(Integer.parseInt(shard.substring(shard.lastIndexOf(':') + 1).trim())));
+		}
+	}
+
+	@PostConstruct
+	public void postConstruct() {
+		redisServers.forEach(RedisServer::start);
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		redisServers.forEach(RedisServer::stop);
+	}
+
+}
@@ -4,11 +4,13 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.test.context.TestConfiguration;
 
 import redis.embedded.RedisServer;
 
 @TestConfiguration
+@ConditionalOnProperty(name = "efx.test.embedded-redis", matchIfMissing = true)
 public class RedisTestConfiguration {
  
     private RedisServer redisServer;
@@ -0,0 +1,209 @@
+package com.santander.efx.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.santander.efx.Application;
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceRepository;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Several nodes, each an application context of its own, sharing one
+ * embedded Redis.
+ */
+public class IngestionPartitionsTest {
+
+	private static final int REDIS_PORT = 6375;
+	private static final int INSTRUMENTS = 30;
+
+	private static RedisServer redisServer;
+
+	private final Map<String, ConfigurableApplicationContext> nodes = new HashMap<>();
+
+	@BeforeClass
+	public static void startRedis() {
+		redisServer = new RedisServer(REDIS_PORT);
+		redisServer.start();
+	}
+
+	@AfterClass
+	public static void stopRedis() {
+		redisServer.stop();
+	}
+
+	@After
+	public void tearDown() {
+		nodes.values().forEach(ConfigurableApplicationContext::close);
+	}
+
+	@Test
+	public void shouldForwardTicksToTheirOwners() throws Exception {
+
+		List<String> nodeIds = Arrays.asList("forward-a", "forward-b", "forward-c");
+		nodeIds.forEach(nodeId -> start(nodeId, "forward"));
+		awaitNodes(nodeIds);
+
+		Map<String, Integer> shares = new HashMap<>();
+		int handedOver = 0;
+		for (int i = 0; i < INSTRUMENTS; i++) {
+			String nodeId = nodeIds.get(i % nodeIds.size());
+			String owner = partitions(nodeId).ownerOf(instrument("FWD", i));
+			shares.merge(owner, 1, Integer::sum);
+			if (!owner.equals(nodeId)) {
+				handedOver++;
+			}
+			consumer(nodeId).onMessage(csvPrice("FWD", i));
+		}
+
+		await(() -> book("FWD").size() == INSTRUMENTS);
+		long forwarded = 0;
+		for (String nodeId : nodeIds) {
+			assertThat(shares.get(nodeId)).as("share of %s", nodeId).isPositive();
+			await(() -> partitions(nodeId).getOwned() == shares.get(nodeId));
+			forwarded += partitions(nodeId).getForwarded();
+		}
+		assertThat(forwarded).isEqualTo(handedOver);
+
+	}
+
+	@Test
+	public void shouldDropTicksOwnedElsewhere() throws Exception {
+
+		List<String> nodeIds = Arrays.asList("drop-a", "drop-b");
+		nodeIds.forEach(nodeId -> start(nodeId, "drop"));
+		awaitNodes(nodeIds);
+
+		List<String> feed = new ArrayList<>();
+		for (int i = 0; i < INSTRUMENTS; i++) {
+			feed.add(csvPrice("DRP", i));
+		}
+		for (String nodeId : nodeIds) {
+			consumer(nodeId).onMessage(String.join("\n", feed));
+		}
+
+		assertThat(book("DRP")).hasSize(INSTRUMENTS);
+		for (String nodeId : nodeIds) {
+			IngestionPartitions partitions = partitions(nodeId);
+			assertThat(partitions.getOwned()).isPositive();
+			assertThat(partitions.getOwned() + partitions.getDropped()).isEqualTo(INSTRUMENTS);
+			assertThat(partitions.getForwarded()).isZero();
+		}
+		assertThat(partitions("drop-a").getOwned() + partitions("drop-b").getOwned()).isEqualTo(INSTRUMENTS);
+
+	}
+
+	@Test
+	public void shouldRebalanceWhenNodesJoinAndLeave() throws Exception {
+
+		start("join-a", "forward");
+		awaitNodes(Arrays.asList("join-a"));
+		assertThat(owners("join-a").values()).containsOnly("join-a");
+
+		start("join-b", "forward");
+		awaitNodes(Arrays.asList("join-a", "join-b"));
+		Map<String, String> before = owners("join-a");
+		assertThat(owners("join-b")).isEqualTo(before);
+
+		start("join-c", "forward");
+		awaitNodes(Arrays.asList("join-a", "join-b", "join-c"));
+		Map<String, String> after = owners("join-c");
+		assertThat(after.values()).contains("join-a", "join-b", "join-c");
+		after.forEach((instrument, owner) -> {
+			if (!owner.equals(before.get(instrument))) {
+				assertThat(owner).isEqualTo("join-c");
+			}
+		});
+
+		nodes.remove("join-b").close();
+		long left = System.currentTimeMillis();
+		awaitNodes(Arrays.asList("join-a", "join-c"));
+		assertThat(System.currentTimeMillis() - left).isLessThan(5000);
+		owners("join-a").forEach((instrument, owner) -> {
+			if (!"join-b".equals(after.get(instrument))) {
+				assertThat(owner).isEqualTo(after.get(instrument));
+			}
+		});
+
+	}
+
+	private void start(String nodeId, String unowned) {
+
+		nodes.put(nodeId, new SpringApplicationBuilder(Application.class).web(WebApplicationType.NONE).run(
+				"--spring.redis.port=" + REDIS_PORT,
+				"--spring.main.banner-mode=off",
+				"--efx.test.embedded-redis=false",
+				"--efx.ingestion.mode=partitioned",
+				"--efx.ingestion.node-id=" + nodeId,
+				"--efx.ingestion.unowned=" + unowned,
+				"--efx.ingestion.heartbeat-ms=100",
+				"--efx.ingestion.node-timeout-ms=10000"));
+	}
+
+	private void awaitNodes(List<String> expected) throws InterruptedException {
+		for (String nodeId : expected) {
+			await(() -> partitions(nodeId).nodes().equals(expected));
+		}
+	}
+
+	private Map<String, String> owners(String nodeId) {
+
+		Map<String, String> owners = new HashMap<>();
+		for (int i = 0; i < INSTRUMENTS; i++) {
+			owners.put(instrument("JON", i), partitions(nodeId).ownerOf(instrument("JON", i)));
+		}
+		return owners;
+	}
+
+	private List<Price> book(String prefix) {
+
+		List<Price> book = new ArrayList<>();
+		for (Price price : nodes.values().iterator().next().getBean(PriceRepository.class).findAll()) {
+			if (price.getInstrumentName().startsWith(prefix)) {
+				book.add(price);
+			}
+		}
+		return book;
+	}
+
+	private IngestionPartitions partitions(String nodeId) {
+		return nodes.get(nodeId).getBean(IngestionPartitions.class);
+	}
+
+	private PriceMessageConsumer consumer(String nodeId) {
+		return nodes.get(nodeId).getBean(PriceMessageConsumer.class);
+	}
+
+	private static String instrument(String prefix, int i) {
+		return prefix + i + "/USD";
+	}
+
+	private static String csvPrice(String prefix, int i) {
+		return i + ", " + instrument(prefix, i) + ", 1.1000,1.2000,01-06-2020 12:01:01:001";
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(condition.getAsBoolean()).isTrue();
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.santander.efx.consumer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.BaseIntegrationTest;
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceRepository;
+import com.santander.efx.service.PriceService;
+import com.santander.efx.utils.CsvTickParser;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RedisTestConfiguration.class)
+public class PriceBackfillTest extends BaseIntegrationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Autowired
+	private CsvTickParser csvTickParser;
+
+	@Autowired
+	private PriceService priceService;
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	private PriceBackfill backfill;
+
+	@Before
+	public void setUp() {
+		super.setUp();
+
+		backfill = new PriceBackfill(4, 1024, 5000);
+		ReflectionTestUtils.setField(backfill, "csvTickParser", csvTickParser);
+		ReflectionTestUtils.setField(backfill, "priceService", priceService);
+	}
+
+	@Test
+	public void shouldLoadNewestPricePerInstrumentAcrossChunks() throws Exception {
+
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			lines.add(line(i));
+		}
+		lines.add("not, a, tick");
+		lines.add("1, EUR/USD, 1.1000,1.2000,99-06-2020 12:01:01:001");
+		Collections.shuffle(lines, new Random(42));
+		File file = folder.newFile("prices.csv");
+		Files.write(file.toPath(), String.join("\r\n", lines).getBytes(US_ASCII));
+
+		PriceBackfill.Report report = backfill.load(file.toPath());
+
+		assertThat(report.getLines(), is(3002L));
+		assertThat(report.getRejected(), is(2L));
+		assertThat(report.getInstruments(), is(10));
+		assertThat(backfill.getBytesRead(), is(file.length()));
+		for (int i = 2990; i < 3000; i++) {
+			Price price = priceRepository.findById("CCY" + i % 10 + "/USD").get();
+			assertThat(price.getExternalId(), is(i));
+			assertThat(price.getBid(), is(new BigDecimal("0.9000")));
+		}
+
+	}
+
+	@Test
+	public void shouldLoadEveryFileOfDirectory() throws Exception {
+
+		File directory = folder.newFolder("day");
+		Files.write(new File(directory, "a.csv").toPath(), (line(1) + "\n" + line(12) + "\n").getBytes(US_ASCII));
+		Files.write(new File(directory, "b.csv").toPath(), (line(11) + "\n" + line(2) + "\n").getBytes(US_ASCII));
+
+		PriceBackfill.Report report = backfill.load(directory.toPath());
+
+		assertThat(report.getFiles(), is(2));
+		assertThat(report.getLines(), is(4L));
+		assertThat(priceRepository.findById("CCY1/USD").get().getExternalId(), is(11));
+		assertThat(priceRepository.findById("CCY2/USD").get().getExternalId(), is(12));
+
+	}
+
+	private static String line(int i) {
+		return String.format("%d, CCY%d/USD, 1.0000,1.1000,01-06-2020 %02d:%02d:%02d:000", i, i % 10, i / 3600,
+				i / 60 % 60, i % 60);
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.santander.efx.consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.BaseTest;
+import com.santander.efx.model.Price;
+import com.santander.efx.service.PriceMetrics;
+import com.santander.efx.service.PriceService;
+import com.santander.efx.utils.InstrumentRegistry;
+
+public class PriceIngestionLanesTest extends BaseTest {
+
+	private final PriceIngestionLanes lanes = new PriceIngestionLanes(3);
+	private final PriceService priceService = mock(PriceService.class);
+
+	private final Map<String, List<Long>> written = new ConcurrentHashMap<>();
+	private final Map<String, String> writers = new ConcurrentHashMap<>();
+	private final CountDownLatch firstBatch = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+
+		ReflectionTestUtils.setField(lanes, "priceService", priceService);
+		ReflectionTestUtils.setField(lanes, "priceMetrics", mock(PriceMetrics.class));
+		ReflectionTestUtils.setField(lanes, "instrumentRegistry", new InstrumentRegistry(new String[0], 64, false));
+		doAnswer(invocation -> {
+			firstBatch.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			for (Price price : (Collection<Price>) invocation.getArgument(0)) {
+				written.computeIfAbsent(price.getInstrumentName(), name -> new ArrayList<>()).add(price.getTimestamp());
+				assertThat(writers.putIfAbsent(price.getInstrumentName(), Thread.currentThread().getName()))
+						.isIn(null, Thread.currentThread().getName());
+			}
+			return null;
+		}).when(priceService).savePrices(anyCollection());
+		lanes.start();
+	}
+
+	@Test
+	public void shouldWriteOnlyNewestPendingPricePerInstrument() throws Exception {
+
+		lanes.submit(getMockPrice("EUR/USD", 1, 0));
+		assertThat(firstBatch.await(5, TimeUnit.SECONDS)).isTrue();
+
+		for (int i = 1; i <= 1000; i++) {
+			lanes.submit(getMockPrice("EUR/USD", 1, i));
+			lanes.submit(getMockPrice("GBP/USD", 1, i));
+		}
+		lanes.submit(getMockPrice("EUR/USD", 1, 500));
+		release.countDown();
+		lanes.stop();
+
+		assertThat(written.get("EUR/USD")).containsExactly(0L, 1000L);
+		assertThat(written.get("GBP/USD")).last().isEqualTo(1000L);
+
+	}
+
+	@Test
+	public void shouldKeepInstrumentOrderAcrossSubmittingThreads() throws Exception {
+
+		release.countDown();
+		List<Thread> feeders = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread feeder = new Thread(() -> {
+				for (int i = 0; i < 2000; i++) {
+					lanes.submit(getMockPrice("CCY" + i % 20 + "/USD", 1, i));
+				}
+			});
+			feeders.add(feeder);
+			feeder.start();
+		}
+		for (Thread feeder : feeders) {
+			feeder.join();
+		}
+		lanes.stop();
+
+		assertThat(written).hasSize(20);
+		written.forEach((instrumentName, timestamps) -> {
+			assertThat(timestamps).isSorted().doesNotHaveDuplicates();
+			assertThat(timestamps.get(timestamps.size() - 1)).isGreaterThanOrEqualTo(1980L);
+		});
+
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void shouldRetryFailedBatch() throws Exception {
+
+		PriceIngestionLanes retrying = new PriceIngestionLanes(1);
+		PriceService failingOnce = mock(PriceService.class);
+		ReflectionTestUtils.setField(retrying, "priceService", failingOnce);
+		ReflectionTestUtils.setField(retrying, "priceMetrics", mock(PriceMetrics.class));
+		ReflectionTestUtils.setField(retrying, "instrumentRegistry", new InstrumentRegistry(new String[0], 64, false));
+		List<Long> saved = new ArrayList<>();
+		CountDownLatch savedOnce = new CountDownLatch(1);
+		doThrow(new QueryTimeoutException("Redis down")).doAnswer(invocation -> {
+			((Collection<Price>) invocation.getArgument(0)).forEach(price -> saved.add(price.getTimestamp()));
+			savedOnce.countDown();
+			return null;
+		}).when(failingOnce).savePrices(anyCollection());
+		retrying.start();
+
+		retrying.submit(getMockPrice("EUR/USD", 1, 100));
+
+		assertThat(savedOnce.await(5, TimeUnit.SECONDS)).isTrue();
+		retrying.submit(getMockPrice("EUR/USD", 1, 100));
+		retrying.stop();
+		assertThat(saved).containsExactly(100L);
+
+	}
+
+}
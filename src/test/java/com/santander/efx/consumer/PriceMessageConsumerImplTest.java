@@ -39,4 +39,15 @@ public class PriceMessageConsumerImplTest extends BaseIntegrationTest{
  
 	}
 	
+    @Test
+    public void shouldSaveMultiLinePrices() {
+
+		consumer.onMessage(String.join("\n", getMockCsvPrices()));
+        List<Price> findAll = (List<Price>) priceRepository.findAll();
+
+		assertThat(findAll.size(), is(3));
+		assertThat(priceRepository.findById("GBP/USD").get().getExternalId(), is(5));
+
+	}
+
 }
@@ -0,0 +1,179 @@
+package com.santander.efx.consumer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.BaseIntegrationTest;
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.repository.PriceHistoryRepository;
+import com.santander.efx.repository.PriceRepository;
+import com.santander.efx.service.PriceService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RedisTestConfiguration.class)
+public class TickJournalTest extends BaseIntegrationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Autowired
+	private PriceService priceService;
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Test
+	public void shouldReadBackAcrossSegmentsAndRestarts() throws Exception {
+
+		TickJournal journal = journal(0);
+		for (int i = 0; i < 200; i++) {
+			journal.append(line(i));
+		}
+		journal.close();
+
+		TickJournal reopened = journal(0);
+		reopened.append(line(200));
+		List<String> messages = new ArrayList<>();
+		reopened.read(messages::add);
+
+		assertTrue(reopened.getSegmentIndex() > 1);
+		assertEquals(201, messages.size());
+		for (int i = 0; i < messages.size(); i++) {
+			assertThat(messages.get(i), is(line(i)));
+		}
+
+	}
+
+	@Test
+	public void shouldStopAtRecordCutShortByCrash() throws Exception {
+
+		TickJournal journal = journal(0);
+		journal.append(line(0));
+		journal.append(line(1));
+		int position = journal.getPosition();
+		journal.close();
+
+		File segment = folder.getRoot().listFiles()[0];
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(position + TickJournal.RECORD_HEADER);
+			file.write(line(99).getBytes(US_ASCII));
+		}
+
+		TickJournal reopened = journal(0);
+		assertThat(reopened.getPosition(), is(position));
+		reopened.append(line(2));
+		List<String> messages = new ArrayList<>();
+		reopened.read(messages::add);
+
+		assertEquals(3, messages.size());
+		assertThat(messages.get(2), is(line(2)));
+
+	}
+
+	@Test
+	public void shouldKeepOnlyRetainedSegments() throws Exception {
+
+		TickJournal journal = journal(2);
+		for (int i = 0; i < 500; i++) {
+			journal.append(line(i));
+		}
+
+		List<String> messages = new ArrayList<>();
+		journal.read(messages::add);
+		journal.close();
+
+		assertEquals(2, folder.getRoot().list().length);
+		assertThat(messages.get(messages.size() - 1), is(line(499)));
+		assertTrue(messages.size() < 500);
+
+	}
+
+	@Test
+	public void shouldReadBackMessagesBeyondAscii() throws Exception {
+
+		TickJournal journal = journal(0);
+		journal.append("1, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001 \u20ac");
+		journal.append(line(2));
+
+		List<String> messages = new ArrayList<>();
+		journal.read(messages::add);
+
+		assertThat(messages.get(0), is("1, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001 \u20ac"));
+		assertThat(messages.get(1), is(line(2)));
+
+	}
+
+	@Test
+	public void shouldCountDroppedMessagesUntilNextSegmentStarts() throws Exception {
+
+		TickJournal journal = journal(0);
+		File directory = folder.getRoot();
+		for (File segment : directory.listFiles()) {
+			assertTrue(segment.delete());
+		}
+		assertTrue(directory.delete());
+		for (int i = 0; i < 100; i++) {
+			journal.append(line(i));
+		}
+		long dropped = journal.getDropped();
+		assertTrue(dropped > 0);
+		assertThat(journal.getAppended() + dropped, is(100L));
+
+		assertTrue(directory.mkdirs());
+		ReflectionTestUtils.setField(journal, "retryAt", 0L);
+		journal.append(line(100));
+
+		assertThat(journal.getDropped(), is(dropped));
+		List<String> messages = new ArrayList<>();
+		journal.read(messages::add);
+		assertThat(messages.get(messages.size() - 1), is(line(100)));
+
+	}
+
+	@Test
+	public void shouldReplayIntoTheBook() throws Exception {
+
+		TickJournal journal = journal(0);
+		ReflectionTestUtils.setField(journal, "priceService", priceService);
+		getMockCsvPrices().forEach(journal::append);
+		journal.append("not a tick");
+		journal.append(String.join("\n", getMockCsvPrices()));
+
+		assertThat(journal.replay(), is(10L));
+		assertThat(priceRepository.findById("GBP/USD").get().getExternalId(), is(5));
+		assertEquals(3, priceRepository.findAll().size());
+		assertEquals(3, priceHistoryRepository.findTicks("GBP/USD", 0, Long.MAX_VALUE, 100).size());
+
+	}
+
+	private TickJournal journal(int retainedSegments) throws Exception {
+		TickJournal journal = new TickJournal(folder.getRoot().getPath(), 4096, retainedSegments, false);
+		journal.open();
+		return journal;
+	}
+
+	private static String line(int externalId) {
+		return externalId + ", EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:" + String.format("%03d", externalId % 1000);
+	}
+
+}
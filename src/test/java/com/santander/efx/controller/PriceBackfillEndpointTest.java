@@ -0,0 +1,65 @@
+package com.santander.efx.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.consumer.PriceBackfill;
+
+public class PriceBackfillEndpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final PriceBackfillEndpoint endpoint = new PriceBackfillEndpoint();
+	private final PriceBackfill priceBackfill = mock(PriceBackfill.class);
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = folder.newFolder("backfill");
+		ReflectionTestUtils.setField(endpoint, "priceBackfill", priceBackfill);
+		ReflectionTestUtils.setField(endpoint, "directory", directory.getPath());
+		when(priceBackfill.load(any(Path.class))).thenReturn(null);
+	}
+
+	@Test
+	public void shouldLoadOnlyFromBackfillDirectory() throws Exception {
+
+		File inside = new File(directory, "prices.csv");
+		assertThat(inside.createNewFile()).isTrue();
+		assertThat(folder.newFile("secret.csv").exists()).isTrue();
+
+		endpoint.load("prices.csv");
+		verify(priceBackfill).load(inside.toPath().toRealPath());
+
+		assertThatThrownBy(() -> endpoint.load("../secret.csv")).isInstanceOf(InvalidEndpointRequestException.class);
+		assertThatThrownBy(() -> endpoint.load(folder.getRoot().getPath()))
+				.isInstanceOf(InvalidEndpointRequestException.class);
+		assertThatThrownBy(() -> endpoint.load("missing.csv")).isInstanceOf(InvalidEndpointRequestException.class);
+
+	}
+
+	@Test
+	public void shouldRefuseWithoutBackfillDirectory() {
+
+		ReflectionTestUtils.setField(endpoint, "directory", "");
+
+		assertThatThrownBy(() -> endpoint.load("prices.csv")).isInstanceOf(InvalidEndpointRequestException.class);
+
+	}
+
+}
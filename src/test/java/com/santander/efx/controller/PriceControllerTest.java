@@ -1,10 +1,15 @@
 package com.santander.efx.controller;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import org.junit.Before;
@@ -14,7 +19,11 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
@@ -49,7 +58,7 @@ public class PriceControllerTest extends BaseIntegrationTest {
 		String csvPrice = getMockCsvPrice();
 		consumer.onMessage(csvPrice);
 		
-		mockMvc.perform(get("/price").contentType(APPLICATION_JSON))
+		performAsync(get("/price").contentType(APPLICATION_JSON))
 			.andDo(MockMvcResultHandlers.print())
 			.andExpect(status().isOk())
 			.andExpect(jsonPath("$[0].instrumentName", is("EUR/USD")))
@@ -60,12 +69,32 @@ public class PriceControllerTest extends BaseIntegrationTest {
 		
 	}
 
+	@Test
+	public void shouldStreamAllPricesAsNdjson() throws Exception {
+
+		getMockCsvPrices().forEach(csv -> consumer.onMessage(csv));
+
+		MvcResult result = mockMvc.perform(get("/price").accept(PriceController.APPLICATION_NDJSON_VALUE))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+
+		String body = mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(PriceController.APPLICATION_NDJSON_VALUE))
+			.andReturn().getResponse().getContentAsString();
+
+		String[] lines = body.split("\n");
+		assertThat(lines.length, is(3));
+		assertThat(body, containsString("{\"instrumentName\":\"GBP/USD\",\"externalId\":5,\"bid\":1.2150,\"ask\":1.4916,\"date\":\"01-06-2020 12:02:02:100\"}\n"));
+
+	}
+
 	@Test
 	public void shouldGetPriceByInstrumentName() throws Exception {
 		
 		getMockCsvPrices().forEach(csv -> consumer.onMessage(csv));
 		
-		mockMvc.perform(get("/price/GBP-USD").contentType(APPLICATION_JSON))
+		performAsync(get("/price/GBP-USD").contentType(APPLICATION_JSON))
 			.andDo(MockMvcResultHandlers.print())
 			.andExpect(status().isOk())
 			.andExpect(jsonPath("$.instrumentName", is("GBP/USD")))
@@ -81,7 +110,7 @@ public class PriceControllerTest extends BaseIntegrationTest {
 		
 		getMockCsvPrices().forEach(csv -> consumer.onMessage(csv));
 		
-		mockMvc.perform(get("/price/BRL-USD").contentType(APPLICATION_JSON))
+		performAsync(get("/price/BRL-USD").contentType(APPLICATION_JSON))
 		.andDo(MockMvcResultHandlers.print())
 		.andExpect(status().isOk())
 		.andExpect(jsonPath("$.instrumentName", nullValue()))
@@ -92,4 +121,97 @@ public class PriceControllerTest extends BaseIntegrationTest {
 		
 	}
 
+	@Test
+	public void shouldGetPricesWithAsyncReads() throws Exception {
+
+		getMockCsvPrices().forEach(csv -> consumer.onMessage(csv));
+		ReflectionTestUtils.setField(priceController, "asyncReads", true);
+		try {
+			performAsync(get("/price").contentType(APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()", is(3)));
+
+			performAsync(get("/price/GBP-USD").contentType(APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.externalId", is(5)));
+
+			performAsync(get("/price/BRL-USD").contentType(APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.instrumentName", nullValue()));
+		} finally {
+			ReflectionTestUtils.setField(priceController, "asyncReads", false);
+		}
+
+	}
+
+	private ResultActions performAsync(RequestBuilder request) throws Exception {
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		return mockMvc.perform(asyncDispatch(result));
+	}
+
+	@Test
+	public void shouldQueryTickHistoryAndBars() throws Exception {
+
+		getMockCsvPrices().forEach(csv -> consumer.onMessage(csv));
+
+		mockMvc.perform(get("/price/GBP-USD/ticks")
+				.param("from", "01-06-2020 12:00:00:000")
+				.param("to", "01-06-2020 12:03:00:000"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(3)))
+			.andExpect(jsonPath("$[0].externalId", is(3)))
+			.andExpect(jsonPath("$[1].externalId", is(4)))
+			.andExpect(jsonPath("$[2].externalId", is(5)));
+
+		mockMvc.perform(get("/price/GBP-USD/ticks").param("at", "01-06-2020 12:02:00:000"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.externalId", is(4)))
+			.andExpect(jsonPath("$.date", is("01-06-2020 12:01:02:100")));
+
+		mockMvc.perform(get("/price/GBP-USD/bars")
+				.param("interval", "5m")
+				.param("from", "01-06-2020 12:00:00:000")
+				.param("to", "01-06-2020 12:03:00:000"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(1)))
+			.andExpect(jsonPath("$[0].date", is("01-06-2020 12:00:00:000")))
+			.andExpect(jsonPath("$[0].ticks", is(3)))
+			.andExpect(jsonPath("$[0].openBid", is(1.1250)))
+			.andExpect(jsonPath("$[0].highBid", is(1.2150)))
+			.andExpect(jsonPath("$[0].closeBid", is(1.2150)))
+			.andExpect(jsonPath("$[0].lowAsk", is(1.3816)));
+
+		mockMvc.perform(get("/price/GBP-USD/bars")
+				.param("interval", "1500ms")
+				.param("from", "01-06-2020 12:00:00:000")
+				.param("to", "01-06-2020 12:03:00:000"))
+			.andExpect(status().isBadRequest());
+
+		mockMvc.perform(get("/price/GBP-USD/ticks").param("at", "yesterday"))
+			.andExpect(status().isBadRequest());
+
+	}
+
+	@Test
+	public void shouldQuotePricesToClientTiers() throws Exception {
+
+		getMockCsvPrices().forEach(csv -> consumer.onMessage(csv));
+
+		performAsync(get("/price/GBP-USD").param("tier", "gold"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.bid", is(1.2757)))
+			.andExpect(jsonPath("$.ask", is(1.4170)));
+
+		performAsync(get("/price").param("tier", "gold"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(3)));
+
+		mockMvc.perform(get("/price/GBP-USD").param("tier", "platinum"))
+			.andExpect(status().isBadRequest());
+
+		mockMvc.perform(get("/price/updates").param("instrument", "GBP-USD").param("tier", "platinum"))
+			.andExpect(status().isBadRequest());
+
+	}
+
 }
@@ -1,9 +1,13 @@
 package com.santander.efx.controller;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 
+import java.util.List;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
@@ -11,6 +15,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.santander.efx.BaseTest;
 import com.santander.efx.service.PriceService;
@@ -30,11 +35,24 @@ public class PriceControllerUnitTest extends BaseTest {
 
 		ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
 
-		priceController.getPriceByInstrumentName("GNP-USD");
+		priceController.getPriceByInstrumentName("GNP-USD", null);
 
 		verify(this.priceService).getPriceByInstrumentName(captor.capture());
 		assertThat(captor.getValue(), is("GNP/USD"));
 
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void shouldReplaceCharInSubscriptions() throws Exception {
+
+		ArgumentCaptor<List<String>> captor = ArgumentCaptor.forClass(List.class);
+
+		priceController.subscribe(asList("EUR-USD", "GBP-USD"), null);
+
+		verify(this.priceService).subscribe(captor.capture(), any(), any(SseEmitter.class));
+		assertThat(captor.getValue(), is(asList("EUR/USD", "GBP/USD")));
+
+	}
+
 }
@@ -0,0 +1,158 @@
+package com.santander.efx.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.santander.efx.BaseIntegrationTest;
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.model.Price;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RedisTestConfiguration.class)
+public class LegacyPriceMigrationTest extends BaseIntegrationTest {
+
+	@Autowired
+	private LegacyPriceMigration migration;
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Autowired
+	private PriceSerializer priceSerializer;
+
+	@Autowired
+	private StringRedisTemplate template;
+
+	@Test
+	public void shouldMigrateLegacyHashes() {
+
+		saveLegacyHash("EUR/USD", "1", "1.0710", "1.3695", "1591009261001");
+		saveLegacyHash("GBP/USD", "5", "1", "1.4916", "1591009322100");
+
+		assertThat(migration.migrate()).isEqualTo(2);
+
+		Price eurUsd = priceRepository.findById("EUR/USD").get();
+		assertThat(eurUsd.getExternalId()).isEqualTo(1);
+		assertThat(eurUsd.getBid()).isEqualTo(new BigDecimal("1.0710"));
+		assertThat(eurUsd.getAsk()).isEqualTo(new BigDecimal("1.3695"));
+		assertThat(eurUsd.getTimestamp()).isEqualTo(1591009261001L);
+		assertThat(priceRepository.findById("GBP/USD").get().getBid()).isEqualTo(new BigDecimal("1.0000"));
+		assertThat(priceRepository.findAll()).hasSize(2);
+		assertThat(template.hasKey(LegacyPriceMigration.LEGACY_INDEX)).isFalse();
+		assertThat(migration.migrate()).isEqualTo(0);
+
+	}
+
+	@Test
+	public void shouldSkipMalformedLegacyEntries() {
+
+		saveLegacyHash("EUR/USD", "1", "1.0710", "1.3695", "1591009261001");
+		saveLegacyHash("GBP/USD", "5", "1.2150", "1.4916", "not a date");
+		saveLegacyHash("USD/JPY", "6", "107.12", "107.15", null);
+
+		assertThat(migration.migrate()).isEqualTo(1);
+
+		assertThat(priceRepository.findById("EUR/USD")).isPresent();
+		assertThat(priceRepository.findById("GBP/USD")).isNotPresent();
+		assertThat(template.hasKey("price:GBP/USD")).isTrue();
+		assertThat(template.opsForSet().members(LegacyPriceMigration.LEGACY_INDEX))
+				.containsExactlyInAnyOrder("GBP/USD", "USD/JPY");
+
+	}
+
+	@Test
+	public void shouldKeepNewerPriceOverLegacyOne() {
+
+		Price newer = new Price("EUR/USD", 3, BigDecimal.ONE, BigDecimal.ONE, null);
+		newer.setTimestamp(1591009261002L);
+		assertThat(priceRepository.upsertIfNewer(newer)).isTrue();
+		saveLegacyHash("EUR/USD", "1", "1.0710", "1.3695", "1591009261001");
+
+		assertThat(migration.migrate()).isEqualTo(0);
+
+		assertThat(priceRepository.findById("EUR/USD").get().getExternalId()).isEqualTo(3);
+		assertThat(template.hasKey("price:EUR/USD")).isFalse();
+		assertThat(template.hasKey(LegacyPriceMigration.LEGACY_INDEX)).isFalse();
+
+	}
+
+	@Test
+	public void shouldMoveSerializedPricesAndHistory() {
+
+		Price older = new Price("EUR/USD", 1, new BigDecimal("1.0710"), new BigDecimal("1.3695"), null);
+		older.setTimestamp(1591009261001L);
+		Price latest = new Price("EUR/USD", 2, new BigDecimal("1.0720"), new BigDecimal("1.3705"), null);
+		latest.setTimestamp(1591009262001L);
+		template.execute((RedisCallback<Void>) connection -> {
+			connection.set("price:EUR/USD".getBytes(UTF_8), priceSerializer.serialize(latest));
+			connection.sAdd(LegacyPriceMigration.LEGACY_INDEX.getBytes(UTF_8), "EUR/USD".getBytes(UTF_8));
+			connection.zAdd("price-history:EUR/USD".getBytes(UTF_8), older.getTimestamp(),
+					priceSerializer.serialize(older));
+			connection.zAdd("price-history:EUR/USD".getBytes(UTF_8), latest.getTimestamp(),
+					priceSerializer.serialize(latest));
+			return null;
+		});
+
+		assertThat(migration.migrate()).isEqualTo(1);
+
+		assertThat(priceRepository.findById("EUR/USD").get().getExternalId()).isEqualTo(2);
+		assertThat(priceHistoryRepository.findTicks("EUR/USD", 0, Long.MAX_VALUE, 10))
+				.extracting(Price::getExternalId).containsExactly(1, 2);
+		assertThat(template.hasKey("price:EUR/USD")).isFalse();
+		assertThat(template.hasKey("price-history:EUR/USD")).isFalse();
+
+	}
+
+	@Test
+	public void shouldKeepLegacyHistoryNotCarriedOver() {
+
+		Price stored = new Price("EUR/USD", 1, new BigDecimal("1.0710"), new BigDecimal("1.3695"), null);
+		stored.setTimestamp(1591009261001L);
+		template.execute((RedisCallback<Void>) connection -> {
+			connection.zAdd(PriceHistoryRepository.ticksKey("EUR/USD"), stored.getTimestamp(),
+					priceSerializer.serialize(stored));
+			connection.zAdd("price-history:EUR/USD".getBytes(UTF_8), stored.getTimestamp(),
+					priceSerializer.serialize(stored));
+			return null;
+		});
+		saveLegacyHash("EUR/USD", "1", "1.0710", "1.3695", "1591009261001");
+
+		assertThat(migration.migrate()).isEqualTo(1);
+
+		assertThat(template.hasKey("price:EUR/USD")).isFalse();
+		assertThat(template.hasKey("price-history:EUR/USD")).isTrue();
+
+	}
+
+	private void saveLegacyHash(String instrumentName, String externalId, String bid, String ask, String date) {
+
+		Map<String, String> hash = new HashMap<>();
+		hash.put("_class", Price.class.getName());
+		hash.put("instrumentName", instrumentName);
+		hash.put("externalId", externalId);
+		hash.put("bid", bid);
+		hash.put("ask", ask);
+		if (date != null) {
+			hash.put("date", date);
+		}
+		template.opsForHash().putAll("price:" + instrumentName, hash);
+		template.opsForSet().add("price", instrumentName);
+
+	}
+
+}
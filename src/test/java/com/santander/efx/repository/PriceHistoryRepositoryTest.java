@@ -0,0 +1,171 @@
+package com.santander.efx.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.BaseIntegrationTest;
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.model.Price;
+import com.santander.efx.model.PriceBar;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RedisTestConfiguration.class)
+public class PriceHistoryRepositoryTest extends BaseIntegrationTest {
+
+	private static final long SECOND = 1_000L;
+	private static final long MINUTE = 60_000L;
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Test
+	public void shouldRecordEveryTickIncludingStaleOnes() {
+
+		long base = minute();
+		priceRepository.upsertIfNewer(tick(base + 500, "1.1000"));
+		priceRepository.upsertIfNewer(tick(base + 1_500, "1.1200"));
+		assertThat(priceRepository.upsertIfNewer(tick(base + 1_000, "1.1100")), is(false));
+
+		List<Price> ticks = priceHistoryRepository.findTicks("EUR/USD", base, base + MINUTE, 100);
+
+		assertEquals(3, ticks.size());
+		assertThat(ticks.get(1).getBid(), is(new BigDecimal("1.1100")));
+		assertThat(priceHistoryRepository.findTickAsOf("EUR/USD", base + 1_200).get().getBid(),
+				is(new BigDecimal("1.1100")));
+		assertThat(priceHistoryRepository.findTickAsOf("EUR/USD", base).isPresent(), is(false));
+		assertThat(priceRepository.findById("EUR/USD").get().getBid(), is(new BigDecimal("1.1200")));
+
+	}
+
+	@Test
+	public void shouldMaintainBarsWhateverTheArrivalOrder() {
+
+		long base = minute();
+		List<Price> ticks = new ArrayList<>();
+		ticks.add(tick(base + 300, "1.1003"));
+		ticks.add(tick(base + 100, "1.1001"));
+		ticks.add(tick(base + 900, "1.1009"));
+		ticks.add(tick(base + 500, "1.1020"));
+		ticks.add(tick(base + 700, "1.0990"));
+		ticks.add(tick(base + 1_100, "1.1011"));
+		ticks.forEach(priceRepository::upsertIfNewer);
+		priceRepository.upsertAllIfNewer(ticks);
+
+		List<PriceBar> seconds = priceHistoryRepository.findBars("EUR/USD", SECOND, base, base + MINUTE);
+
+		assertEquals(2, seconds.size());
+		PriceBar first = seconds.get(0);
+		assertThat(first.getStart(), is(base));
+		assertThat(first.getTicks(), is(5L));
+		assertThat(first.getOpenBid(), is(new BigDecimal("1.1001")));
+		assertThat(first.getHighBid(), is(new BigDecimal("1.1020")));
+		assertThat(first.getLowBid(), is(new BigDecimal("1.0990")));
+		assertThat(first.getCloseBid(), is(new BigDecimal("1.1009")));
+		assertThat(first.getCloseAsk(), is(new BigDecimal("1.2009")));
+
+		List<PriceBar> twoSeconds = priceHistoryRepository.findBars("EUR/USD", 2 * SECOND, base, base + MINUTE);
+		List<PriceBar> minutes = priceHistoryRepository.findBars("EUR/USD", MINUTE, base, base);
+
+		assertEquals(1, twoSeconds.size());
+		assertThat(twoSeconds.get(0).getTicks(), is(6L));
+		assertThat(twoSeconds.get(0).getCloseBid(), is(new BigDecimal("1.1011")));
+		assertThat(twoSeconds.get(0).getInterval(), is(2 * SECOND));
+		assertEquals(1, minutes.size());
+		assertThat(minutes.get(0).getTicks(), is(6L));
+		assertThat(minutes.get(0).getOpenBid(), is(new BigDecimal("1.1001")));
+		assertThat(minutes.get(0).getLowBid(), is(new BigDecimal("1.0990")));
+
+	}
+
+	@Test
+	public void shouldDropTicksAndBarsBeyondRetention() {
+
+		long base = minute();
+		priceRepository.upsertIfNewer(tick(base, "1.1000"));
+		priceRepository.upsertIfNewer(tick(base + 86_400_000L + MINUTE, "1.1100"));
+		priceRepository.upsertIfNewer(tick(base + 1, "1.1200"));
+
+		assertEquals(1, priceHistoryRepository.findTicks("EUR/USD", 0, Long.MAX_VALUE, 100).size());
+		assertEquals(1, priceHistoryRepository.findBars("EUR/USD", MINUTE, 0, Long.MAX_VALUE).size());
+
+	}
+
+	@Test
+	public void shouldKeepOnlyTheNewestTicksBeyondTheCount() {
+
+		long base = minute();
+		List<Price> ticks = new ArrayList<>();
+		for (int i = 0; i < 1_005; i++) {
+			ticks.add(tick(base + i, "1.1000"));
+		}
+		priceRepository.upsertAllIfNewer(ticks);
+
+		List<Price> kept = priceHistoryRepository.findTicks("EUR/USD", 0, Long.MAX_VALUE, 2_000);
+		assertEquals(1_000, kept.size());
+		assertThat(kept.get(0).getTimestamp(), is(base + 5));
+		assertThat(priceHistoryRepository.findBars("EUR/USD", SECOND, base, base + MINUTE).get(0).getTicks(),
+				is(1_000L));
+
+	}
+
+	@Test
+	public void shouldKeepEveryTickWithoutTickLimit() {
+
+		byte[][] scriptArgs = (byte[][]) ReflectionTestUtils.getField(priceHistoryRepository, "scriptArgs");
+		byte[] maxTicks = scriptArgs[1];
+		scriptArgs[1] = "0".getBytes(UTF_8);
+		try {
+			long base = minute();
+			List<Price> ticks = new ArrayList<>();
+			for (int i = 0; i < 1_005; i++) {
+				ticks.add(tick(base + i, "1.1000"));
+			}
+			priceRepository.upsertAllIfNewer(ticks);
+		} finally {
+			scriptArgs[1] = maxTicks;
+		}
+
+		assertEquals(1_005, priceHistoryRepository.findTicks("EUR/USD", 0, Long.MAX_VALUE, 2_000).size());
+
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectNegativeTickLimit() {
+		new PriceHistoryRepository(true, MINUTE, -1, new String[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectIntervalsNotBuiltFromKeptOnes() {
+		priceHistoryRepository.findBars("EUR/USD", 1_500, 0, MINUTE);
+	}
+
+	private long minute() {
+		long timestamp = getMockPrice().getTimestamp();
+		return timestamp - timestamp % MINUTE;
+	}
+
+	private Price tick(long timestamp, String bid) {
+		Price price = getMockPrice();
+		price.setTimestamp(timestamp);
+		price.setBid(new BigDecimal(bid));
+		price.setAsk(new BigDecimal(bid).add(new BigDecimal("0.1000")));
+		return price;
+	}
+
+}
@@ -6,12 +6,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.santander.efx.BaseIntegrationTest;
@@ -28,6 +36,9 @@ public class PriceRepositoryTest extends BaseIntegrationTest {
 
 	@Autowired
 	private DateUtils dateUtils;
+
+	@Autowired
+	private StringRedisTemplate template;
 	
 	@Test
 	public void shouldSavePrice() {
@@ -62,4 +73,135 @@ public class PriceRepositoryTest extends BaseIntegrationTest {
 
 	}
 
+	@Test
+	public void shouldReadWholeBookSkippingStaleIndexEntries() {
+
+		List<Price> priceList = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			Price price = getMockPrice();
+			price.setInstrumentName("CCY" + i + "/USD");
+			price.setExternalId(i);
+			priceList.add(price);
+		}
+		priceRepository.saveAll(priceList);
+		template.opsForSet().add(PriceRepository.indexKey("XXX/USD"), "XXX/USD");
+
+		List<Price> result = priceRepository.findAll();
+
+		assertEquals(500, result.size());
+		assertThat(result.stream().mapToInt(Price::getExternalId).sum(), is(499 * 500 / 2));
+
+	}
+
+	@Test
+	public void shouldVisitEveryPriceAcrossScanPages() {
+
+		List<Price> priceList = new ArrayList<>();
+		for (int i = 0; i < 600; i++) {
+			Price price = getMockPrice();
+			price.setInstrumentName("CCY" + i + "/USD");
+			priceList.add(price);
+		}
+		priceRepository.saveAll(priceList);
+		template.opsForSet().add(PriceRepository.indexKey("XXX/USD"), "XXX/USD");
+
+		Set<String> visited = new HashSet<>();
+		priceRepository.forEach(price -> visited.add(price.getInstrumentName()));
+
+		assertEquals(600, visited.size());
+
+	}
+
+	@Test
+	public void shouldUpsertOnlyNewerPrice() {
+
+		Price price = getMockPrice();
+		assertThat(priceRepository.upsertIfNewer(price), is(true));
+
+		Price older = getMockPrice();
+		older.setExternalId(2);
+		older.setTimestamp(price.getTimestamp() - 1);
+		assertThat(priceRepository.upsertIfNewer(older), is(false));
+		assertThat(priceRepository.upsertIfNewer(price), is(false));
+
+		Price newer = getMockPrice();
+		newer.setExternalId(3);
+		newer.setTimestamp(price.getTimestamp() + 1);
+		assertThat(priceRepository.upsertIfNewer(newer), is(true));
+
+		Price result = priceRepository.findById("EUR/USD").get();
+		assertThat(result.getExternalId(), is(3));
+		assertThat(result.getBid(), is(new BigDecimal("1.1000")));
+		assertThat(result.getTimestamp(), is(newer.getTimestamp()));
+		assertEquals(1, priceRepository.findAll().size());
+
+	}
+
+	@Test
+	public void shouldUpsertAllInOnePipeline() {
+
+		priceRepository.save(getMockPriceList().get(3));
+
+		List<Price> written = priceRepository.upsertAllIfNewer(getMockPriceList().subList(0, 3));
+
+		assertThat(written.size(), is(2));
+		assertThat(priceRepository.findById("GBP/USD").get().getExternalId(), is(4));
+		assertEquals(3, priceRepository.findAll().size());
+
+	}
+
+	@Test
+	public void shouldReloadFlushedScript() {
+
+		template.execute((RedisCallback<Void>) connection -> {
+			connection.scriptFlush();
+			return null;
+		});
+		assertThat(priceRepository.upsertIfNewer(getMockPrice()), is(true));
+
+		template.execute((RedisCallback<Void>) connection -> {
+			connection.scriptFlush();
+			return null;
+		});
+		assertThat(priceRepository.upsertAllIfNewer(getMockPriceList()).size(), is(3));
+
+	}
+
+	@Test
+	public void shouldReplaceLegacyHashWithoutDate() {
+
+		template.opsForHash().put(PriceRepository.key("EUR/USD"), "instrumentName", "EUR/USD");
+		template.opsForHash().put(PriceRepository.key("GBP/USD"), "date", "not a date");
+
+		assertThat(priceRepository.upsertAllIfNewer(getMockPriceList().subList(0, 3)).size(), is(3));
+		assertThat(priceRepository.findById("EUR/USD").get().getExternalId(), is(1));
+
+	}
+
+	@Test
+	public void shouldKeepNewestPriceUnderConcurrentUpserts() throws Exception {
+
+		long base = getMockPrice().getTimestamp();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			int thread = t;
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 200; i++) {
+					Price price = getMockPrice();
+					price.setExternalId(thread * 1000 + i);
+					price.setTimestamp(base + (i * 8 + thread) % 1000);
+					priceRepository.upsertIfNewer(price);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		assertThat(priceRepository.findById("EUR/USD").get().getTimestamp(), is(base + 999));
+
+	}
+
 }
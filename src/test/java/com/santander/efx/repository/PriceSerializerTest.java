@@ -0,0 +1,44 @@
+package com.santander.efx.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.santander.efx.model.Price;
+
+public class PriceSerializerTest {
+
+	private final PriceSerializer serializer = new PriceSerializer();
+
+	@Test
+	public void shouldRoundTripPrice() {
+
+		Price price = new Price("EUR/USD", 1, new BigDecimal("1.0710"), new BigDecimal("1.3695"), null);
+		price.setTimestamp(1591009261001L);
+
+		byte[] bytes = serializer.serialize(price);
+		Price result = serializer.deserialize(bytes);
+
+		assertThat(bytes).hasSize(37);
+		assertThat(ByteBuffer.wrap(bytes).getLong(PriceSerializer.TIMESTAMP_OFFSET)).isEqualTo(1591009261001L);
+		assertThat(result.getInstrumentName()).isEqualTo("EUR/USD");
+		assertThat(result.getExternalId()).isEqualTo(1);
+		assertThat(result.getBid()).isEqualTo(new BigDecimal("1.0710"));
+		assertThat(result.getAsk()).isEqualTo(new BigDecimal("1.3695"));
+		assertThat(result.getTimestamp()).isEqualTo(1591009261001L);
+
+	}
+
+	@Test
+	public void shouldRejectUnknownLayout() {
+		assertThat(serializer.deserialize(null)).isNull();
+		assertThatThrownBy(() -> serializer.deserialize(new byte[] { 1, 2, 3 }))
+				.isInstanceOf(SerializationException.class);
+	}
+
+}
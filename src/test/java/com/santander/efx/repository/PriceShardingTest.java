@@ -0,0 +1,135 @@
+package com.santander.efx.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.santander.efx.BaseIntegrationTest;
+import com.santander.efx.config.RedisShards;
+import com.santander.efx.config.RedisShardsTestConfiguration;
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.model.Price;
+import com.santander.efx.service.PriceCache;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = { RedisTestConfiguration.class, RedisShardsTestConfiguration.class },
+		properties = { "spring.redis.port=6374", "efx.redis.shards=localhost:6372,localhost:6373" })
+public class PriceShardingTest extends BaseIntegrationTest {
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Autowired
+	private PriceCache priceCache;
+
+	@Autowired
+	private RedisShards redisShards;
+
+	@Before
+	public void setUp() {
+		super.setUp();
+
+		for (int shard = 1; shard < redisShards.size(); shard++) {
+			redisShards.template(shard).execute((RedisCallback<Void>) connection -> {
+				connection.flushDb();
+				return null;
+			});
+		}
+	}
+
+	@Test
+	public void shouldSpreadBookOverShards() throws Exception {
+
+		List<Price> prices = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			prices.add(getMockPrice("CCY" + i + "/USD", i, 1591009261001L));
+		}
+
+		assertThat(priceRepository.upsertAllIfNewer(prices)).hasSize(300);
+		assertThat(priceRepository.upsertAllIfNewer(prices)).isEmpty();
+
+		assertThat(redisShards.size()).isEqualTo(3);
+		for (int shard = 0; shard < redisShards.size(); shard++) {
+			assertThat(keys(shard)).as("keys of shard %s", shard).isNotEmpty()
+					.doesNotContain(LegacyPriceMigration.LEGACY_INDEX);
+		}
+		assertThat(priceRepository.findAll()).extracting(Price::getExternalId).hasSize(300).doesNotHaveDuplicates();
+		assertThat(priceRepository.findAllAsync().block(Duration.ofSeconds(5))).hasSize(300);
+		Set<String> visited = new HashSet<>();
+		priceRepository.forEach(price -> visited.add(price.getInstrumentName()));
+		assertThat(visited).hasSize(300);
+		assertThat(priceRepository.findById("CCY42/USD").get().getExternalId()).isEqualTo(42);
+		assertThat(priceRepository.findByIdAsync("CCY43/USD").block(Duration.ofSeconds(5)).getExternalId())
+				.isEqualTo(43);
+
+	}
+
+	@Test
+	public void shouldKeepInstrumentKeysOnItsShard() {
+
+		String instrumentName = instrumentOnShard(2);
+		assertThat(priceRepository.upsertIfNewer(getMockPrice(instrumentName, 1, 1591009261001L))).isTrue();
+		assertThat(priceRepository.upsertIfNewer(getMockPrice(instrumentName, 2, 1591009262001L))).isTrue();
+
+		String tag = PriceRepository.hashTag(instrumentName);
+		assertThat(keys(2)).allMatch(key -> key.contains(tag)).hasSize(5);
+		assertThat(keys(0)).isEmpty();
+		assertThat(keys(1)).isEmpty();
+		assertThat(priceHistoryRepository.findTicks(instrumentName, 0, Long.MAX_VALUE, 10))
+				.extracting(Price::getExternalId).containsExactly(1, 2);
+
+	}
+
+	@Test
+	public void shouldHearUpdatesFromEveryShard() throws Exception {
+
+		String instrumentName = instrumentOnShard(1);
+		priceCache.put(getMockPrice(instrumentName, 1, 1591009261001L));
+
+		priceRepository.upsertIfNewer(getMockPrice(instrumentName, 2, 1591009262001L));
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (priceCache.get(instrumentName) != null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(priceCache.get(instrumentName)).isNull();
+
+	}
+
+	private String instrumentOnShard(int shard) {
+
+		for (int i = 0;; i++) {
+			String instrumentName = "CCY" + i + "/USD";
+			if (redisShards.shardOf(PriceRepository.key(instrumentName).getBytes(UTF_8)) == shard) {
+				return instrumentName;
+			}
+		}
+	}
+
+	private Set<String> keys(int shard) {
+
+		Set<String> keys = new HashSet<>();
+		redisShards.template(shard).execute((RedisCallback<Void>) connection -> {
+			connection.keys("*".getBytes(UTF_8)).forEach(key -> keys.add(new String(key, UTF_8)));
+			return null;
+		});
+		return keys;
+	}
+
+}
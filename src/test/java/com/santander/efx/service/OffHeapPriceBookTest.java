@@ -0,0 +1,130 @@
+package com.santander.efx.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.santander.efx.BaseTest;
+import com.santander.efx.model.Price;
+
+public class OffHeapPriceBookTest extends BaseTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final OffHeapPriceBook book = OffHeapPriceBook.allocate(16);
+
+	@Test
+	public void shouldKeepNewestPricePerRecord() {
+
+		assertThat(book.get(3, "EUR/USD")).isNull();
+		assertThat(book.put(3, getMockPrice(null, 7, 11_000, 12_000, 100), null)).isTrue();
+		assertThat(book.put(3, getMockPrice(null, 8, 11_001, 12_001, 100), null)).isFalse();
+		assertThat(book.put(4, getMockPrice(null, null, 1, 2, 50), null)).isTrue();
+
+		Price price = book.get(3, "EUR/USD");
+		assertThat(price.getInstrumentId()).isEqualTo(3);
+		assertThat(price.getInstrumentName()).isEqualTo("EUR/USD");
+		assertThat(price.getExternalId()).isEqualTo(7);
+		assertThat(price.getScaledBid()).isEqualTo(11_000);
+		assertThat(price.getScaledAsk()).isEqualTo(12_000);
+		assertThat(price.getTimestamp()).isEqualTo(100);
+		assertThat(book.get(4, null).getExternalId()).isNull();
+		assertThat(book.size()).isEqualTo(2);
+
+		assertThat(book.invalidate(3, 100)).isFalse();
+		assertThat(book.invalidate(3, 101)).isTrue();
+		assertThat(book.get(3, "EUR/USD")).isNull();
+		assertThat(book.timestamp(3)).isEqualTo(Long.MIN_VALUE);
+		book.clear();
+		assertThat(book.size()).isZero();
+
+	}
+
+	@Test
+	public void shouldNeverReadHalfWrittenRecord() throws Exception {
+
+		AtomicReference<String> torn = new AtomicReference<>();
+		Thread writer = new Thread(() -> {
+			for (long n = 1; n <= 200_000; n++) {
+				book.put(5, getMockPrice(null, (int) n, n, n, n), null);
+			}
+		});
+		Thread reader = new Thread(() -> {
+			while (writer.isAlive()) {
+				Price price = book.get(5, "EUR/USD");
+				if (price != null && (price.getScaledBid() != price.getTimestamp()
+						|| price.getScaledAsk() != price.getTimestamp() || price.getExternalId() != price.getTimestamp())) {
+					torn.set(price.toString());
+				}
+			}
+		});
+		writer.start();
+		reader.start();
+		writer.join();
+		reader.join();
+
+		assertThat(torn.get()).isNull();
+		assertThat(book.get(5, "EUR/USD").getTimestamp()).isEqualTo(200_000);
+
+	}
+
+	@Test
+	public void shouldKeepNewestPriceAcrossConcurrentWriters() throws Exception {
+
+		Thread[] writers = new Thread[4];
+		for (int w = 0; w < writers.length; w++) {
+			int first = w + 1;
+			writers[w] = new Thread(() -> {
+				for (long n = first; n <= 100_000; n += writers.length) {
+					book.put(6, getMockPrice(null, (int) n, n, n, n), null);
+				}
+			});
+			writers[w].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+
+		Price price = book.get(6, "EUR/USD");
+		assertThat(price.getTimestamp()).isEqualTo(100_000);
+		assertThat(price.getScaledBid()).isEqualTo(100_000);
+		assertThat(book.timestamp(6)).isEqualTo(100_000);
+		assertThat(book.size()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void shouldShareBookThroughMappedFile() throws Exception {
+
+		File file = new File(folder.getRoot(), "prices.book");
+		OffHeapPriceBook writer = OffHeapPriceBook.map(file, 8);
+		writer.put(2, getMockPrice(null, 9, 1_1000, 1_2000, 100), "EUR/USD".getBytes(UTF_8));
+		writer.put(3, getMockPrice(null, 10, 1, 2, 100), "A/VERY/LONG/INSTRUMENT/NAME".getBytes(UTF_8));
+
+		OffHeapPriceBook reader = OffHeapPriceBook.attach(file);
+		assertThat(reader.capacity()).isEqualTo(8);
+		assertThat(reader.get(2, null).getInstrumentName()).isEqualTo("EUR/USD");
+		assertThat(reader.get(2, null).getExternalId()).isEqualTo(9);
+		assertThat(reader.get(3, null).getInstrumentName()).isNull();
+		assertThat(reader.get(1, null)).isNull();
+		assertThatThrownBy(() -> reader.put(1, getMockPrice(null, 1, 1, 2, 100), null))
+				.isInstanceOf(UnsupportedOperationException.class);
+
+		writer.put(2, getMockPrice(null, 11, 1_1001, 1_2001, 200), "EUR/USD".getBytes(UTF_8));
+		assertThat(reader.get(2, null).getExternalId()).isEqualTo(11);
+
+		OffHeapPriceBook restarted = OffHeapPriceBook.map(file, 8);
+		assertThat(restarted.get(2, null)).isNull();
+		assertThat(reader.get(2, null)).isNull();
+
+	}
+
+}
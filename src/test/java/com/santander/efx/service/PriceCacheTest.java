@@ -0,0 +1,97 @@
+package com.santander.efx.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.BaseTest;
+import com.santander.efx.model.Price;
+import com.santander.efx.utils.InstrumentRegistry;
+
+public class PriceCacheTest extends BaseTest {
+
+	private final PriceCache priceCache = new PriceCache(2, "");
+
+	@Before
+	public void setUp() throws Exception {
+		ReflectionTestUtils.setField(priceCache, "instrumentRegistry", new InstrumentRegistry(new String[0], 64, false));
+		priceCache.open();
+	}
+
+	@Test
+	public void shouldKeepNewestPrice() {
+
+		priceCache.put(getMockPrice("EUR/USD", 1, 100));
+		priceCache.put(getMockPrice("EUR/USD", 2, 50));
+		priceCache.put(getMockPrice("EUR/USD", 3, 200));
+
+		assertThat(priceCache.get("EUR/USD").getExternalId()).isEqualTo(3);
+		assertThat(priceCache.get("GBP/USD")).isNull();
+		assertThat(priceCache.getHits()).isEqualTo(1);
+		assertThat(priceCache.getMisses()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void shouldEvictFirstCachedUnreadPriceWhenFull() {
+
+		priceCache.put(getMockPrice("EUR/USD", 1, 300));
+		priceCache.put(getMockPrice("GBP/USD", 2, 100));
+		priceCache.put(getMockPrice("EUR/JPY", 3, 200));
+
+		assertThat(priceCache.size()).isEqualTo(2);
+		assertThat(priceCache.get("EUR/USD")).isNull();
+		assertThat(priceCache.getEvictions()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyReadPriceWhenFull() {
+
+		priceCache.put(getMockPrice("EUR/USD", 1, 100));
+		priceCache.put(getMockPrice("GBP/USD", 2, 300));
+		assertThat(priceCache.get("EUR/USD")).isNotNull();
+		priceCache.put(getMockPrice("EUR/JPY", 3, 200));
+
+		assertThat(priceCache.get("GBP/USD")).isNull();
+		assertThat(priceCache.get("EUR/USD")).isNotNull();
+		assertThat(priceCache.get("EUR/JPY")).isNotNull();
+
+		priceCache.invalidate("EUR/USD", 101);
+		priceCache.put(getMockPrice("GBP/USD", 4, 400));
+		assertThat(priceCache.size()).isEqualTo(2);
+		assertThat(priceCache.getEvictions()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void shouldInvalidateOnlyOlderPrice() {
+
+		priceCache.put(getMockPrice("EUR/USD", 1, 100));
+
+		priceCache.onMessage(new DefaultMessage("price-updates".getBytes(UTF_8), "100 EUR/USD".getBytes(UTF_8)), null);
+		assertThat(priceCache.get("EUR/USD")).isNotNull();
+
+		priceCache.onMessage(new DefaultMessage("price-updates".getBytes(UTF_8), "101 EUR/USD".getBytes(UTF_8)), null);
+		assertThat(priceCache.get("EUR/USD")).isNull();
+
+	}
+
+	@Test
+	public void shouldSkipMalformedUpdates() {
+
+		priceCache.put(getMockPrice("EUR/USD", 1, 100));
+
+		for (String body : new String[] { "EUR/USD", " EUR/USD", "soon EUR/USD", "99999999999999999999 EUR/USD" }) {
+			priceCache.onMessage(new DefaultMessage("price-updates".getBytes(UTF_8), body.getBytes(UTF_8)), null);
+		}
+		assertThat(priceCache.get("EUR/USD")).isNotNull();
+
+	}
+
+}
@@ -1,23 +1,30 @@
 package com.santander.efx.service;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertNotNull;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.santander.efx.BaseIntegrationTest;
 import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.exception.ServiceException;
 import com.santander.efx.model.Price;
 import com.santander.efx.repository.PriceRepository;
 import com.santander.efx.utils.DateUtils;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = RedisTestConfiguration.class)
 public class PriceServiceTest extends BaseIntegrationTest {
@@ -31,6 +38,12 @@ public class PriceServiceTest extends BaseIntegrationTest {
 	@Autowired
 	private PriceRepository priceRepository;
 
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private StringRedisTemplate template;
+
 	@Test
 	public void shouldReturnAllList() throws Exception {
 
@@ -76,6 +89,25 @@ public class PriceServiceTest extends BaseIntegrationTest {
 		
 	}
 
+    @Test
+    public void shouldReadWithoutBlocking() throws Exception {
+
+        priceRepository.saveAll(getMockPriceList());
+        template.opsForSet().add(PriceRepository.indexKey("XXX/USD"), "XXX/USD");
+
+        assertThat(priceService.getAllAsync().get(5, TimeUnit.SECONDS))
+                .extracting("instrumentName").containsExactlyInAnyOrder("EUR/USD", "GBP/USD", "EUR/JPY");
+        assertThat(priceService.getPriceByInstrumentNameAsync("GBP/USD").get(5, TimeUnit.SECONDS).getExternalId())
+                .isEqualTo(4);
+        assertThat(priceService.getPriceByInstrumentNameAsync("BRL/USD").get(5, TimeUnit.SECONDS).getInstrumentName())
+                .isNull();
+
+        template.delete(PriceRepository.key("GBP/USD"));
+        assertThat(priceService.getPriceByInstrumentNameAsync("GBP/USD").get(5, TimeUnit.SECONDS).getExternalId())
+                .as("served from the cache").isEqualTo(4);
+
+    }
+
     @Test
     public void shouldSaveCsvPrice() {
 
@@ -97,4 +129,101 @@ public class PriceServiceTest extends BaseIntegrationTest {
 
 
 
+    @Test
+    public void shouldSaveCsvPriceOfInstrumentNotShapedLikePair() {
+
+        priceService.saveCsvPrice("1, EURUSD, 1.1900,1.2450,01-06-2020 12:01:01:001");
+
+        assertThat(priceRepository.findById("EURUSD")).isPresent();
+
+    }
+
+    @Test
+    public void shouldSaveNewestCsvPricePerInstrument() {
+
+        priceService.saveCsvPrices(getMockCsvPrices());
+
+        Price result = priceService.getPriceByInstrumentName("GBP/USD");
+
+        assertThat(priceRepository.findAll().size()).isEqualTo(3);
+        assertThat(result.getExternalId()).isEqualTo(5);
+        assertThat(result.getBid()).isEqualTo(new BigDecimal("1.2150"));
+        assertThat(result.getAsk()).isEqualTo(new BigDecimal("1.4916"));
+        assertThat(result.getDate()).isEqualTo(dateUtils.formatDate("01-06-2020 12:02:02:100"));
+
+    }
+
+    @Test
+    public void shouldNotOverwriteNewerPriceWithCsvPrices() {
+
+        priceService.saveCsvPrice("5, GBP/USD, 1.3500,1.3560,01-06-2020 12:02:02:100");
+        priceService.saveCsvPrices(asList("3, GBP/USD, 1.2500,1.2560,01-06-2020 12:01:02:001",
+                "1, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001"));
+
+        assertThat(priceService.getPriceByInstrumentName("GBP/USD").getExternalId()).isEqualTo(5);
+        assertThat(priceService.getPriceByInstrumentName("EUR/USD").getExternalId()).isEqualTo(1);
+
+    }
+
+    @Test
+    public void shouldNotSaveIfDateIsBefore() {
+
+        priceService.saveCsvPrice("4, GBP/USD, 1.2500, 1.2560, 01-06-2020 12:01:02:100");
+        priceService.saveCsvPrice("3, GBP/USD, 1.3500, 1.3560, 01-06-2020 11:01:02:100");
+        priceService.saveCsvPrice("5, GBP/USD, 1.3500, 1.3560, 01-06-2020 12:01:02:100");
+
+        Price result = priceService.getPriceByInstrumentName("GBP/USD");
+        assertThat(result.getExternalId()).isEqualTo(4);
+        assertThat(result.getBid()).isEqualTo(new BigDecimal("1.1250"));
+
+    }
+
+    @Test
+    public void shouldServeCachedPriceUntilAnotherNodeWrites() throws Exception {
+
+        priceService.saveCsvPrice("4, GBP/USD, 1.2500, 1.2560, 01-06-2020 12:01:02:100");
+        assertThat(priceService.getPriceByInstrumentName("GBP/USD").getExternalId()).isEqualTo(4);
+
+        Price newer = priceService.getPriceByInstrumentName("GBP/USD");
+        newer = new Price(newer.getInstrumentName(), 7, newer.getBid(), newer.getAsk(), newer.getDate());
+        newer.setTimestamp(newer.getTimestamp() + 1);
+        priceRepository.upsertIfNewer(newer);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (priceService.getPriceByInstrumentName("GBP/USD").getExternalId() != 7
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(priceService.getPriceByInstrumentName("GBP/USD").getExternalId()).isEqualTo(7);
+
+    }
+
+    @Test
+    public void shouldCountTicksByResult() {
+
+        double accepted = ticks("accepted");
+        double stale = ticks("stale");
+        double conflated = ticks("conflated");
+        double rejected = ticks("rejected");
+        long stored = meterRegistry.get("efx.tick.stage").tag("stage", "store").timer().count();
+
+        priceService.saveCsvPrice("4, GBP/USD, 1.2500, 1.2560, 01-06-2020 12:01:02:100");
+        priceService.saveCsvPrice("3, GBP/USD, 1.3500, 1.3560, 01-06-2020 11:01:02:100");
+        priceService.saveCsvPrices(getMockCsvPrices());
+        assertThatThrownBy(() -> priceService.saveCsvPrice("1, EUR/USD, 1.1000, 01-06-2020 12:01:01:001"))
+                .isInstanceOf(ServiceException.class);
+
+        assertThat(ticks("accepted") - accepted).isEqualTo(4);
+        assertThat(ticks("stale") - stale).isEqualTo(1);
+        assertThat(ticks("conflated") - conflated).isEqualTo(2);
+        assertThat(ticks("rejected") - rejected).isEqualTo(1);
+        assertThat(meterRegistry.get("efx.tick.stage").tag("stage", "store").timer().count() - stored).isEqualTo(3);
+        assertThat(meterRegistry.get("efx.tick.lag").timer().max(TimeUnit.MILLISECONDS)).isPositive();
+
+    }
+
+    private double ticks(String result) {
+        return meterRegistry.get("efx.ticks").tag("result", result).counter().count();
+    }
+
 }
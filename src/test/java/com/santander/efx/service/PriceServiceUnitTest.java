@@ -2,14 +2,13 @@ package com.santander.efx.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -58,8 +57,8 @@ public class PriceServiceUnitTest extends BaseTest {
 		
 		Optional<Price> opPrice = Optional.of(price);
 		
-		when(this.priceRepository.save(any(Price.class))).then(returnsFirstArg());
-		when(this.priceRepository.findById(anyString())).thenReturn(opPrice);
+		when(this.priceRepository.upsertIfNewer(any(Price.class))).thenReturn(true);
+		when(this.priceRepository.findLatest(anyString())).thenReturn(opPrice);
 		
 	}
 
@@ -79,7 +78,7 @@ public class PriceServiceUnitTest extends BaseTest {
 	@Test
 	public void shouldGetPriceByInstrumentNameReturnNullValues() {
 		
-		when(this.priceRepository.findById(anyString())).thenReturn(Optional.empty());
+		when(this.priceRepository.findLatest(anyString())).thenReturn(Optional.empty());
 		
 		Price price = priceService.getPriceByInstrumentName(anyString());
 		assertThat(price.getInstrumentName()).isNull();
@@ -111,7 +110,7 @@ public class PriceServiceUnitTest extends BaseTest {
 
 		priceService.saveCsvPrice("5, GBP/USD, 1.2500, 1.2560, 01-06-2020 13:01:02:100");
 		
-		verify(this.priceRepository).save(captor.capture());
+		verify(this.priceRepository).upsertIfNewer(captor.capture());
 		assertThat(captor.getValue().getBid()).isEqualTo(new BigDecimal("1.1250"));
 		
 	}
@@ -123,28 +122,19 @@ public class PriceServiceUnitTest extends BaseTest {
 
 		priceService.saveCsvPrice("5, GBP/USD, 1.2500, 1.2560, 01-06-2020 13:01:02:100");
 		
-		verify(this.priceRepository).save(captor.capture());
+		verify(this.priceRepository).upsertIfNewer(captor.capture());
 		assertThat(captor.getValue().getAsk()).isEqualTo(new BigDecimal("1.3816"));
 		
 	}
 	
 	@Test
-	public void shouldNotSaveIfDateIsBefore() {
-		
-		priceService.saveCsvPrice("4, GBP/USD, 1.2500, 1.2560, 01-06-2020 11:01:02:100");
-		
-		verify(this.priceRepository, never()).save(any(Price.class));
-		
-	}	
-	
-	@Test
-	public void shouldSaveIfDateIsAfter() {
+	public void shouldUpsertAdjustedPrice() {
 		
 		ArgumentCaptor<Price> captor = ArgumentCaptor.forClass(Price.class);
 		
 		priceService.saveCsvPrice("4, GBP/USD, 1.2500, 1.2560, 01-06-2020 13:01:02:100");
 		
-		verify(this.priceRepository).save(captor.capture());
+		verify(this.priceRepository).upsertIfNewer(captor.capture());
 		
 		assertThat(captor.getValue().getInstrumentName()).isEqualTo("GBP/USD");
 		assertThat(captor.getValue().getExternalId()).isEqualTo(4);
@@ -154,4 +144,18 @@ public class PriceServiceUnitTest extends BaseTest {
 		
 	}
 
+	@Test
+	public void shouldUpsertNewestPricePerInstrument() {
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Collection<Price>> captor = ArgumentCaptor.forClass(Collection.class);
+
+		priceService.saveCsvPrices(getMockCsvPrices());
+
+		verify(this.priceRepository).upsertAllIfNewer(captor.capture());
+		assertThat(captor.getValue()).extracting("instrumentName").containsExactly("EUR/USD", "EUR/JPY", "GBP/USD");
+		assertThat(captor.getValue()).extracting("externalId").containsExactly(1, 2, 5);
+
+	}
+
 }
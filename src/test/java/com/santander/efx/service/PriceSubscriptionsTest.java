@@ -0,0 +1,158 @@
+package com.santander.efx.service;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.santander.efx.BaseTest;
+import com.santander.efx.model.Price;
+
+public class PriceSubscriptionsTest extends BaseTest {
+
+	private final PriceSubscriptions priceSubscriptions = new PriceSubscriptions(2, 16);
+
+	@After
+	public void tearDown() {
+		priceSubscriptions.close();
+	}
+
+	@Test
+	public void shouldPushOnlySubscribedInstruments() throws Exception {
+
+		RecordingEmitter emitter = new RecordingEmitter(2);
+		priceSubscriptions.subscribe(asList("EUR/USD", "GBP/USD"), emitter);
+
+		priceSubscriptions.publish(getMockPrice("EUR/USD", 1, 100));
+		priceSubscriptions.publish(getMockPrice("EUR/JPY", 2, 100));
+		priceSubscriptions.publish(getMockPrice("GBP/USD", 3, 100));
+
+		assertThat(emitter.received.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(emitter.prices).extracting(Price::getExternalId).containsExactlyInAnyOrder(1, 3);
+
+	}
+
+	@Test
+	public void shouldPushPricesAsQuotedToSubscriber() throws Exception {
+
+		RecordingEmitter emitter = new RecordingEmitter(1);
+		priceSubscriptions.subscribe(singletonList("EUR/USD"), price -> getMockPrice("EUR/USD", 7, price.getTimestamp()),
+				emitter);
+
+		priceSubscriptions.publish(getMockPrice("EUR/USD", 1, 100));
+
+		assertThat(emitter.received.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(emitter.prices).extracting(Price::getExternalId).containsExactly(7);
+
+	}
+
+	@Test
+	public void shouldConflateWhileSubscriberIsBusy() throws Exception {
+
+		RecordingEmitter emitter = new RecordingEmitter(2);
+		emitter.release = new CountDownLatch(1);
+		priceSubscriptions.subscribe(singletonList("EUR/USD"), emitter);
+
+		priceSubscriptions.publish(getMockPrice("EUR/USD", 0, 100));
+		assertThat(emitter.sending.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int i = 1; i <= 1000; i++) {
+			priceSubscriptions.publish(getMockPrice("EUR/USD", i, 100 + i));
+		}
+		priceSubscriptions.publish(getMockPrice("EUR/USD", -1, 50));
+		emitter.release.countDown();
+
+		assertThat(emitter.received.await(5, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(100);
+		assertThat(emitter.prices).extracting(Price::getExternalId).containsExactly(0, 1000);
+
+	}
+
+	@Test
+	public void shouldDropSubscriberOnceItsConnectionFails() throws Exception {
+
+		RecordingEmitter emitter = new RecordingEmitter(1);
+		emitter.fail = true;
+		priceSubscriptions.subscribe(singletonList("EUR/USD"), emitter);
+		assertThat(priceSubscriptions.size()).isEqualTo(1);
+
+		priceSubscriptions.publish(getMockPrice("EUR/USD", 1, 100));
+
+		assertThat(emitter.received.await(5, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(100);
+		assertThat(priceSubscriptions.size()).isZero();
+
+	}
+
+	@Test
+	public void shouldKeepPricesPendingWhileSendersAreFull() throws Exception {
+
+		PriceSubscriptions bounded = new PriceSubscriptions(1, 1);
+		try {
+			RecordingEmitter busy = new RecordingEmitter(1);
+			busy.release = new CountDownLatch(1);
+			RecordingEmitter queued = new RecordingEmitter(1);
+			RecordingEmitter overflowing = new RecordingEmitter(1);
+			bounded.subscribe(singletonList("EUR/USD"), busy);
+			bounded.subscribe(singletonList("GBP/USD"), queued);
+			bounded.subscribe(singletonList("EUR/JPY"), overflowing);
+
+			bounded.publish(getMockPrice("EUR/USD", 1, 100));
+			assertThat(busy.sending.await(5, TimeUnit.SECONDS)).isTrue();
+			bounded.publish(getMockPrice("GBP/USD", 2, 100));
+			bounded.publish(getMockPrice("EUR/JPY", 3, 100));
+			assertThat(bounded.getOverflows()).isEqualTo(1);
+
+			busy.release.countDown();
+			assertThat(queued.received.await(5, TimeUnit.SECONDS)).isTrue();
+			bounded.publish(getMockPrice("EUR/JPY", 4, 101));
+			assertThat(overflowing.received.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(overflowing.prices).extracting(Price::getExternalId).containsExactly(4);
+		} finally {
+			bounded.close();
+		}
+
+	}
+
+	private static class RecordingEmitter extends SseEmitter {
+
+		private final List<Price> prices = new CopyOnWriteArrayList<>();
+		private final CountDownLatch sending = new CountDownLatch(1);
+		private volatile CountDownLatch release = new CountDownLatch(0);
+		private final CountDownLatch received;
+		private volatile boolean fail;
+
+		private RecordingEmitter(int expected) {
+			this.received = new CountDownLatch(expected);
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+
+			sending.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (!fail) {
+				builder.build().stream().map(data -> data.getData()).filter(Price.class::isInstance)
+						.forEach(data -> prices.add((Price) data));
+			}
+			received.countDown();
+			if (fail) {
+				throw new IOException("Broken pipe");
+			}
+		}
+
+	}
+
+}
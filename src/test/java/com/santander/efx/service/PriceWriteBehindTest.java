@@ -0,0 +1,150 @@
+package com.santander.efx.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.BaseIntegrationTest;
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.model.Price;
+import com.santander.efx.repository.PriceHistoryRepository;
+import com.santander.efx.repository.PriceRepository;
+import com.santander.efx.utils.InstrumentRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RedisTestConfiguration.class)
+public class PriceWriteBehindTest extends BaseIntegrationTest {
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private PriceHistoryRepository priceHistoryRepository;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	@Autowired
+	private PriceMetrics priceMetrics;
+
+	@Autowired
+	private PriceService priceService;
+
+	@Autowired
+	private PriceCache priceCache;
+
+	private PriceWriteBehind writeBehind;
+	private Object immediate;
+
+	@Before
+	public void setUp() {
+		super.setUp();
+
+		writeBehind = new PriceWriteBehind(new SimpleMeterRegistry(), true, 3_600_000, 3);
+		ReflectionTestUtils.setField(writeBehind, "priceRepository", priceRepository);
+		ReflectionTestUtils.setField(writeBehind, "instrumentRegistry", instrumentRegistry);
+		ReflectionTestUtils.setField(writeBehind, "priceMetrics", priceMetrics);
+		ReflectionTestUtils.setField(writeBehind, "priceCache", priceCache);
+		writeBehind.start();
+		immediate = ReflectionTestUtils.getField(priceService, "priceWriteBehind");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ReflectionTestUtils.setField(priceService, "priceWriteBehind", immediate);
+		writeBehind.stop();
+	}
+
+	@Test
+	public void shouldWriteOnlyLatestPricePerFlush() {
+
+		for (int i = 1; i <= 50; i++) {
+			assertThat(writeBehind.offer(getMockPrice("EUR/USD", i, i))).isTrue();
+		}
+		assertThat(writeBehind.offer(getMockPrice("EUR/USD", 10, 10))).isFalse();
+
+		assertThat(priceRepository.findById("EUR/USD")).isEmpty();
+		assertThat(writeBehind.getUnflushed("EUR/USD").getTimestamp()).isEqualTo(50L);
+		assertThat(writeBehind.getDirtyCount()).isEqualTo(1);
+
+		assertThat(writeBehind.flush()).isEqualTo(1);
+
+		assertThat(priceRepository.findById("EUR/USD").get().getTimestamp()).isEqualTo(50L);
+		assertThat(priceHistoryRepository.findTicks("EUR/USD", 0, Long.MAX_VALUE, 100)).hasSize(1);
+		assertThat(writeBehind.getUnflushed("EUR/USD")).isNull();
+		assertThat(writeBehind.flush()).isEqualTo(0);
+
+	}
+
+	@Test
+	public void shouldFlushOnDirtyCountAndOnStop() throws Exception {
+
+		writeBehind.offer(getMockPrice("EUR/USD", 1, 1));
+		writeBehind.offer(getMockPrice("GBP/USD", 1, 1));
+		writeBehind.offer(getMockPrice("EUR/JPY", 1, 1));
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (writeBehind.getFlushed() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(priceRepository.findAll()).hasSize(3);
+
+		writeBehind.offer(getMockPrice("GBP/USD", 2, 2));
+		writeBehind.stop();
+
+		assertThat(priceRepository.findById("GBP/USD").get().getTimestamp()).isEqualTo(2L);
+		assertThat(writeBehind.getDirtyCount()).isEqualTo(0);
+
+	}
+
+	@Test
+	public void shouldServeUnflushedPricesToReaders() {
+
+		ReflectionTestUtils.setField(priceService, "priceWriteBehind", writeBehind);
+		priceRepository.save(getMockPrice("GBP/USD", 0, 0));
+
+		priceService.saveCsvPrice("1, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001");
+		priceService.saveCsvPrice("2, EUR/USD, 1.1000,1.3000,01-06-2020 12:01:01:002");
+		priceService.saveCsvPrice("3, GBP/USD, 1.2500,1.2560,01-06-2020 12:01:01:001");
+
+		assertThat(priceRepository.findById("EUR/USD")).isEmpty();
+		assertThat(priceService.getPriceByInstrumentName("EUR/USD").getExternalId()).isEqualTo(2);
+		List<Price> book = priceService.getAll();
+		assertThat(book).extracting(Price::getExternalId).containsExactlyInAnyOrder(2, 3);
+
+		writeBehind.flush();
+		assertThat(priceRepository.findById("EUR/USD").get().getAsk()).isEqualTo(new BigDecimal("1.4300"));
+
+	}
+
+	@Test
+	public void shouldDropCachedPriceThatRedisTurnedDown() throws Exception {
+
+		assertThat(priceRepository.upsertIfNewer(getMockPrice("EUR/USD", 20, 20))).isTrue();
+		Thread.sleep(200);
+		Price older = getMockPrice("EUR/USD", 10, 10);
+		assertThat(writeBehind.offer(older)).isTrue();
+		priceCache.put(older);
+		assertThat(priceCache.get("EUR/USD").getTimestamp()).isEqualTo(10L);
+
+		assertThat(writeBehind.flush()).isEqualTo(1);
+
+		assertThat(writeBehind.getUnflushed("EUR/USD")).isNull();
+		assertThat(priceCache.get("EUR/USD")).isNull();
+		assertThat(priceService.getPriceByInstrumentName("EUR/USD").getTimestamp()).isEqualTo(20L);
+
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.santander.efx.service;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.math.BigDecimal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.santander.efx.BaseIntegrationTest;
+import com.santander.efx.config.RedisTestConfiguration;
+import com.santander.efx.repository.PriceRepository;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RedisTestConfiguration.class)
+public class PricingRulesTest extends BaseIntegrationTest {
+
+	@Autowired
+	private PricingRules pricingRules;
+
+	@Autowired
+	private PriceService priceService;
+
+	@Autowired
+	private PriceRepository priceRepository;
+
+	@Autowired
+	private StringRedisTemplate template;
+
+	@After
+	public void tearDown() {
+		template.delete(PricingRules.RULES_KEY);
+		pricingRules.reload();
+	}
+
+	@Test
+	public void shouldPriceWithRulesStoredInRedisOnReload() {
+
+		template.opsForHash().put(PricingRules.RULES_KEY, "EUR/USD", "0.01:0.02");
+		priceService.saveCsvPrice("1, EUR/USD, 1.0000,1.0000,01-06-2020 12:01:01:001");
+		assertThat(priceRepository.findById("EUR/USD").get().getBid(), is(new BigDecimal("0.9000")));
+
+		pricingRules.reload();
+		priceService.saveCsvPrice("2, EUR/USD, 1.0000,1.0000,01-06-2020 12:01:01:002");
+
+		assertThat(priceRepository.findById("EUR/USD").get().getBid(), is(new BigDecimal("0.9900")));
+		assertThat(priceRepository.findById("EUR/USD").get().getAsk(), is(new BigDecimal("1.0200")));
+		assertThat(pricingRules.table().getRules().get("*@gold"), is("-0.05"));
+
+	}
+
+	@Test
+	public void shouldKeepRulesInForceWhenStoredOnesDoNotCompile() {
+
+		PricingTable inForce = pricingRules.table();
+		template.opsForHash().put(PricingRules.RULES_KEY, "EUR/USD", "wide");
+
+		try {
+			pricingRules.reload();
+		} catch (IllegalArgumentException e) {
+			assertThat(pricingRules.table() == inForce, is(true));
+			return;
+		}
+		throw new AssertionError("Bad rule compiled");
+
+	}
+
+}
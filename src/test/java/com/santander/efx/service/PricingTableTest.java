@@ -0,0 +1,109 @@
+package com.santander.efx.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.santander.efx.model.Price;
+
+public class PricingTableTest {
+
+	private static final BigDecimal DEFAULT_MARGIN = new BigDecimal("0.1");
+
+	@Test
+	public void shouldApplyInstrumentRulesOverDefaults() {
+
+		Map<String, String> rules = new LinkedHashMap<>();
+		rules.put("EUR/USD", "0.00015");
+		rules.put("USD/JPY", "0.01:0.02");
+		PricingTable table = PricingTable.compile(DEFAULT_MARGIN, rules);
+
+		assertThat(table.adjust(price("EUR/USD", "1.1000", "1.2000")).getBid()).isEqualTo(new BigDecimal("1.0998"));
+		assertThat(table.adjust(price("EUR/USD", "1.1000", "1.2000")).getAsk()).isEqualTo(new BigDecimal("1.2002"));
+		assertThat(table.adjust(price("USD/JPY", "100.0000", "100.0000")).getBid()).isEqualTo(new BigDecimal("99.0000"));
+		assertThat(table.adjust(price("USD/JPY", "100.0000", "100.0000")).getAsk()).isEqualTo(new BigDecimal("102.0000"));
+		assertThat(table.adjust(price("GBP/USD", "1.2500", "1.2560")).getBid()).isEqualTo(new BigDecimal("1.1250"));
+		assertThat(table.adjust(price("GBP/USD", "1.2500", "1.2560")).getAsk()).isEqualTo(new BigDecimal("1.3816"));
+
+	}
+
+	@Test
+	public void shouldUseWildcardRuleForUnlistedInstruments() {
+
+		PricingTable table = PricingTable.compile(DEFAULT_MARGIN, Collections.singletonMap("*", "0.5"));
+
+		assertThat(table.adjust(price("GBP/USD", "2.0000", "2.0000")).getBid()).isEqualTo(new BigDecimal("1.0000"));
+		assertThat(table.adjust(price("GBP/USD", "2.0000", "2.0000")).getAsk()).isEqualTo(new BigDecimal("3.0000"));
+
+	}
+
+	@Test
+	public void shouldSkewCopiesPerTier() {
+
+		Map<String, String> rules = new LinkedHashMap<>();
+		rules.put("*@gold", "-0.05");
+		rules.put("EUR/USD@gold", "-0.1");
+		rules.put("*@retail", "0.01");
+		PricingTable table = PricingTable.compile(DEFAULT_MARGIN, rules);
+
+		Price stored = price("EUR/USD", "1.0000", "2.0000");
+		Price gold = table.skew(stored, table.tier("gold"));
+		Price retail = table.skew(stored, table.tier("retail"));
+
+		assertThat(gold.getBid()).isEqualTo(new BigDecimal("1.1000"));
+		assertThat(gold.getAsk()).isEqualTo(new BigDecimal("1.8000"));
+		assertThat(retail.getBid()).isEqualTo(new BigDecimal("0.9900"));
+		assertThat(table.skew(price("GBP/USD", "1.0000", "2.0000"), table.tier("gold")).getAsk())
+				.isEqualTo(new BigDecimal("1.9000"));
+		assertThat(stored.getBid()).isEqualTo(new BigDecimal("1.0000"));
+		assertThat(table.skew(stored, table.tier(null))).isSameAs(stored);
+		assertThatThrownBy(() -> table.tier("platinum")).isInstanceOf(IllegalArgumentException.class);
+
+	}
+
+	@Test
+	public void shouldPlaceManyInstrumentsWithoutCollisions() {
+
+		Map<String, String> rules = new LinkedHashMap<>();
+		for (int i = 0; i < 5_000; i++) {
+			rules.put("CCY" + i + "/USD", "0.000" + (i % 10));
+		}
+		PricingTable table = PricingTable.compile(DEFAULT_MARGIN, rules);
+
+		for (int i = 0; i < 5_000; i++) {
+			BigDecimal margin = new BigDecimal("0.000" + (i % 10));
+			BigDecimal expected = BigDecimal.ONE.subtract(margin).multiply(new BigDecimal("10000")).setScale(4);
+			assertThat(table.adjust(price("CCY" + i + "/USD", "10000.0000", "10000.0000")).getBid())
+					.isEqualTo(expected);
+		}
+		assertThat(table.adjust(price("XXX/USD", "1.0000", "1.0000")).getBid()).isEqualTo(new BigDecimal("0.9000"));
+
+	}
+
+	@Test
+	public void shouldRejectBadRules() {
+
+		assertThatThrownBy(() -> PricingTable.compile(DEFAULT_MARGIN, Collections.singletonMap("EUR/USD", "wide")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> PricingTable.compile(DEFAULT_MARGIN, Collections.singletonMap("EUR/USD", "1")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> PricingTable.compile(DEFAULT_MARGIN, Collections.singletonMap("EUR/USD@", "0.1")))
+				.isInstanceOf(IllegalArgumentException.class);
+
+	}
+
+	private static Price price(String instrumentName, String bid, String ask) {
+		Price price = new Price();
+		price.setInstrumentName(instrumentName);
+		price.setBid(new BigDecimal(bid));
+		price.setAsk(new BigDecimal(ask));
+		return price;
+	}
+
+}
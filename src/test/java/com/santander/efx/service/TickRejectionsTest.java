@@ -0,0 +1,47 @@
+package com.santander.efx.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import com.santander.efx.exception.RejectReason;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TickRejectionsTest {
+
+	private final PriceMetrics priceMetrics = mock(PriceMetrics.class);
+
+	@Test
+	public void shouldCountRejectionsPerReason() {
+
+		TickRejections tickRejections = new TickRejections(new SimpleMeterRegistry(), priceMetrics, 0, 60_000);
+
+		tickRejections.reject(RejectReason.PRICE, "1, EUR/USD, x,1.2,01-06-2020 12:01:01:001");
+		tickRejections.reject(RejectReason.PRICE, "1, EUR/USD, 1.1,x,01-06-2020 12:01:01:001");
+		tickRejections.reject(RejectReason.DATE, "1, EUR/USD, 1.1,1.2,x");
+
+		assertThat(tickRejections.getCounts()).containsEntry(RejectReason.PRICE, 2L)
+				.containsEntry(RejectReason.DATE, 1L).containsEntry(RejectReason.FIELD_COUNT, 0L);
+		assertThat(tickRejections.getSamples()).isEmpty();
+		verify(priceMetrics, times(3)).rejected();
+
+	}
+
+	@Test
+	public void shouldKeepLatestSampledLines() {
+
+		TickRejections tickRejections = new TickRejections(new SimpleMeterRegistry(), priceMetrics, 3, 60_000);
+
+		for (int i = 0; i < 5; i++) {
+			tickRejections.reject(RejectReason.BLANK_FIELD, "line " + i);
+		}
+
+		assertThat(tickRejections.getSamples()).containsExactly("line 2", "line 3", "line 4");
+
+	}
+
+}
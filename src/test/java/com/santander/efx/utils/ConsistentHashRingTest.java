@@ -0,0 +1,66 @@
+package com.santander.efx.utils;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+
+	private static final int KEYS = 10000;
+
+	@Test
+	public void shouldAgreeOnOwnersWhateverTheNodeOrder() {
+
+		ConsistentHashRing ring = new ConsistentHashRing(asList("node-a", "node-b", "node-c"), 128);
+		ConsistentHashRing same = new ConsistentHashRing(asList("node-c", "node-a", "node-b", "node-a"), 128);
+
+		assertThat(same.nodes()).containsExactly("node-a", "node-b", "node-c");
+		for (int i = 0; i < KEYS; i++) {
+			assertThat(same.owner(key(i))).isEqualTo(ring.owner(key(i)));
+		}
+		String line = "1, EUR/USD, 1.1000,1.2000,01-06-2020 12:01:01:001";
+		assertThat(ring.owner(line, 3, 10)).isEqualTo(ring.owner("EUR/USD"));
+
+	}
+
+	@Test
+	public void shouldSpreadKeysEvenly() {
+
+		ConsistentHashRing ring = new ConsistentHashRing(asList("node-a", "node-b", "node-c", "node-d"), 128);
+
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			counts.merge(ring.owner(key(i)), 1, Integer::sum);
+		}
+		assertThat(counts).hasSize(4);
+		assertThat(counts.values()).allMatch(count -> count > KEYS / 4 * 0.75 && count < KEYS / 4 * 1.25);
+
+	}
+
+	@Test
+	public void shouldMoveOnlyKeysOfJoiningOrLeavingNode() {
+
+		ConsistentHashRing before = new ConsistentHashRing(asList("node-a", "node-b", "node-c"), 128);
+		ConsistentHashRing after = new ConsistentHashRing(asList("node-a", "node-b", "node-c", "node-d"), 128);
+
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String owner = after.owner(key(i));
+			if (!owner.equals(before.owner(key(i)))) {
+				assertThat(owner).isEqualTo("node-d");
+				moved++;
+			}
+		}
+		assertThat(moved).isBetween(KEYS / 4 * 3 / 4, KEYS / 4 * 5 / 4);
+
+	}
+
+	private static String key(int i) {
+		return "CCY" + i + "/USD";
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.santander.efx.utils;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.santander.efx.BaseTest;
+import com.santander.efx.exception.RejectReason;
+import com.santander.efx.exception.ServiceException;
+import com.santander.efx.model.PriceTick;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class CsvTickParserTest extends BaseTest {
+
+	private static final String DATE = "01-06-2020 12:01:02:100";
+
+	@Autowired
+	private CsvTickParser parser;
+
+	@Autowired
+	private DateUtils dateUtils;
+
+	@Autowired
+	private InstrumentRegistry instrumentRegistry;
+
+	@Test
+	public void shouldParseTick() {
+
+		PriceTick tick = parser.parse(" 5, GBP/USD, 1.2500, 1.2560, " + DATE + " ", new PriceTick());
+
+		assertThat(tick.getExternalId()).isEqualTo(5);
+		assertThat(tick.getInstrumentName()).isEqualTo("GBP/USD");
+		assertThat(tick.getBid()).isEqualTo(12500L);
+		assertThat(tick.getAsk()).isEqualTo(12560L);
+		assertThat(tick.getTimestamp()).isEqualTo(dateUtils.formatDate(DATE).getTime());
+
+	}
+
+	@Test
+	public void shouldParseAsciiBytes() {
+
+		byte[] bytes = ("xx2,EUR/JPY,119.60,119.90," + DATE).getBytes(US_ASCII);
+		PriceTick tick = parser.parse(new AsciiSequence().wrap(bytes, 2, bytes.length - 2), new PriceTick());
+
+		assertThat(tick.getExternalId()).isEqualTo(2);
+		assertThat(tick.getInstrumentName()).isEqualTo("EUR/JPY");
+		assertThat(tick.getBid()).isEqualTo(1196000L);
+		assertThat(tick.getAsk()).isEqualTo(1199000L);
+
+	}
+
+	@Test
+	public void shouldResolveInstrumentToRegisteredName() {
+
+		PriceTick first = parser.parse("1, AUD/NZD, 1.0000,1.1000," + DATE, new PriceTick());
+		PriceTick second = parser.parse("2,AUD/NZD,1.0000,1.1000," + DATE, new PriceTick());
+
+		assertThat(second.getInstrumentId()).isEqualTo(first.getInstrumentId());
+		assertThat(second.getInstrumentName()).isSameAs(first.getInstrumentName());
+		assertThat(instrumentRegistry.name(first.getInstrumentId())).isSameAs(first.getInstrumentName());
+
+	}
+
+	@Test
+	public void shouldRoundLikeBigDecimal() {
+
+		String[] samples = { "1", "1.", ".5", "0.00005", "0.00004", "0.000051", "0.000050000", "1.23455",
+				"1.23456", "-1.23455", "-1.234551", "+9.99995", "9.999950001", "99999999.9999" };
+		for (String sample : samples) {
+			assertRoundsLikeBigDecimal(sample);
+		}
+
+		Random random = new Random(42);
+		for (int i = 0; i < 10_000; i++) {
+			BigDecimal value = BigDecimal.valueOf(random.nextInt(Integer.MAX_VALUE), 2 + random.nextInt(8));
+			assertRoundsLikeBigDecimal(value.toPlainString());
+		}
+
+	}
+
+	@Test
+	public void shouldAcceptTrailingSeparators() {
+		assertThat(parser.parse("1, EUR/USD, 1.1,1.2," + DATE + ",,", new PriceTick()).getExternalId()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldRejectMalformedLinesWithReason() {
+
+		Map<String, RejectReason> lines = new LinkedHashMap<>();
+		lines.put("", RejectReason.BLANK_FIELD);
+		lines.put("1, EUR/USD, 1.1,1.2", RejectReason.FIELD_COUNT);
+		lines.put("1, EUR/USD, 1.1,1.2," + DATE + ", x", RejectReason.FIELD_COUNT);
+		lines.put("1, EUR/USD, ,1.2," + DATE, RejectReason.BLANK_FIELD);
+		lines.put(",EUR/USD,1.1,1.2," + DATE, RejectReason.BLANK_FIELD);
+		lines.put("1,EUR/USD,1.1,1.2,  ", RejectReason.BLANK_FIELD);
+		lines.put("a, EUR/USD, 1.1,1.2," + DATE, RejectReason.EXTERNAL_ID);
+		lines.put("2147483648, EUR/USD, 1.1,1.2," + DATE, RejectReason.EXTERNAL_ID);
+		lines.put("1, EUR/USD, 1.1.1,1.2," + DATE, RejectReason.PRICE);
+		lines.put("1, EUR/USD, 1e3,1.2," + DATE, RejectReason.PRICE);
+		lines.put("1, EUR/USD, -,1.2," + DATE, RejectReason.PRICE);
+		lines.put("1, EUR/USD, 100000000,1.2," + DATE, RejectReason.PRICE);
+		lines.put("1, EUR/USD, 1.1,1.2,32-06-2020 12:01:01:001", RejectReason.DATE);
+		lines.forEach((line, reason) -> assertThatThrownBy(() -> parser.parse(line, new PriceTick())).as(line)
+				.isInstanceOf(ServiceException.class).hasFieldOrPropertyWithValue("reason", reason));
+
+	}
+
+	@Test
+	public void shouldRejectWithSharedStacklessException() {
+
+		Throwable first = catchThrowable(() -> parser.parse("a,EUR/USD,1.1,1.2," + DATE, new PriceTick()));
+		Throwable second = catchThrowable(() -> parser.parse("b,EUR/USD,1.1,1.2," + DATE, new PriceTick()));
+
+		assertThat(second).isSameAs(first);
+		assertThat(first.getStackTrace()).isEmpty();
+
+	}
+
+	private void assertRoundsLikeBigDecimal(String value) {
+
+		long expected = new BigDecimal(value).setScale(PriceTick.SCALE, BigDecimal.ROUND_HALF_DOWN).unscaledValue()
+				.longValueExact();
+		PriceTick tick = parser.parse("1,EUR/USD," + value + ",1," + DATE, new PriceTick());
+		assertThat(tick.getBid()).as(value).isEqualTo(expected);
+
+	}
+
+}
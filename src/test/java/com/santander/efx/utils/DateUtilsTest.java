@@ -0,0 +1,92 @@
+package com.santander.efx.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.santander.efx.exception.ServiceException;
+
+public class DateUtilsTest {
+
+	private final DateUtils dateUtils = new DateUtils();
+
+	@Test
+	public void shouldParseInLisbonTime() {
+		assertThat(dateUtils.formatDate("01-06-2020 12:01:02:100").getTime()).isEqualTo(1591009262100L);
+		assertThat(dateUtils.formatDate("01-01-2020 00:00:00:000").getTime()).isEqualTo(1577836800000L);
+	}
+
+	@Test
+	public void shouldMatchSimpleDateFormat() throws Exception {
+
+		SimpleDateFormat format = new SimpleDateFormat(DateUtils.DATE_FORMAT);
+		format.setTimeZone(TimeZone.getTimeZone(DateUtils.TIME_ZONE));
+
+		String[] samples = { "29-03-2020 00:59:59:999", "29-03-2020 02:00:00:000", "25-10-2020 00:30:00:000",
+				"25-10-2020 02:00:00:000", "25-10-2020 02:30:00:000", "29-02-2020 23:59:59:999" };
+		for (String sample : samples) {
+			assertThat(dateUtils.formatDate(sample)).as(sample).isEqualTo(format.parse(sample));
+		}
+
+		Random random = new Random(11);
+		for (int i = 0; i < 10_000; i++) {
+			String sample = format.format(new Date(1_500_000_000_000L + (random.nextLong() & Long.MAX_VALUE) % 300_000_000_000L));
+			assertThat(format.format(dateUtils.formatDate(sample))).isEqualTo(sample);
+		}
+
+	}
+
+	@Test
+	public void shouldParseDifferentDaysOnConcurrentThreads() throws Exception {
+
+		String[][] samples = { { "01-06-2020 12:01:02:100", "1591009262100" },
+				{ "02-06-2020 12:01:02:100", "1591095662100" }, { "01-01-2020 00:00:00:000", "1577836800000" },
+				{ "25-10-2020 02:30:00:000", "1603593000000" } };
+		ExecutorService executor = Executors.newFixedThreadPool(samples.length);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (String[] sample : samples) {
+				results.add(executor.submit(() -> {
+					for (int i = 0; i < 100_000; i++) {
+						if (dateUtils.formatDate(sample[0]).getTime() != Long.parseLong(sample[1])) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertThat(result.get(1, TimeUnit.MINUTES)).isTrue();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+	}
+
+	@Test
+	public void shouldRejectMalformedDates() {
+
+		String[] samples = { "", "1-06-2020 12:01:02:100", "01-06-2020 12:01:02.100", "01/06/2020 12:01:02:100",
+				"01-13-2020 12:01:02:100", "31-06-2020 12:01:02:100", "00-00-0000 12:01:02:100",
+				"01-06-2020 24:01:02:100", "01-06-2020 12:60:02:100", "01-06-2020 12:01:02:1000",
+				"01-06-2020 12:01:0a:100" };
+		for (String sample : samples) {
+			assertThatThrownBy(() -> dateUtils.formatDate(sample)).as(sample).isInstanceOf(ServiceException.class);
+		}
+
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.santander.efx.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FixedPointTest {
+
+	private static final BigDecimal SPREAD = new BigDecimal("0.1");
+	private static final int ROUNDING_MODE = BigDecimal.ROUND_HALF_DOWN;
+
+	private static final long BID_MULTIPLIER = FixedPoint.multiplier(BigDecimal.ONE.subtract(SPREAD));
+	private static final long ASK_MULTIPLIER = FixedPoint.multiplier(BigDecimal.ONE.add(SPREAD));
+
+	@Test
+	public void shouldBuildMultipliers() {
+		assertThat(BID_MULTIPLIER).isEqualTo(9_000L);
+		assertThat(ASK_MULTIPLIER).isEqualTo(11_000L);
+	}
+
+	@Test
+	public void shouldMatchBigDecimalSpread() {
+
+		long[] samples = { 0, 1, 5, 15, 25, 12500, 12560, 1196000, -5, -15, -12345, 999_999_999_999L };
+		for (long sample : samples) {
+			assertMatchesBigDecimal(sample);
+		}
+
+		Random random = new Random(7);
+		for (int i = 0; i < 100_000; i++) {
+			assertMatchesBigDecimal(random.nextLong() % 1_000_000_000_000L);
+		}
+
+	}
+
+	@Test
+	public void shouldApplyRatesLikeBigDecimal() {
+
+		BigDecimal[] factors = { new BigDecimal("0.99985"), new BigDecimal("1.00015"), new BigDecimal("0.9"),
+				new BigDecimal("1.23456789") };
+		long[] samples = { 0, 1, 5, 15, 12500, 12560, 1196000, -12345, 999_999_999_999L };
+		Random random = new Random(11);
+		for (BigDecimal factor : factors) {
+			long rate = FixedPoint.rate(factor);
+			for (long sample : samples) {
+				assertMatchesBigDecimal(sample, factor, rate);
+			}
+			for (int i = 0; i < 10_000; i++) {
+				assertMatchesBigDecimal(random.nextLong() % 1_000_000_000_000L, factor, rate);
+			}
+		}
+
+	}
+
+	@Test
+	public void shouldRoundTripBigDecimal() {
+		assertThat(FixedPoint.fromBigDecimal(new BigDecimal("1.23455"))).isEqualTo(12345L);
+		assertThat(FixedPoint.fromBigDecimal(new BigDecimal("1.234551"))).isEqualTo(12346L);
+		assertThat(FixedPoint.toBigDecimal(12345L)).isEqualTo(new BigDecimal("1.2345"));
+	}
+
+	private void assertMatchesBigDecimal(long mantissa, BigDecimal factor, long rate) {
+
+		BigDecimal price = BigDecimal.valueOf(mantissa, FixedPoint.SCALE);
+		BigDecimal expected = price.multiply(factor).setScale(FixedPoint.SCALE, ROUNDING_MODE);
+
+		assertThat(FixedPoint.toBigDecimal(FixedPoint.applyRate(mantissa, rate))).as("%s x %s", price, factor)
+				.isEqualTo(expected);
+
+	}
+
+	private void assertMatchesBigDecimal(long mantissa) {
+
+		BigDecimal price = BigDecimal.valueOf(mantissa, FixedPoint.SCALE);
+		BigDecimal bid = price.multiply(BigDecimal.ONE.subtract(SPREAD)).setScale(FixedPoint.SCALE, ROUNDING_MODE);
+		BigDecimal ask = price.multiply(BigDecimal.ONE.add(SPREAD)).setScale(FixedPoint.SCALE, ROUNDING_MODE);
+
+		assertThat(FixedPoint.toBigDecimal(FixedPoint.multiply(mantissa, BID_MULTIPLIER))).as("bid %s", price)
+				.isEqualTo(bid);
+		assertThat(FixedPoint.toBigDecimal(FixedPoint.multiply(mantissa, ASK_MULTIPLIER))).as("ask %s", price)
+				.isEqualTo(ask);
+
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.santander.efx.utils;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class HashSlotsTest {
+
+	@Test
+	public void shouldHashKeysAsRedisCluster() {
+
+		byte[] check = "123456789".getBytes(US_ASCII);
+		assertThat(HashSlots.crc16(check, 0, check.length)).isEqualTo(0x31C3);
+		assertThat(HashSlots.slot("foo")).isEqualTo(12182);
+		assertThat(HashSlots.slot("bar")).isEqualTo(5061);
+
+	}
+
+	@Test
+	public void shouldHashOnlyNonEmptyHashTags() {
+
+		assertThat(HashSlots.slot("price:{7}:EUR/USD")).isEqualTo(HashSlots.slot("7"));
+		assertThat(HashSlots.slot("price-bars:1000:{7}:EUR/USD")).isEqualTo(HashSlots.slot("7"));
+		assertThat(HashSlots.slot("{}foo")).isEqualTo(HashSlots.slot("{}foo".getBytes(US_ASCII)));
+		assertThat(HashSlots.slot("{}foo")).isNotEqualTo(HashSlots.slot("foo"));
+		assertThat(HashSlots.slot("foo{")).isNotEqualTo(HashSlots.slot("foo"));
+
+	}
+
+	@Test
+	public void shouldSpreadTagsOverEqualSlotRanges() {
+
+		String[] tags = HashSlots.spreadTags(16);
+
+		assertThat(tags).hasSize(16).doesNotHaveDuplicates();
+		for (int i = 0; i < tags.length; i++) {
+			assertThat(HashSlots.slot(tags[i]) * 16 / HashSlots.SLOTS).isEqualTo(i);
+		}
+		assertThat(HashSlots.spreadTags(16)).containsExactly(tags);
+
+	}
+
+}
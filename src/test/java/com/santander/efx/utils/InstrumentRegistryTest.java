@@ -0,0 +1,143 @@
+package com.santander.efx.utils;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.santander.efx.exception.RejectReason;
+import com.santander.efx.exception.ServiceException;
+
+public class InstrumentRegistryTest {
+
+	private static final String[] KNOWN = { "EUR/USD", "GBP/USD", " EUR/JPY ", "", "EUR/USD" };
+
+	@Test
+	public void shouldNumberKnownInstrumentsInOrder() {
+
+		InstrumentRegistry registry = new InstrumentRegistry(KNOWN, 16, true);
+
+		assertThat(registry.size()).isEqualTo(3);
+		assertThat(registry.id("EUR/USD")).isEqualTo(0);
+		assertThat(registry.id("GBP/USD")).isEqualTo(1);
+		assertThat(registry.id("EUR/JPY")).isEqualTo(2);
+		assertThat(registry.name(2)).isEqualTo("EUR/JPY");
+		assertThat(registry.encodedName(1)).isEqualTo("GBP/USD".getBytes(US_ASCII));
+		assertThat(registry.id("USD/CHF")).isEqualTo(InstrumentRegistry.UNKNOWN);
+
+	}
+
+	@Test
+	public void shouldResolveRangesToCanonicalNames() {
+
+		InstrumentRegistry registry = new InstrumentRegistry(KNOWN, 16, true);
+		byte[] line = "1, GBP/USD, 1.25".getBytes(US_ASCII);
+
+		int id = registry.resolve(new AsciiSequence().wrap(line, 0, line.length), 3, 10);
+
+		assertThat(id).isEqualTo(1);
+		assertThat(registry.name(id)).isSameAs(registry.name(registry.resolve(new String("GBP/USD"))));
+
+	}
+
+	@Test
+	public void shouldReadDashesAsSlashesInPaths() {
+
+		InstrumentRegistry registry = new InstrumentRegistry(KNOWN, 16, true);
+
+		assertThat(registry.pathId("GBP-USD")).isEqualTo(1);
+		assertThat(registry.id("GBP-USD")).isEqualTo(InstrumentRegistry.UNKNOWN);
+		assertThat(registry.canonicalPathName("EUR-JPY")).isSameAs(registry.name(2));
+		assertThat(registry.canonicalPathName("USD-CHF")).isEqualTo("USD/CHF");
+
+	}
+
+	@Test
+	public void shouldRejectUnknownInstrumentsWhenAsked() {
+
+		InstrumentRegistry registry = new InstrumentRegistry(KNOWN, 16, true);
+
+		Throwable thrown = catchThrowable(() -> registry.resolve("USD/CHF"));
+
+		assertThat(((ServiceException) thrown).getReason()).isEqualTo(RejectReason.UNKNOWN_INSTRUMENT);
+		assertThat(registry.size()).isEqualTo(3);
+
+	}
+
+	@Test
+	public void shouldRegisterUnknownInstrumentsUpToCapacity() {
+
+		InstrumentRegistry registry = new InstrumentRegistry(KNOWN, 5, false);
+
+		assertThat(registry.resolve("USD/CHF")).isEqualTo(3);
+		assertThat(registry.resolve("USD/CHF")).isEqualTo(3);
+		assertThat(registry.resolve("USD/CAD")).isEqualTo(4);
+		Throwable thrown = catchThrowable(() -> registry.resolve("AUD/USD"));
+
+		assertThat(((ServiceException) thrown).getReason()).isEqualTo(RejectReason.UNKNOWN_INSTRUMENT);
+		assertThat(registry.id("USD/CAD")).isEqualTo(4);
+
+	}
+
+	@Test
+	public void shouldRegisterOnlyPairsWhenAsked() {
+
+		InstrumentRegistry registry = new InstrumentRegistry(KNOWN, 16, false);
+		ReflectionTestUtils.setField(registry, "pairsOnly", true);
+
+		for (String name : new String[] { "EURUSD", "eur/usd", "E/USD", "EUR/USD/JPY", "EUR /USD", "EUR/", "/USD" }) {
+			Throwable thrown = catchThrowable(() -> registry.resolve(name));
+			assertThat(((ServiceException) thrown).getReason()).isEqualTo(RejectReason.INSTRUMENT);
+		}
+		assertThat(registry.size()).isEqualTo(3);
+		assertThat(registry.resolve("XAU/USD")).isEqualTo(3);
+		assertThat(registry.resolve("CCY42/USD")).isEqualTo(4);
+
+	}
+
+	@Test
+	public void shouldRegisterAnyNameByDefault() {
+
+		InstrumentRegistry registry = new InstrumentRegistry(KNOWN, 16, false);
+
+		assertThat(registry.resolve("EURUSD")).isEqualTo(3);
+		assertThat(registry.resolve("eur.usd")).isEqualTo(4);
+		assertThat(registry.name(3)).isEqualTo("EURUSD");
+
+	}
+
+	@Test
+	public void shouldHandOutOneIdPerInstrumentAcrossThreads() throws Exception {
+
+		InstrumentRegistry registry = new InstrumentRegistry(new String[0], 1000, false);
+		Set<String> seen = ConcurrentHashMap.newKeySet();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					int id = registry.resolve("CCY" + i + "/USD");
+					seen.add(id + "=" + registry.name(id));
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(registry.size()).isEqualTo(1000);
+		assertThat(seen).hasSize(1000);
+		for (int i = 0; i < 1000; i++) {
+			assertThat(registry.name(registry.id("CCY" + i + "/USD"))).isEqualTo("CCY" + i + "/USD");
+		}
+
+	}
+
+}